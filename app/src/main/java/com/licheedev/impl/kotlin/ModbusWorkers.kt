@@ -1,6 +1,5 @@
 package com.licheedev.impl.kotlin
 
-import android.os.AsyncTask
 import com.licheedev.modbus4android.ModbusParam
 import com.licheedev.modbus4android.ModbusRespException
 import com.licheedev.modbus4android.ModbusWorker
@@ -15,6 +14,8 @@ import com.serotonin.modbus4j.msg.WriteCoilResponse
 import com.serotonin.modbus4j.msg.WriteCoilsResponse
 import com.serotonin.modbus4j.msg.WriteRegisterResponse
 import com.serotonin.modbus4j.msg.WriteRegistersResponse
+import com.serotonin.modbus4j.sero.util.FutureListener
+import com.serotonin.modbus4j.sero.util.SettableFuture
 import kotlinx.coroutines.suspendCancellableCoroutine
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutionException
@@ -22,28 +23,31 @@ import kotlin.coroutines.resume
 import kotlin.coroutines.resumeWithException
 
 
-/** 使用协程执行 */
-suspend fun <T> ModbusWorker.awaitRun(callable: Callable<T>): T {
+/** 挂起等待请求完成，不占用线程 */
+suspend fun <T> SettableFuture<T>.await(): T {
     return suspendCancellableCoroutine { continuation ->
-        val task = object : AsyncTask<Void, Void, Void>() {
-            override fun doInBackground(vararg params: Void?): Void? {
-                try {
-                    val result = doSync(callable)
-                    continuation.resume(result)
-                } catch (e: Exception) {
-                    continuation.resumeWithException(e)
-                }
-                return null
+        addListener(object : FutureListener<T> {
+            override fun completed(result: T) {
+                continuation.resume(result)
             }
-        }
+
+            override fun failed(e: Exception) {
+                continuation.resumeWithException(e)
+            }
+        })
 
         continuation.invokeOnCancellation {
-            task.cancel(false)
+            // 还没发出去的话就不发了
+            cancel(false)
         }
-        task.execute()
     }
 }
 
+/** 使用协程执行 */
+suspend fun <T> ModbusWorker.awaitRun(callable: Callable<T>): T {
+    return submit(callable).await()
+}
+
 //<editor-fold desc="初始化Modbbus代码">
 /**
  * 初始化modbus
@@ -84,7 +88,7 @@ suspend fun ModbusWorker.awaitReadCoil(
     start: Int,
     len: Int
 ): ReadCoilsResponse {
-    return awaitRun(callableReadCoil(slaveId, start, len))
+    return submitReadCoil(slaveId, start, len).await()
 }
 //</editor-fold>
 
@@ -109,7 +113,7 @@ suspend fun ModbusWorker.awaitReadDiscreteInput(
     start: Int,
     len: Int
 ): ReadDiscreteInputsResponse {
-    return awaitRun(callableReadDiscreteInput(slaveId, start, len))
+    return submitReadDiscreteInput(slaveId, start, len).await()
 }
 //</editor-fold>
 
@@ -135,7 +139,7 @@ suspend fun ModbusWorker.awaitReadHoldingRegisters(
     start: Int,
     len: Int
 ): ReadHoldingRegistersResponse {
-    return awaitRun(callableReadHoldingRegisters(slaveId, start, len))
+    return submitReadHoldingRegisters(slaveId, start, len).await()
 }
 
 //</editor-fold>
@@ -162,7 +166,7 @@ suspend fun ModbusWorker.awaitReadInputRegisters(
     start: Int,
     len: Int
 ): ReadInputRegistersResponse {
-    return awaitRun(callableReadInputRegisters(slaveId, start, len))
+    return submitReadInputRegisters(slaveId, start, len).await()
 }
 //</editor-fold>
 
@@ -187,7 +191,7 @@ suspend fun ModbusWorker.awaitWriteCoil(
     offset: Int,
     value: Boolean
 ): WriteCoilResponse {
-    return awaitRun(callableWriteCoil(slaveId, offset, value))
+    return submitWriteCoil(slaveId, offset, value).await()
 }
 
 //</editor-fold>
@@ -214,7 +218,7 @@ suspend fun ModbusWorker.awaitWriteSingleRegister(
     offset: Int,
     value: Int
 ): WriteRegisterResponse {
-    return awaitRun(callableWriteSingleRegister(slaveId, offset, value))
+    return submitWriteSingleRegister(slaveId, offset, value).await()
 }
 
 //</editor-fold>
@@ -241,7 +245,7 @@ suspend fun ModbusWorker.awaitWriteCoils(
     start: Int,
     values: BooleanArray
 ): WriteCoilsResponse {
-    return awaitRun(callableWriteCoils(slaveId, start, values))
+    return submitWriteCoils(slaveId, start, values).await()
 }
 
 //</editor-fold>
@@ -268,7 +272,7 @@ suspend fun ModbusWorker.awaitWriteRegisters(
     start: Int,
     values: ShortArray
 ): WriteRegistersResponse {
-    return awaitRun(callableWriteRegisters(slaveId, start, values))
+    return submitWriteRegisters(slaveId, start, values).await()
 }
 
 //</editor-fold>
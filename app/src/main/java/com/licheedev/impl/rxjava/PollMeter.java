@@ -0,0 +1,78 @@
+package com.licheedev.impl.rxjava;
+
+/**
+ * 轮询统计，记录实际完成的轮询次数、丢掉的节拍和实际轮询速率
+ */
+public class PollMeter {
+
+    /** 平均间隔的平滑系数 */
+    private static final double ALPHA = 0.2;
+
+    private long mPollCount;
+    private long mDroppedTicks;
+    private long mLastPollAt;
+    private double mAverageInterval;
+
+    /**
+     * 完成了一次轮询
+     *
+     * @param now {@link System#nanoTime()}的时间
+     */
+    synchronized void polled(long now) {
+        if (mPollCount > 0) {
+            long interval = now - mLastPollAt;
+            mAverageInterval = mAverageInterval == 0 ? interval
+                : mAverageInterval + (interval - mAverageInterval) * ALPHA;
+        }
+        mPollCount++;
+        mLastPollAt = now;
+    }
+
+    /**
+     * 丢掉了一个节拍（下游没有需求，或者上一次还没读完）
+     */
+    synchronized void dropped() {
+        mDroppedTicks++;
+    }
+
+    /**
+     * 完成的轮询次数
+     *
+     * @return
+     */
+    public synchronized long getPollCount() {
+        return mPollCount;
+    }
+
+    /**
+     * 丢掉的节拍数
+     *
+     * @return
+     */
+    public synchronized long getDroppedTicks() {
+        return mDroppedTicks;
+    }
+
+    /**
+     * 实际轮询速率，按最近的轮询间隔平滑计算；停止轮询后逐渐降低
+     *
+     * @return 每秒轮询次数
+     */
+    public synchronized double getRate() {
+        if (mAverageInterval == 0) {
+            return 0;
+        }
+        double interval = Math.max(mAverageInterval, System.nanoTime() - mLastPollAt);
+        return 1e9 / interval;
+    }
+
+    /**
+     * 清零
+     */
+    public synchronized void reset() {
+        mPollCount = 0;
+        mDroppedTicks = 0;
+        mLastPollAt = 0;
+        mAverageInterval = 0;
+    }
+}
@@ -3,6 +3,10 @@ package com.licheedev.impl.rxjava;
 import com.licheedev.modbus4android.ModbusCallback;
 import com.licheedev.modbus4android.ModbusParam;
 import com.licheedev.modbus4android.ModbusWorker;
+import com.licheedev.modbus4android.PollData;
+import com.licheedev.modbus4android.PollListener;
+import com.licheedev.modbus4android.PollSpec;
+import com.licheedev.modbus4android.PollSubscription;
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.msg.ModbusResponse;
 import com.serotonin.modbus4j.msg.ReadCoilsResponse;
@@ -13,15 +17,23 @@ import com.serotonin.modbus4j.msg.WriteCoilResponse;
 import com.serotonin.modbus4j.msg.WriteCoilsResponse;
 import com.serotonin.modbus4j.msg.WriteRegisterResponse;
 import com.serotonin.modbus4j.msg.WriteRegistersResponse;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.exceptions.CompositeException;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Action;
-import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.functions.Cancellable;
 import io.reactivex.schedulers.Schedulers;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ModbusWorker实现，RxJava扩展
@@ -31,36 +43,81 @@ public class RxModbusWorker extends ModbusWorker {
     //<editor-fold desc="一些通用的方法">
 
     /**
-     * Rx发送数据源
+     * Rx发送数据源，订阅时请求入队，不占用线程等待响应；结果在io线程发射
      *
+     * @param submitter 请求入队
      * @return
      */
-    private <T> Observable<T> getRxObservable(final Callable<T> callable) {
+    private <T> Observable<T> getRxObservable(final Callable<SettableFuture<T>> submitter) {
 
         return Observable.create(new ObservableOnSubscribe<T>() {
             @Override
-            public void subscribe(ObservableEmitter<T> emitter) throws Exception {
-                boolean terminated = false;
-                try {
-                    T t = doSync(callable);
-                    if (!emitter.isDisposed()) {
-                        terminated = true;
-                        emitter.onNext(t);
-                        emitter.onComplete();
+            public void subscribe(final ObservableEmitter<T> emitter) throws Exception {
+                final SettableFuture<T> future = submitter.call();
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        // 还没发出去的话就不发了
+                        future.cancel(false);
                     }
-                } catch (Throwable t) {
-                    if (terminated) {
-                        RxJavaPlugins.onError(t);
-                    } else if (!emitter.isDisposed()) {
-                        try {
-                            emitter.onError(t);
-                        } catch (Throwable inner) {
-                            RxJavaPlugins.onError(new CompositeException(t, inner));
+                });
+                future.addListener(new FutureListener<T>() {
+                    @Override
+                    public void completed(T t) {
+                        if (!emitter.isDisposed()) {
+                            emitter.onNext(t);
+                            emitter.onComplete();
                         }
                     }
-                }
+
+                    @Override
+                    public void failed(Exception e) {
+                        emitter.tryOnError(e);
+                    }
+                });
+            }
+        }).observeOn(Schedulers.io());
+    }
+
+    /**
+     * Rx轮询数据源，每隔period入队一次请求，结果在io线程发射。
+     * <p>
+     * 按下游的需求轮询：节拍到来时下游没有需求就不读；上一次还没读完时，错过的节拍合并成一次，
+     * 读完后马上补读，不会堆积请求。读取失败时以错误结束
+     *
+     * @param submitter 请求入队
+     * @param period 轮询周期，毫秒
+     * @param meter 统计实际轮询速率，可以为null
+     * @return
+     */
+    private <T> Flowable<T> getRxFlowable(
+        final Callable<SettableFuture<T>> submitter,
+        final long period,
+        final PollMeter meter
+    ) {
+
+        if (period <= 0) {
+            throw new IllegalArgumentException(
+                "Poll period should be positive, but now period=" + period);
+        }
+
+        return Flowable.create(new FlowableOnSubscribe<T>() {
+            @Override
+            public void subscribe(FlowableEmitter<T> emitter) throws Exception {
+                final FlowablePoll<T> poll = new FlowablePoll<>(emitter, submitter, meter);
+                final Disposable ticks = Schedulers.computation()
+                    .schedulePeriodicallyDirect(poll, 0, period, TimeUnit.MILLISECONDS);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        ticks.dispose();
+                        poll.cancel();
+                    }
+                });
             }
-        }).subscribeOn(Schedulers.io());
+        }, BackpressureStrategy.LATEST)
+            // 只预取1个，下游的需求才能传到轮询
+            .observeOn(Schedulers.io(), false, 1);
     }
 
     /**
@@ -117,7 +174,12 @@ public class RxModbusWorker extends ModbusWorker {
      * @return
      */
     public Observable<ModbusMaster> rxInit(final ModbusParam param) {
-        return getRxObservable(callableInit(param)).subscribeOn(Schedulers.io());
+        return getRxObservable(new Callable<SettableFuture<ModbusMaster>>() {
+            @Override
+            public SettableFuture<ModbusMaster> call() {
+                return submit(callableInit(param));
+            }
+        });
     }
     //</editor-fold>
 
@@ -135,7 +197,37 @@ public class RxModbusWorker extends ModbusWorker {
         final int slaveId, final int start,
         final int len
     ) {
-        return getRxObservable(callableReadCoil(slaveId, start, len));
+        return getRxObservable(new Callable<SettableFuture<ReadCoilsResponse>>() {
+            @Override
+            public SettableFuture<ReadCoilsResponse> call() {
+                return submitReadCoil(slaveId, start, len);
+            }
+        });
+    }
+
+    /**
+     * 01 (0x01)读线圈，每隔period轮询一次，按下游的需求读取
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 线圈数量
+     * @param period 轮询周期，毫秒
+     * @param meter 统计实际轮询速率，可以为null
+     * @return
+     */
+    public Flowable<ReadCoilsResponse> rxPollReadCoil(
+        final int slaveId,
+        final int start,
+        final int len,
+        final long period,
+        final PollMeter meter
+    ) {
+        return getRxFlowable(new Callable<SettableFuture<ReadCoilsResponse>>() {
+            @Override
+            public SettableFuture<ReadCoilsResponse> call() {
+                return submitReadCoil(slaveId, start, len);
+            }
+        }, period, meter);
     }
     //</editor-fold>
 
@@ -154,7 +246,37 @@ public class RxModbusWorker extends ModbusWorker {
         final int start,
         final int len
     ) {
-        return getRxObservable(callableReadDiscreteInput(slaveId, start, len));
+        return getRxObservable(new Callable<SettableFuture<ReadDiscreteInputsResponse>>() {
+            @Override
+            public SettableFuture<ReadDiscreteInputsResponse> call() {
+                return submitReadDiscreteInput(slaveId, start, len);
+            }
+        });
+    }
+
+    /**
+     * 02（0x02）读离散量输入，每隔period轮询一次，按下游的需求读取
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 输入数量
+     * @param period 轮询周期，毫秒
+     * @param meter 统计实际轮询速率，可以为null
+     * @return
+     */
+    public Flowable<ReadDiscreteInputsResponse> rxPollReadDiscreteInput(
+        final int slaveId,
+        final int start,
+        final int len,
+        final long period,
+        final PollMeter meter
+    ) {
+        return getRxFlowable(new Callable<SettableFuture<ReadDiscreteInputsResponse>>() {
+            @Override
+            public SettableFuture<ReadDiscreteInputsResponse> call() {
+                return submitReadDiscreteInput(slaveId, start, len);
+            }
+        }, period, meter);
     }
     //</editor-fold>
 
@@ -173,9 +295,38 @@ public class RxModbusWorker extends ModbusWorker {
         final int start,
         final int len
     ) {
-        return getRxObservable(callableReadHoldingRegisters(slaveId, start, len));
+        return getRxObservable(new Callable<SettableFuture<ReadHoldingRegistersResponse>>() {
+            @Override
+            public SettableFuture<ReadHoldingRegistersResponse> call() {
+                return submitReadHoldingRegisters(slaveId, start, len);
+            }
+        });
     }
 
+    /**
+     * 03 (0x03)读保持寄存器，每隔period轮询一次，按下游的需求读取
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @param period 轮询周期，毫秒
+     * @param meter 统计实际轮询速率，可以为null
+     * @return
+     */
+    public Flowable<ReadHoldingRegistersResponse> rxPollReadHoldingRegisters(
+        final int slaveId,
+        final int start,
+        final int len,
+        final long period,
+        final PollMeter meter
+    ) {
+        return getRxFlowable(new Callable<SettableFuture<ReadHoldingRegistersResponse>>() {
+            @Override
+            public SettableFuture<ReadHoldingRegistersResponse> call() {
+                return submitReadHoldingRegisters(slaveId, start, len);
+            }
+        }, period, meter);
+    }
     //</editor-fold>
 
     //<editor-fold desc="04（0x04）读输入寄存器">
@@ -193,9 +344,38 @@ public class RxModbusWorker extends ModbusWorker {
         final int start,
         final int len
     ) {
-        return getRxObservable(callableReadInputRegisters(slaveId, start, len));
+        return getRxObservable(new Callable<SettableFuture<ReadInputRegistersResponse>>() {
+            @Override
+            public SettableFuture<ReadInputRegistersResponse> call() {
+                return submitReadInputRegisters(slaveId, start, len);
+            }
+        });
     }
 
+    /**
+     * 04（0x04）读输入寄存器，每隔period轮询一次，按下游的需求读取
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @param period 轮询周期，毫秒
+     * @param meter 统计实际轮询速率，可以为null
+     * @return
+     */
+    public Flowable<ReadInputRegistersResponse> rxPollReadInputRegisters(
+        final int slaveId,
+        final int start,
+        final int len,
+        final long period,
+        final PollMeter meter
+    ) {
+        return getRxFlowable(new Callable<SettableFuture<ReadInputRegistersResponse>>() {
+            @Override
+            public SettableFuture<ReadInputRegistersResponse> call() {
+                return submitReadInputRegisters(slaveId, start, len);
+            }
+        }, period, meter);
+    }
     //</editor-fold>
 
     //<editor-fold desc="05（0x05）写单个线圈">
@@ -214,7 +394,12 @@ public class RxModbusWorker extends ModbusWorker {
         final boolean value
     ) {
 
-        return getRxObservable(callableWriteCoil(slaveId, offset, value));
+        return getRxObservable(new Callable<SettableFuture<WriteCoilResponse>>() {
+            @Override
+            public SettableFuture<WriteCoilResponse> call() {
+                return submitWriteCoil(slaveId, offset, value);
+            }
+        });
     }
 
     //</editor-fold>
@@ -234,7 +419,12 @@ public class RxModbusWorker extends ModbusWorker {
         final int offset,
         final int value
     ) {
-        return getRxObservable(callableWriteSingleRegister(slaveId, offset, value));
+        return getRxObservable(new Callable<SettableFuture<WriteRegisterResponse>>() {
+            @Override
+            public SettableFuture<WriteRegisterResponse> call() {
+                return submitWriteSingleRegister(slaveId, offset, value);
+            }
+        });
     }
 
     //</editor-fold>
@@ -255,7 +445,12 @@ public class RxModbusWorker extends ModbusWorker {
         final boolean[] values
     ) {
 
-        return getRxObservable(callableWriteCoils(slaveId, start, values));
+        return getRxObservable(new Callable<SettableFuture<WriteCoilsResponse>>() {
+            @Override
+            public SettableFuture<WriteCoilsResponse> call() {
+                return submitWriteCoils(slaveId, start, values);
+            }
+        });
     }
 
     //</editor-fold>
@@ -275,7 +470,12 @@ public class RxModbusWorker extends ModbusWorker {
         final int start,
         final short[] values
     ) {
-        return getRxObservable(callableWriteRegisters(slaveId, start, values));
+        return getRxObservable(new Callable<SettableFuture<WriteRegistersResponse>>() {
+            @Override
+            public SettableFuture<WriteRegistersResponse> call() {
+                return submitWriteRegisters(slaveId, start, values);
+            }
+        });
     }
 
     //</editor-fold>
@@ -298,4 +498,134 @@ public class RxModbusWorker extends ModbusWorker {
         return rxWriteRegisters(slaveId, start, new short[] { (short) value });
     }
     //</editor-fold>
+
+    //<editor-fold desc="连续轮询">
+
+    /**
+     * 连续轮询，订阅时马上读一次，之后每隔period读一次，只发射有变化的值，结果在io线程发射。
+     * 读取失败时以错误结束，需要继续轮询的话可以用retry
+     *
+     * @param spec 轮询的数据范围
+     * @param period 轮询周期，毫秒
+     * @return
+     * @see #subscribe(PollSpec, long, PollListener)
+     */
+    public Observable<PollData> rxPoll(final PollSpec spec, final long period) {
+
+        return Observable.create(new ObservableOnSubscribe<PollData>() {
+            @Override
+            public void subscribe(final ObservableEmitter<PollData> emitter) throws Exception {
+                final PollSubscription subscription =
+                    RxModbusWorker.this.subscribe(spec, period, new PollListener() {
+                        @Override
+                        public void onChanged(PollData data) {
+                            if (!emitter.isDisposed()) {
+                                emitter.onNext(data);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(PollSpec spec, Throwable tr) {
+                            emitter.tryOnError(tr);
+                        }
+                    }, null);
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() throws Exception {
+                        subscription.unsubscribe();
+                    }
+                });
+            }
+        }).observeOn(Schedulers.io());
+    }
+    //</editor-fold>
+
+    /**
+     * 一个轮询数据源，节拍在计算线程，完成在ModbusMaster的线程
+     */
+    private static class FlowablePoll<T> implements Runnable, FutureListener<T> {
+
+        private final FlowableEmitter<T> mEmitter;
+        private final Callable<SettableFuture<T>> mSubmitter;
+        private final PollMeter mMeter;
+        /** 有读取在途 */
+        private final AtomicBoolean mBusy = new AtomicBoolean();
+        /** 读取期间错过了节拍 */
+        private volatile boolean mMissed;
+        private volatile SettableFuture<T> mFuture;
+
+        FlowablePoll(
+            FlowableEmitter<T> emitter,
+            Callable<SettableFuture<T>> submitter,
+            PollMeter meter
+        ) {
+            mEmitter = emitter;
+            mSubmitter = submitter;
+            mMeter = meter;
+        }
+
+        @Override
+        public void run() {
+            if (mEmitter.isCancelled()) {
+                return;
+            }
+            if (mEmitter.requested() == 0) {
+                // 下游没有需求
+                dropped();
+                return;
+            }
+            if (!mBusy.compareAndSet(false, true)) {
+                // 链路跟不上，读完再补
+                mMissed = true;
+                dropped();
+                return;
+            }
+            poll();
+        }
+
+        private void poll() {
+            mMissed = false;
+            try {
+                mFuture = mSubmitter.call();
+            } catch (Exception e) {
+                failed(e);
+                return;
+            }
+            mFuture.addListener(this);
+        }
+
+        @Override
+        public void completed(T t) {
+            if (mMeter != null) {
+                mMeter.polled(System.nanoTime());
+            }
+            if (!mEmitter.isCancelled()) {
+                mEmitter.onNext(t);
+            }
+            mBusy.set(false);
+            if (mMissed && !mEmitter.isCancelled() && mEmitter.requested() > 0
+                && mBusy.compareAndSet(false, true)) {
+                poll();
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            mEmitter.tryOnError(e);
+        }
+
+        void cancel() {
+            SettableFuture<T> future = mFuture;
+            if (future != null) {
+                // 还没发出去的话就不发了
+                future.cancel(false);
+            }
+        }
+
+        private void dropped() {
+            if (mMeter != null) {
+                mMeter.dropped();
+            }
+        }
+    }
 }
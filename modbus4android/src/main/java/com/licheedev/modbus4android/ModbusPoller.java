@@ -0,0 +1,330 @@
+package com.licheedev.modbus4android;
+
+import com.serotonin.modbus4j.code.FunctionCode;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ReadCoilsRequest;
+import com.serotonin.modbus4j.msg.ReadDiscreteInputsRequest;
+import com.serotonin.modbus4j.msg.ReadHoldingRegistersRequest;
+import com.serotonin.modbus4j.msg.ReadInputRegistersRequest;
+import com.serotonin.modbus4j.msg.ReadResponse;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连续轮询。
+ * <p>
+ * 所有订阅共用一个起点，周期为P的订阅在起点之后P的整数倍时刻到期，周期成倍数的订阅会在同一时刻到期。
+ * 同一时刻到期的订阅，按从设备和功能码分组，地址重叠或相邻的合并成一次读取，读完再切分给各个订阅，
+ * 只有值变化了才回调。
+ * <p>
+ * 订阅的上一次读取还没完成时，这一次到期直接跳过，读完后从下一个整数倍时刻继续，总线慢时不会堆积请求。
+ * 到期检查在请求队列的线程上进行，读取通过{@link ModbusWorker#submit(ModbusRequest)}入队。
+ */
+class ModbusPoller {
+
+    /** 合并后的读取缓存上限，超过就清空 */
+    private static final int MAX_CACHED_REQUESTS = 64;
+
+    private static final Comparator<PollSubscription> ORDER = new Comparator<PollSubscription>() {
+        @Override
+        public int compare(PollSubscription a, PollSubscription b) {
+            PollSpec x = a.getSpec();
+            PollSpec y = b.getSpec();
+            if (x.getSlaveId() != y.getSlaveId()) {
+                return x.getSlaveId() < y.getSlaveId() ? -1 : 1;
+            }
+            if (x.getFunctionCode() != y.getFunctionCode()) {
+                return x.getFunctionCode() < y.getFunctionCode() ? -1 : 1;
+            }
+            return x.getStart() < y.getStart() ? -1 : (x.getStart() == y.getStart() ? 0 : 1);
+        }
+    };
+
+    private final ModbusWorker mWorker;
+    private final ScheduledExecutorService mExecutor;
+    private final long mEpoch = System.nanoTime();
+
+    // 以下加锁访问
+    private final ArrayList<PollSubscription> mSubscriptions = new ArrayList<>();
+    /** 合并后的读取请求，同样的组合下次直接复用 */
+    private final HashMap<Long, ModbusRequest> mRequests = new HashMap<>();
+    private ScheduledFuture<?> mTick;
+    private long mTickAt;
+
+    private final Runnable mTickTask = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    ModbusPoller(ModbusWorker worker, ScheduledExecutorService executor) {
+        mWorker = worker;
+        mExecutor = executor;
+    }
+
+    /**
+     * 添加订阅，马上读一次
+     *
+     * @param spec
+     * @param periodNanos
+     * @param listener
+     * @param executor 回调的线程，null表示直接在ModbusMaster的线程回调
+     * @return
+     */
+    PollSubscription subscribe(PollSpec spec, long periodNanos, PollListener listener,
+        Executor executor) {
+        PollSubscription subscription =
+            new PollSubscription(this, spec, periodNanos, listener, executor);
+        synchronized (this) {
+            subscription.nextDue = System.nanoTime();
+            mSubscriptions.add(subscription);
+            reschedule();
+        }
+        return subscription;
+    }
+
+    synchronized void remove(PollSubscription subscription) {
+        if (mSubscriptions.remove(subscription)) {
+            mRequests.clear();
+            reschedule();
+        }
+    }
+
+    /**
+     * 取消所有订阅
+     */
+    void clear() {
+        List<PollSubscription> subscriptions;
+        synchronized (this) {
+            subscriptions = new ArrayList<>(mSubscriptions);
+        }
+        for (PollSubscription subscription : subscriptions) {
+            subscription.unsubscribe();
+        }
+    }
+
+    private void tick() {
+        List<Read> reads = new ArrayList<>();
+        synchronized (this) {
+            mTick = null;
+            long now = System.nanoTime();
+
+            ArrayList<PollSubscription> due = new ArrayList<>();
+            for (PollSubscription subscription : mSubscriptions) {
+                if (!subscription.pending && subscription.nextDue - now <= 0) {
+                    subscription.pending = true;
+                    subscription.nextDue = align(subscription, now);
+                    due.add(subscription);
+                }
+            }
+            merge(due, reads);
+            reschedule();
+        }
+
+        for (Read read : reads) {
+            read.send();
+        }
+    }
+
+    /**
+     * 同一从设备、同一功能码，地址重叠或相邻的订阅合并成一次读取
+     *
+     * @param due 到期的订阅
+     * @param reads 合并后的读取
+     */
+    private void merge(ArrayList<PollSubscription> due, List<Read> reads) {
+        Collections.sort(due, ORDER);
+        Read read = null;
+        for (PollSubscription subscription : due) {
+            PollSpec spec = subscription.getSpec();
+            if (read != null && read.slaveId == spec.getSlaveId()
+                && read.functionCode == spec.getFunctionCode()
+                && spec.getStart() <= read.end
+                && Math.max(read.end, spec.getEnd()) - read.start <= read.maxLen) {
+                read.end = Math.max(read.end, spec.getEnd());
+                read.subscriptions.add(subscription);
+                continue;
+            }
+            read = new Read(spec);
+            read.subscriptions.add(subscription);
+            reads.add(read);
+        }
+    }
+
+    /**
+     * 下一个到期时刻：起点之后周期的整数倍，晚于now
+     */
+    private long align(PollSubscription subscription, long now) {
+        long period = subscription.getPeriodNanos();
+        return mEpoch + ((now - mEpoch) / period + 1) * period;
+    }
+
+    /**
+     * 按最早到期的订阅安排下一次检查，需加锁调用
+     */
+    private void reschedule() {
+        boolean found = false;
+        long at = 0;
+        for (PollSubscription subscription : mSubscriptions) {
+            if (!subscription.pending && (!found || subscription.nextDue - at < 0)) {
+                at = subscription.nextDue;
+                found = true;
+            }
+        }
+
+        if (mTick != null) {
+            if (found && mTickAt - at <= 0) {
+                // 已经安排了不晚于它的
+                return;
+            }
+            mTick.cancel(false);
+            mTick = null;
+        }
+        if (!found) {
+            return;
+        }
+        try {
+            mTick = mExecutor.schedule(mTickTask, at - System.nanoTime(), TimeUnit.NANOSECONDS);
+            mTickAt = at;
+        } catch (RejectedExecutionException e) {
+            // 已经release
+        }
+    }
+
+    private ModbusRequest request(int slaveId, byte functionCode, int start, int len)
+        throws ModbusTransportException {
+
+        Long key = ((long) slaveId << 40) | ((long) functionCode << 32)
+            | ((long) start << 16) | (len - 1);
+        ModbusRequest request = mRequests.get(key);
+        if (request != null) {
+            return request;
+        }
+
+        switch (functionCode) {
+            case FunctionCode.READ_COILS:
+                request = new ReadCoilsRequest(slaveId, start, len);
+                break;
+            case FunctionCode.READ_DISCRETE_INPUTS:
+                request = new ReadDiscreteInputsRequest(slaveId, start, len);
+                break;
+            case FunctionCode.READ_HOLDING_REGISTERS:
+                request = new ReadHoldingRegistersRequest(slaveId, start, len);
+                break;
+            default:
+                request = new ReadInputRegistersRequest(slaveId, start, len);
+                break;
+        }
+        if (mRequests.size() >= MAX_CACHED_REQUESTS) {
+            mRequests.clear();
+        }
+        mRequests.put(key, request);
+        return request;
+    }
+
+    /**
+     * 一次读取，结果切分给合并进来的订阅
+     */
+    private class Read implements FutureListener<ReadResponse> {
+
+        final int slaveId;
+        final byte functionCode;
+        final int start;
+        final int maxLen;
+        int end;
+        final ArrayList<PollSubscription> subscriptions = new ArrayList<>();
+
+        Read(PollSpec spec) {
+            slaveId = spec.getSlaveId();
+            functionCode = spec.getFunctionCode();
+            start = spec.getStart();
+            end = spec.getEnd();
+            maxLen = spec.isBit() ? PollSpec.MAX_BIT_COUNT : PollSpec.MAX_REGISTER_COUNT;
+        }
+
+        void send() {
+            ModbusRequest request;
+            try {
+                synchronized (ModbusPoller.this) {
+                    request = request(slaveId, functionCode, start, end - start);
+                }
+            } catch (ModbusTransportException e) {
+                failed(e);
+                return;
+            }
+            mWorker.<ReadResponse>submit(request).addListener(this);
+        }
+
+        @Override
+        public void completed(ReadResponse response) {
+            byte[] data = response == null ? null : response.getData();
+            int len = end - start;
+            int size = PollSpec.isBit(functionCode) ? (len + 7) / 8 : len * 2;
+            if (data == null || data.length < size) {
+                failed(new ModbusTransportException(
+                    "Response data too short, expected " + size + " bytes", slaveId));
+                return;
+            }
+
+            List<PollSubscription> changed = new ArrayList<>(subscriptions.size());
+            List<Runnable> callbacks = new ArrayList<>(subscriptions.size());
+            synchronized (ModbusPoller.this) {
+                for (PollSubscription subscription : subscriptions) {
+                    Runnable callback = subscription.update(data, start);
+                    if (callback != null) {
+                        changed.add(subscription);
+                        callbacks.add(callback);
+                    }
+                }
+                done();
+            }
+            for (int i = 0; i < callbacks.size(); i++) {
+                changed.get(i).deliver(callbacks.get(i));
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            List<PollSubscription> failed = new ArrayList<>(subscriptions.size());
+            List<Runnable> callbacks = new ArrayList<>(subscriptions.size());
+            synchronized (ModbusPoller.this) {
+                for (PollSubscription subscription : subscriptions) {
+                    Runnable callback = subscription.fail(e);
+                    if (callback != null) {
+                        failed.add(subscription);
+                        callbacks.add(callback);
+                    }
+                }
+                done();
+            }
+            for (int i = 0; i < callbacks.size(); i++) {
+                failed.get(i).deliver(callbacks.get(i));
+            }
+        }
+
+        /**
+         * 读取完成，错过的到期时刻不再补读，需加锁调用
+         */
+        private void done() {
+            long now = System.nanoTime();
+            for (PollSubscription subscription : subscriptions) {
+                subscription.pending = false;
+                if (subscription.nextDue - now <= 0) {
+                    subscription.nextDue = align(subscription, now);
+                }
+            }
+            reschedule();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.licheedev.modbus4android;
+
+import com.serotonin.modbus4j.ModbusMaster;
+import com.serotonin.modbus4j.exception.ModbusInitException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modbus请求队列。
+ * <p>
+ * 调用方入队后立即返回，结果通过{@link SettableFuture}回传。队列在一个线程上按先后顺序把请求交给ModbusMaster的sendAsync，
+ * 不等待响应；同时在途的请求数不超过{@link ModbusWorker#getMaxInFlight(ModbusMaster)}，
+ * 支持流水线的ModbusMaster可以同时收到多个请求，否则上一个请求完成后才发下一个。
+ * <p>
+ * 发送间隔由{@link SendPacer}把关。还没到时间的请求留在队列里，到了截止时间再派发一次，派发线程不等待；
+ * 某个从设备没到时间时，发给其他从设备的请求可以先发，发给同一从设备的请求保持先后顺序。
+ * <p>
+ * Callable任务（如初始化）是独占的：排到队首、在途请求全部完成后才在队列线程上执行，执行期间不发其他请求。
+ */
+class ModbusRequestQueue {
+
+    private final ModbusWorker mWorker;
+    private final ScheduledExecutorService mExecutor;
+    private final SendPacer mPacer;
+
+    private final ConcurrentLinkedQueue<Task<?>> mQueue = new ConcurrentLinkedQueue<>();
+    /** 大于0时已安排或正在派发 */
+    private final AtomicInteger mWip = new AtomicInteger();
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    /** 已安排的定时派发，只在派发线程上访问 */
+    private ScheduledFuture<?> mWake;
+    private long mWakeAt;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final Runnable mWakeTask = new Runnable() {
+        @Override
+        public void run() {
+            mWake = null;
+            schedule();
+        }
+    };
+
+    ModbusRequestQueue(ModbusWorker worker, ScheduledExecutorService executor, SendPacer pacer) {
+        mWorker = worker;
+        mExecutor = executor;
+        mPacer = pacer;
+    }
+
+    /**
+     * 请求入队
+     *
+     * @param request
+     * @param <T>
+     * @return 完成时得到响应；响应包含错误时以{@link ModbusRespException}失败
+     */
+    <T extends ModbusResponse> SettableFuture<T> enqueue(ModbusRequest request) {
+        RequestTask<T> task = new RequestTask<>(request);
+        offer(task);
+        return task.future;
+    }
+
+    /**
+     * 独占任务入队
+     *
+     * @param callable
+     * @param <T>
+     * @return
+     */
+    <T> SettableFuture<T> enqueue(Callable<T> callable) {
+        CallableTask<T> task = new CallableTask<>(callable);
+        offer(task);
+        return task.future;
+    }
+
+    /**
+     * 在途请求数
+     *
+     * @return
+     */
+    int getInFlightCount() {
+        return mInFlight.get();
+    }
+
+    private void offer(Task<?> task) {
+        mQueue.offer(task);
+        schedule();
+    }
+
+    /**
+     * 安排一次派发，已经安排了的话只做标记，由正在派发的线程再检查一遍
+     */
+    void schedule() {
+        if (mWip.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            mExecutor.execute(mDrain);
+        } catch (RejectedExecutionException e) {
+            // 已经release
+            mWip.set(0);
+            Task<?> task;
+            while ((task = mQueue.poll()) != null) {
+                task.future.fail(new IllegalStateException("ModbusWorker has been released"));
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            long wakeAt = dispatch();
+            if (wakeAt != SendPacer.BLOCKED) {
+                wakeAt(wakeAt);
+            }
+            missed = mWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * 把能发的请求都交给ModbusMaster
+     *
+     * @return 最早有请求可以发的时间，{@link SendPacer#BLOCKED}表示不需要定时派发
+     */
+    private long dispatch() {
+        long wakeAt = SendPacer.BLOCKED;
+        // 这一轮中被跳过的从设备，它后面的请求也不能先发
+        Set<Integer> held = null;
+
+        Iterator<Task<?>> it = mQueue.iterator();
+        while (it.hasNext()) {
+            Task<?> task = it.next();
+
+            if (task.future.isDone()) {
+                // 已取消
+                it.remove();
+                continue;
+            }
+
+            long now = System.nanoTime();
+            long busInterval = TimeUnit.MILLISECONDS.toNanos(mWorker.getSendIntervalTime());
+
+            if (task instanceof CallableTask) {
+                if (held != null || mInFlight.get() > 0) {
+                    // 等前面的请求发完、在途请求完成
+                    break;
+                }
+                long delay = mPacer.delay(SendPacer.NO_SLAVE, busInterval, now);
+                if (delay > 0) {
+                    wakeAt = now + delay;
+                    break;
+                }
+                it.remove();
+                ((CallableTask<?>) task).run();
+                mPacer.completed(SendPacer.NO_SLAVE, System.nanoTime());
+                continue;
+            }
+
+            RequestTask<?> request = (RequestTask<?>) task;
+            ModbusMaster master = mWorker.getModbusMaster();
+            if (master == null) {
+                it.remove();
+                task.future.fail(new ModbusInitException(ModbusWorker.NO_INIT_MESSAGE));
+                continue;
+            }
+            if (mInFlight.get() >= mWorker.getMaxInFlight(master)) {
+                break;
+            }
+
+            Integer slaveId = request.getSlaveId();
+            if (held != null && held.contains(slaveId)) {
+                continue;
+            }
+            long delay = mPacer.delay(slaveId, busInterval, now);
+            if (delay > 0) {
+                if (delay != SendPacer.BLOCKED
+                    && (wakeAt == SendPacer.BLOCKED || now + delay - wakeAt < 0)) {
+                    wakeAt = now + delay;
+                }
+                if (held == null) {
+                    held = new HashSet<>();
+                }
+                held.add(slaveId);
+                continue;
+            }
+
+            it.remove();
+            mInFlight.incrementAndGet();
+            mPacer.sent(slaveId);
+            request.send(master);
+        }
+        return wakeAt;
+    }
+
+    /**
+     * 到时间再派发一次
+     *
+     * @param at {@link System#nanoTime()}的时间
+     */
+    private void wakeAt(long at) {
+        if (mWake != null) {
+            if (mWakeAt - at <= 0) {
+                // 已经安排了不晚于它的
+                return;
+            }
+            mWake.cancel(false);
+        }
+        try {
+            mWake = mExecutor.schedule(mWakeTask, at - System.nanoTime(), TimeUnit.NANOSECONDS);
+            mWakeAt = at;
+        } catch (RejectedExecutionException e) {
+            // 已经release
+            mWake = null;
+        }
+    }
+
+    private abstract static class Task<T> {
+        final SettableFuture<T> future = new SettableFuture<>();
+    }
+
+    private static class CallableTask<T> extends Task<T> {
+        private final Callable<T> mCallable;
+
+        CallableTask(Callable<T> callable) {
+            mCallable = callable;
+        }
+
+        void run() {
+            try {
+                future.complete(mCallable.call());
+            } catch (Exception e) {
+                future.fail(e);
+            }
+        }
+    }
+
+    private class RequestTask<T extends ModbusResponse> extends Task<T>
+        implements FutureListener<ModbusResponse> {
+
+        private final ModbusRequest mRequest;
+
+        RequestTask(ModbusRequest request) {
+            mRequest = request;
+        }
+
+        int getSlaveId() {
+            return mRequest.getSlaveId();
+        }
+
+        void send(ModbusMaster master) {
+            try {
+                master.sendAsync(mRequest).addListener(this);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void completed(ModbusResponse response) {
+            done();
+            if (response != null && response.isException()) {
+                future.fail(new ModbusRespException(response));
+            } else {
+                future.complete((T) response);
+            }
+            schedule();
+        }
+
+        @Override
+        public void failed(Exception e) {
+            done();
+            future.fail(e);
+            schedule();
+        }
+
+        private void done() {
+            mPacer.completed(getSlaveId(), System.nanoTime());
+            mInFlight.decrementAndGet();
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.licheedev.modbus4android;
 
-import android.annotation.SuppressLint;
-import android.os.AsyncTask;
-import android.os.SystemClock;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.exception.ModbusInitException;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
 import com.serotonin.modbus4j.msg.ReadCoilsRequest;
 import com.serotonin.modbus4j.msg.ReadCoilsResponse;
 import com.serotonin.modbus4j.msg.ReadDiscreteInputsRequest;
@@ -24,11 +25,14 @@ import com.serotonin.modbus4j.msg.WriteRegisterRequest;
 import com.serotonin.modbus4j.msg.WriteRegisterResponse;
 import com.serotonin.modbus4j.msg.WriteRegistersRequest;
 import com.serotonin.modbus4j.msg.WriteRegistersResponse;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ModbusWorker实现，实现了初始化modbus，并增加了线圈、离散量输入、寄存器的读写方法
@@ -37,17 +41,32 @@ public class ModbusWorker implements IModbusWorker {
 
     private static final String TAG = "IModbusWorker";
 
-    private static final String NO_INIT_MESSAGE = "ModbusMaster hasn't been inited!";
+    static final String NO_INIT_MESSAGE = "ModbusMaster hasn't been inited!";
 
-    private final ExecutorService mRequestExecutor;
+    private final ScheduledExecutorService mRequestExecutor;
+    private final SendPacer mSendPacer;
+    private final ModbusRequestQueue mRequestQueue;
+    private final ModbusPoller mPoller;
+    private final Handler mMainHandler;
+    private final Executor mMainExecutor;
 
     protected ModbusMaster mModbusMaster;
-    private long mSendTime;
-    private long mSendIntervalTime;
+    private volatile long mSendIntervalTime;
+    private volatile int mMaxInFlight;
 
     public ModbusWorker() {
-        // modbus请求用的单一线程池
-        mRequestExecutor = Executors.newSingleThreadExecutor();
+        // 请求队列的派发线程，只负责把请求交给ModbusMaster，不等待响应
+        mRequestExecutor = Executors.newSingleThreadScheduledExecutor();
+        mSendPacer = new SendPacer();
+        mRequestQueue = new ModbusRequestQueue(this, mRequestExecutor, mSendPacer);
+        mPoller = new ModbusPoller(this, mRequestExecutor);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mMainHandler.post(command);
+            }
+        };
     }
 
     /**
@@ -70,6 +89,7 @@ public class ModbusWorker implements IModbusWorker {
      */
     @Override
     public synchronized void release() {
+        mPoller.clear();
         closeModbusMaster();
         mRequestExecutor.shutdown();
     }
@@ -104,7 +124,8 @@ public class ModbusWorker implements IModbusWorker {
     }
 
     /**
-     * 设置两次发送命令之间必须要等待的时间
+     * 设置两次发送命令之间必须要等待的时间，从上一次命令完成算起，对所有从设备生效。
+     * 到时间才派发下一个命令，不会让请求队列的线程等待
      *
      * @param ms
      * @return
@@ -117,6 +138,97 @@ public class ModbusWorker implements IModbusWorker {
         }
 
         mSendIntervalTime = ms;
+        mRequestQueue.schedule();
+    }
+
+    /**
+     * 发给某个从设备的命令间隔时间
+     *
+     * @param slaveId 从设备ID
+     * @return 0表示只受{@link #getSendIntervalTime()}限制
+     */
+    public long getSendIntervalTime(int slaveId) {
+        return TimeUnit.NANOSECONDS.toMillis(mSendPacer.getInterval(slaveId));
+    }
+
+    /**
+     * 设置发给某个从设备的两次命令之间必须要等待的时间，从上一次命令完成算起。
+     * 等待期间发给其他从设备的命令不受影响，但同一从设备同时只有一个命令在途
+     *
+     * @param slaveId 从设备ID
+     * @param ms 0表示不单独限制
+     */
+    public void setSendIntervalTime(int slaveId, long ms) {
+
+        if (ms < 0) {
+            throw new IllegalArgumentException(
+                "Send interval time should not be negative, but now ms=" + ms);
+        }
+
+        mSendPacer.setInterval(slaveId, TimeUnit.MILLISECONDS.toNanos(ms));
+        mRequestQueue.schedule();
+    }
+
+    /**
+     * 同时交给ModbusMaster的最大请求数，0表示由ModbusMaster决定（{@link ModbusMaster#getPipelineDepth()}）
+     *
+     * @return
+     */
+    public int getMaxInFlight() {
+        return mMaxInFlight;
+    }
+
+    /**
+     * 设置同时交给ModbusMaster的最大请求数，0表示由ModbusMaster决定
+     *
+     * @param maxInFlight
+     */
+    public void setMaxInFlight(int maxInFlight) {
+
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException(
+                "Max in flight should not be negative, but now maxInFlight=" + maxInFlight);
+        }
+
+        mMaxInFlight = maxInFlight;
+        mRequestQueue.schedule();
+    }
+
+    /**
+     * 对指定ModbusMaster，同时在途的最大请求数
+     *
+     * @param master
+     * @return
+     */
+    protected int getMaxInFlight(ModbusMaster master) {
+        if (getSendIntervalTime() > 0) {
+            // 需要控制发送间隔，一问一答
+            return 1;
+        }
+        int max = mMaxInFlight;
+        return max > 0 ? max : Math.max(1, master.getPipelineDepth());
+    }
+
+    /**
+     * 请求入队，不阻塞。返回的Future在ModbusMaster的线程上完成，添加的监听不能阻塞
+     *
+     * @param request
+     * @param <T>
+     * @return 响应包含错误时以{@link ModbusRespException}失败
+     */
+    public <T extends ModbusResponse> SettableFuture<T> submit(ModbusRequest request) {
+        return mRequestQueue.enqueue(request);
+    }
+
+    /**
+     * 任务入队，不阻塞。任务会等之前的请求全部完成后，在请求队列的线程上独占执行
+     *
+     * @param callable
+     * @param <T>
+     * @return
+     */
+    public <T> SettableFuture<T> submit(Callable<T> callable) {
+        return mRequestQueue.enqueue(callable);
     }
 
     /**
@@ -135,34 +247,49 @@ public class ModbusWorker implements IModbusWorker {
         throws InterruptedException, ModbusInitException, ModbusTransportException,
         ModbusRespException, ExecutionException {
 
-        Future<T> submit = null;
-        try {
+        return await(submit(callable));
+    }
 
-            Callable<T> finalCallable = callable;
+    /**
+     * 通用的同步请求方法
+     *
+     * @param request
+     * @param <T>
+     * @return
+     * @throws InterruptedException
+     * @throws ModbusInitException
+     * @throws ModbusTransportException
+     * @throws ModbusRespException
+     * @throws ExecutionException
+     */
+    public <T extends ModbusResponse> T doSync(ModbusRequest request)
+        throws InterruptedException, ModbusInitException, ModbusTransportException,
+        ModbusRespException, ExecutionException {
 
-            if (getSendIntervalTime() > 0) {
-                finalCallable = new Callable<T>() {
-                    @Override
-                    public T call() throws Exception {
-                        if (mSendTime > 0) {
-                            long offset =
-                                (getSendIntervalTime() - SystemClock.uptimeMillis() - mSendTime);
-                            if (offset > 0) {
-                                SystemClock.sleep(offset);
-                            }
-                        }
-                        T result = callable.call();
-                        mSendTime = SystemClock.uptimeMillis();
-                        return result;
-                    }
-                };
-            }
-            submit = mRequestExecutor.submit(finalCallable);
-            return submit.get();
+        return await(this.<T>submit(request));
+    }
+
+    /**
+     * 等待Future完成
+     *
+     * @param future
+     * @param <T>
+     * @return
+     * @throws InterruptedException
+     * @throws ModbusInitException
+     * @throws ModbusTransportException
+     * @throws ModbusRespException
+     * @throws ExecutionException
+     */
+    protected <T> T await(SettableFuture<T> future)
+        throws InterruptedException, ModbusInitException, ModbusTransportException,
+        ModbusRespException, ExecutionException {
+
+        try {
+            return future.get();
         } catch (InterruptedException e) {
-            if (submit != null) {
-                submit.cancel(true);
-            }
+            // 还没发出去的话就不发了
+            future.cancel(false);
             Thread.currentThread().interrupt();
             throw e;
         } catch (ExecutionException e) {
@@ -174,42 +301,59 @@ public class ModbusWorker implements IModbusWorker {
                 throw ((ModbusTransportException) cause);
             } else if (cause instanceof ModbusRespException) {
                 throw ((ModbusRespException) cause);
+            } else if (cause instanceof IllegalStateException) {
+                // 已经release
+                throw ((IllegalStateException) cause);
             } else {
                 throw e;
             }
         }
     }
 
-    /** 异步执行任务 */
-    @SuppressLint("StaticFieldLeak")
-    protected class AsyncCallableTask<T> extends AsyncTask<Void, Void, Object> {
-
-        private final Callable<T> mCallable;
-        private final ModbusCallback<T> mCallback;
-
-        public AsyncCallableTask(Callable<T> callable, ModbusCallback<T> callback) {
-            mCallable = callable;
-            mCallback = callback;
-        }
-
-        @Override
-        protected Object doInBackground(Void... voids) {
-            try {
-                return doSync(mCallable);
-            } catch (Throwable e) {
-                return e;
+    /**
+     * 在UI线程回调结果
+     *
+     * @param future
+     * @param callback
+     * @param <T>
+     */
+    protected <T> void callback(SettableFuture<T> future, final ModbusCallback<T> callback) {
+        future.addListener(new FutureListener<T>() {
+            @Override
+            public void completed(final T t) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSuccess(t);
+                        callback.onFinally();
+                    }
+                });
             }
-        }
 
-        @Override
-        protected void onPostExecute(Object o) {
-            if (o instanceof Throwable) {
-                mCallback.onFailure((Throwable) o);
-            } else {
-                mCallback.onSuccess((T) o);
+            @Override
+            public void failed(final Exception e) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onFailure(e);
+                        callback.onFinally();
+                    }
+                });
             }
-            mCallback.onFinally();
-        }
+        });
+    }
+
+    /**
+     * 已经失败的Future，用于请求创建失败时
+     *
+     * @param e
+     * @param <T>
+     * @return
+     */
+    protected static <T> SettableFuture<T> failed(Exception e) {
+        SettableFuture<T> future = new SettableFuture<>();
+        future.fail(e);
+        return future;
     }
     //</editor-fold>
 
@@ -228,7 +372,7 @@ public class ModbusWorker implements IModbusWorker {
             public ModbusMaster call() throws Exception {
 
                 // 重置发送时间
-                mSendTime = 0;
+                mSendPacer.reset();
 
                 if (mModbusMaster != null) {
                     mModbusMaster.destroy();
@@ -283,7 +427,7 @@ public class ModbusWorker implements IModbusWorker {
     @Override
     public void init(final ModbusParam param, final ModbusCallback<ModbusMaster> callback) {
 
-        new AsyncCallableTask<>(callableInit(param), callback).execute();
+        callback(submit(callableInit(param)), callback);
     }
     //</editor-fold>
 
@@ -311,6 +455,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 01 (0x01)读线圈，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 线圈数量
+     * @return
+     */
+    public SettableFuture<ReadCoilsResponse> submitReadCoil(
+        final int slaveId, final int start, final int len
+    ) {
+        try {
+            return submit(new ReadCoilsRequest(slaveId, start, len));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 01 (0x01)读线圈，同步，需在子线程运行
      *
@@ -326,7 +488,7 @@ public class ModbusWorker implements IModbusWorker {
         throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableReadCoil(slaveId, start, len));
+        return await(submitReadCoil(slaveId, start, len));
     }
 
     /**
@@ -341,7 +503,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final int len,
         final ModbusCallback<ReadCoilsResponse> callback
     ) {
-        new AsyncCallableTask<>(callableReadCoil(slaveId, start, len), callback).execute();
+        callback(submitReadCoil(slaveId, start, len), callback);
     }
     //</editor-fold>
 
@@ -371,6 +533,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 02（0x02）读离散量输入，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 输入数量
+     * @return
+     */
+    public SettableFuture<ReadDiscreteInputsResponse> submitReadDiscreteInput(
+        final int slaveId, final int start, final int len
+    ) {
+        try {
+            return submit(new ReadDiscreteInputsRequest(slaveId, start, len));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 02（0x02）读离散量输入，同步，需在子线程运行
      *
@@ -388,7 +568,7 @@ public class ModbusWorker implements IModbusWorker {
     ) throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableReadDiscreteInput(slaveId, start, len));
+        return await(submitReadDiscreteInput(slaveId, start, len));
     }
 
     /**
@@ -403,7 +583,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final int len,
         final ModbusCallback<ReadDiscreteInputsResponse> callback
     ) {
-        new AsyncCallableTask<>(callableReadDiscreteInput(slaveId, start, len), callback).execute();
+        callback(submitReadDiscreteInput(slaveId, start, len), callback);
     }
     //</editor-fold>
 
@@ -434,6 +614,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 03 (0x03)读保持寄存器，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @return
+     */
+    public SettableFuture<ReadHoldingRegistersResponse> submitReadHoldingRegisters(
+        final int slaveId, final int start, final int len
+    ) {
+        try {
+            return submit(new ReadHoldingRegistersRequest(slaveId, start, len));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 03 (0x03)读保持寄存器，同步，需在子线程运行
      *
@@ -450,7 +648,7 @@ public class ModbusWorker implements IModbusWorker {
         final int len
     ) throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
-        return doSync(callableReadHoldingRegisters(slaveId, start, len));
+        return await(submitReadHoldingRegisters(slaveId, start, len));
     }
 
     /**
@@ -465,10 +663,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final int len,
         final ModbusCallback<ReadHoldingRegistersResponse> callback
     ) {
-        new AsyncCallableTask<>(
-            callableReadHoldingRegisters(slaveId, start, len),
-            callback
-        ).execute();
+        callback(submitReadHoldingRegisters(slaveId, start, len), callback);
     }
     //</editor-fold>
 
@@ -498,6 +693,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 04（0x04）读输入寄存器，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @return
+     */
+    public SettableFuture<ReadInputRegistersResponse> submitReadInputRegisters(
+        final int slaveId, final int start, final int len
+    ) {
+        try {
+            return submit(new ReadInputRegistersRequest(slaveId, start, len));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 04（0x04）读输入寄存器，同步，需在子线程运行
      *
@@ -515,7 +728,7 @@ public class ModbusWorker implements IModbusWorker {
     ) throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableReadInputRegisters(slaveId, start, len));
+        return await(submitReadInputRegisters(slaveId, start, len));
     }
 
     /**
@@ -530,10 +743,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final int len,
         final ModbusCallback<ReadInputRegistersResponse> callback
     ) {
-        new AsyncCallableTask<>(
-            callableReadInputRegisters(slaveId, start, len),
-            callback
-        ).execute();
+        callback(submitReadInputRegisters(slaveId, start, len), callback);
     }
     //</editor-fold>
 
@@ -562,6 +772,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 05（0x05）写单个线圈，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param offset 输出地址
+     * @param value 输出值
+     * @return
+     */
+    public SettableFuture<WriteCoilResponse> submitWriteCoil(
+        final int slaveId, final int offset, final boolean value
+    ) {
+        try {
+            return submit(new WriteCoilRequest(slaveId, offset, value));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 05（0x05）写单个线圈，同步，需在子线程运行
      *
@@ -577,7 +805,7 @@ public class ModbusWorker implements IModbusWorker {
         throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableWriteCoil(slaveId, offset, value));
+        return await(submitWriteCoil(slaveId, offset, value));
     }
 
     /**
@@ -593,7 +821,7 @@ public class ModbusWorker implements IModbusWorker {
         final ModbusCallback<WriteCoilResponse> callback
     ) {
 
-        new AsyncCallableTask<>(callableWriteCoil(slaveId, offset, value), callback).execute();
+        callback(submitWriteCoil(slaveId, offset, value), callback);
     }
     //</editor-fold>
 
@@ -623,6 +851,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 06 (0x06) 写单个寄存器，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param offset 寄存器地址
+     * @param value 寄存器值
+     * @return
+     */
+    public SettableFuture<WriteRegisterResponse> submitWriteSingleRegister(
+        final int slaveId, final int offset, final int value
+    ) {
+        try {
+            return submit(new WriteRegisterRequest(slaveId, offset, value));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 06 (0x06) 写单个寄存器, 同步，需在子线程运行
      *
@@ -637,7 +883,7 @@ public class ModbusWorker implements IModbusWorker {
     ) throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableWriteSingleRegister(slaveId, offset, value));
+        return await(submitWriteSingleRegister(slaveId, offset, value));
     }
 
     /**
@@ -651,10 +897,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int offset, final int value,
         final ModbusCallback<WriteRegisterResponse> callback
     ) {
-        new AsyncCallableTask<>(
-            callableWriteSingleRegister(slaveId, offset, value),
-            callback
-        ).execute();
+        callback(submitWriteSingleRegister(slaveId, offset, value), callback);
     }
 
     //</editor-fold>
@@ -684,6 +927,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 15（0x0F）写多个线圈，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param values 输出值
+     * @return
+     */
+    public SettableFuture<WriteCoilsResponse> submitWriteCoils(
+        final int slaveId, final int start, final boolean[] values
+    ) {
+        try {
+            return submit(new WriteCoilsRequest(slaveId, start, values));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 15（0x0F）写多个线圈, 同步，需在子线程运行
      *
@@ -702,7 +963,7 @@ public class ModbusWorker implements IModbusWorker {
         throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableWriteCoils(slaveId, start, values));
+        return await(submitWriteCoils(slaveId, start, values));
     }
 
     /**
@@ -716,7 +977,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final boolean[] values,
         final ModbusCallback<WriteCoilsResponse> callback
     ) {
-        new AsyncCallableTask<>(callableWriteCoils(slaveId, start, values), callback).execute();
+        callback(submitWriteCoils(slaveId, start, values), callback);
     }
 
     //</editor-fold>
@@ -747,6 +1008,24 @@ public class ModbusWorker implements IModbusWorker {
         };
     }
 
+    /**
+     * 16 (0x10) 写多个寄存器，不阻塞
+     *
+     * @param slaveId 从设备ID
+     * @param start 开始寄存器地址
+     * @param values 寄存器值
+     * @return
+     */
+    public SettableFuture<WriteRegistersResponse> submitWriteRegisters(
+        final int slaveId, final int start, final short[] values
+    ) {
+        try {
+            return submit(new WriteRegistersRequest(slaveId, start, values));
+        } catch (ModbusTransportException e) {
+            return failed(e);
+        }
+    }
+
     /**
      * 16 (0x10) 写多个寄存器, 同步，需在子线程运行
      *
@@ -762,7 +1041,7 @@ public class ModbusWorker implements IModbusWorker {
         throws InterruptedException, ExecutionException, ModbusTransportException,
         ModbusInitException, ModbusRespException {
 
-        return doSync(callableWriteRegisters(slaveId, start, values));
+        return await(submitWriteRegisters(slaveId, start, values));
     }
 
     /**
@@ -776,7 +1055,7 @@ public class ModbusWorker implements IModbusWorker {
         final int slaveId, final int start, final short[] values,
         final ModbusCallback<WriteRegistersResponse> callback
     ) {
-        new AsyncCallableTask<>(callableWriteRegisters(slaveId, start, values), callback).execute();
+        callback(submitWriteRegisters(slaveId, start, values), callback);
     }
     //</editor-fold>
 
@@ -813,4 +1092,41 @@ public class ModbusWorker implements IModbusWorker {
         writeRegisters(slaveId, start, new short[] { (short) value }, callback);
     }
     //</editor-fold>
+
+    //<editor-fold desc="连续轮询">
+
+    /**
+     * 连续轮询，马上读一次，之后每隔period读一次，值有变化时在UI线程回调。
+     * 周期成倍数的订阅对齐到同一时刻，地址重叠或相邻的合并成一次读取；
+     * 上一次还没读完时跳过这一次，不会堆积请求。重新初始化后订阅继续有效
+     *
+     * @param spec 轮询的数据范围
+     * @param period 轮询周期，毫秒
+     * @param listener
+     * @return 不再需要时调用{@link PollSubscription#unsubscribe()}
+     */
+    public PollSubscription subscribe(PollSpec spec, long period, PollListener listener) {
+        return subscribe(spec, period, listener, mMainExecutor);
+    }
+
+    /**
+     * 连续轮询，在指定的线程回调
+     *
+     * @param spec 轮询的数据范围
+     * @param period 轮询周期，毫秒
+     * @param listener
+     * @param executor 回调的线程，null表示直接在ModbusMaster的线程回调，回调不能阻塞
+     * @return 不再需要时调用{@link PollSubscription#unsubscribe()}
+     */
+    public PollSubscription subscribe(PollSpec spec, long period, PollListener listener,
+        Executor executor) {
+
+        if (period <= 0) {
+            throw new IllegalArgumentException(
+                "Poll period should be positive, but now period=" + period);
+        }
+
+        return mPoller.subscribe(spec, TimeUnit.MILLISECONDS.toNanos(period), listener, executor);
+    }
+    //</editor-fold>
 }
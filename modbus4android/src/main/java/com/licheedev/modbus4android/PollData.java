@@ -0,0 +1,39 @@
+package com.licheedev.modbus4android;
+
+/**
+ * 轮询到的数据，每次变化都是新的对象，可以直接保存
+ */
+public final class PollData {
+
+    private final PollSpec mSpec;
+    private final short[] mShortData;
+    private final boolean[] mBooleanData;
+
+    PollData(PollSpec spec, short[] shortData, boolean[] booleanData) {
+        mSpec = spec;
+        mShortData = shortData;
+        mBooleanData = booleanData;
+    }
+
+    public PollSpec getSpec() {
+        return mSpec;
+    }
+
+    /**
+     * 寄存器的值，下标0对应{@link PollSpec#getStart()}
+     *
+     * @return 读线圈/离散量时为null
+     */
+    public short[] getShortData() {
+        return mShortData;
+    }
+
+    /**
+     * 线圈/离散量的值，下标0对应{@link PollSpec#getStart()}
+     *
+     * @return 读寄存器时为null
+     */
+    public boolean[] getBooleanData() {
+        return mBooleanData;
+    }
+}
@@ -0,0 +1,28 @@
+package com.licheedev.modbus4android;
+
+import com.serotonin.modbus4j.exception.ModbusInitException;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+
+/**
+ * 轮询监听
+ */
+public interface PollListener {
+
+    /**
+     * 读到的值有变化，第一次读到、或者失败后重新读到时也会回调
+     *
+     * @param data
+     */
+    void onChanged(PollData data);
+
+    /**
+     * 读取失败，连续失败只回调一次，之后继续轮询
+     *
+     * @param spec
+     * @param tr
+     * @see ModbusInitException 初始化失败或者没有初始化时的异常
+     * @see ModbusTransportException modbus请求失败的异常
+     * @see ModbusRespException modbus有响应，但是包含错误
+     */
+    void onFailure(PollSpec spec, Throwable tr);
+}
@@ -0,0 +1,157 @@
+package com.licheedev.modbus4android;
+
+import com.serotonin.modbus4j.code.FunctionCode;
+
+/**
+ * 轮询的数据范围：某个从设备的一段线圈、离散量输入、保持寄存器或输入寄存器
+ */
+public final class PollSpec {
+
+    /** 一次最多读的线圈/离散量数量 */
+    public static final int MAX_BIT_COUNT = 2000;
+    /** 一次最多读的寄存器数量 */
+    public static final int MAX_REGISTER_COUNT = 125;
+
+    private final int mSlaveId;
+    private final byte mFunctionCode;
+    private final int mStart;
+    private final int mLen;
+
+    private PollSpec(int slaveId, byte functionCode, int start, int len) {
+
+        int max = isBit(functionCode) ? MAX_BIT_COUNT : MAX_REGISTER_COUNT;
+        if (len < 1 || len > max) {
+            throw new IllegalArgumentException(
+                "Poll length should be in 1.." + max + ", but now len=" + len);
+        }
+        if (start < 0 || start + len > 0x10000) {
+            throw new IllegalArgumentException(
+                "Poll range out of 0..65535, start=" + start + ", len=" + len);
+        }
+
+        mSlaveId = slaveId;
+        mFunctionCode = functionCode;
+        mStart = start;
+        mLen = len;
+    }
+
+    /**
+     * 01 (0x01)读线圈
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 线圈数量
+     * @return
+     */
+    public static PollSpec coils(int slaveId, int start, int len) {
+        return new PollSpec(slaveId, FunctionCode.READ_COILS, start, len);
+    }
+
+    /**
+     * 02（0x02）读离散量输入
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 输入数量
+     * @return
+     */
+    public static PollSpec discreteInputs(int slaveId, int start, int len) {
+        return new PollSpec(slaveId, FunctionCode.READ_DISCRETE_INPUTS, start, len);
+    }
+
+    /**
+     * 03 (0x03)读保持寄存器
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @return
+     */
+    public static PollSpec holdingRegisters(int slaveId, int start, int len) {
+        return new PollSpec(slaveId, FunctionCode.READ_HOLDING_REGISTERS, start, len);
+    }
+
+    /**
+     * 04（0x04）读输入寄存器
+     *
+     * @param slaveId 从设备ID
+     * @param start 起始地址
+     * @param len 寄存器数量
+     * @return
+     */
+    public static PollSpec inputRegisters(int slaveId, int start, int len) {
+        return new PollSpec(slaveId, FunctionCode.READ_INPUT_REGISTERS, start, len);
+    }
+
+    static boolean isBit(byte functionCode) {
+        return functionCode == FunctionCode.READ_COILS
+            || functionCode == FunctionCode.READ_DISCRETE_INPUTS;
+    }
+
+    public int getSlaveId() {
+        return mSlaveId;
+    }
+
+    public byte getFunctionCode() {
+        return mFunctionCode;
+    }
+
+    public int getStart() {
+        return mStart;
+    }
+
+    public int getLen() {
+        return mLen;
+    }
+
+    /**
+     * 结束地址（不含）
+     *
+     * @return
+     */
+    public int getEnd() {
+        return mStart + mLen;
+    }
+
+    /**
+     * 是否读线圈或离散量
+     *
+     * @return
+     */
+    public boolean isBit() {
+        return isBit(mFunctionCode);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PollSpec)) {
+            return false;
+        }
+        PollSpec that = (PollSpec) o;
+        return mSlaveId == that.mSlaveId
+            && mFunctionCode == that.mFunctionCode
+            && mStart == that.mStart
+            && mLen == that.mLen;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSlaveId;
+        result = 31 * result + mFunctionCode;
+        result = 31 * result + mStart;
+        result = 31 * result + mLen;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PollSpec{slaveId=" + mSlaveId
+            + ", functionCode=" + mFunctionCode
+            + ", start=" + mStart
+            + ", len=" + mLen
+            + '}';
+    }
+}
@@ -0,0 +1,166 @@
+package com.licheedev.modbus4android;
+
+import com.serotonin.modbus4j.base.ModbusUtils;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轮询订阅，不再需要时调用{@link #unsubscribe()}
+ */
+public final class PollSubscription {
+
+    private final ModbusPoller mPoller;
+    private final PollSpec mSpec;
+    private final long mPeriod;
+    private final PollListener mListener;
+    private final Executor mExecutor;
+    private volatile boolean mUnsubscribed;
+
+    // 以下由ModbusPoller加锁访问
+    /** 下一次轮询的时间，{@link System#nanoTime()}的纳秒 */
+    long nextDue;
+    /** 上一次的读取还没完成 */
+    boolean pending;
+    private short[] mShortData;
+    private boolean[] mBooleanData;
+    private boolean mFailed;
+
+    PollSubscription(ModbusPoller poller, PollSpec spec, long periodNanos, PollListener listener,
+        Executor executor) {
+        mPoller = poller;
+        mSpec = spec;
+        mPeriod = periodNanos;
+        mListener = listener;
+        mExecutor = executor;
+    }
+
+    public PollSpec getSpec() {
+        return mSpec;
+    }
+
+    /**
+     * 轮询周期
+     *
+     * @return 毫秒
+     */
+    public long getPeriod() {
+        return TimeUnit.NANOSECONDS.toMillis(mPeriod);
+    }
+
+    long getPeriodNanos() {
+        return mPeriod;
+    }
+
+    /**
+     * 取消订阅，之后不会再回调
+     */
+    public void unsubscribe() {
+        if (!mUnsubscribed) {
+            mUnsubscribed = true;
+            mPoller.remove(this);
+        }
+    }
+
+    public boolean isUnsubscribed() {
+        return mUnsubscribed;
+    }
+
+    /**
+     * 用一次读取的数据更新
+     *
+     * @param data 读取响应的数据
+     * @param readStart 读取的起始地址
+     * @return 有变化时的回调，否则为null
+     */
+    Runnable update(byte[] data, int readStart) {
+        int offset = mSpec.getStart() - readStart;
+        int len = mSpec.getLen();
+        boolean changed = mFailed;
+        mFailed = false;
+
+        if (mSpec.isBit()) {
+            boolean[] last = mBooleanData;
+            changed |= last == null;
+            for (int i = 0; !changed && i < len; i++) {
+                changed = last[i] != bit(data, offset + i);
+            }
+            if (!changed) {
+                return null;
+            }
+            boolean[] values = new boolean[len];
+            for (int i = 0; i < len; i++) {
+                values[i] = bit(data, offset + i);
+            }
+            mBooleanData = values;
+            return changed(new PollData(mSpec, null, values));
+        }
+
+        short[] last = mShortData;
+        changed |= last == null;
+        for (int i = 0; !changed && i < len; i++) {
+            changed = last[i] != register(data, offset + i);
+        }
+        if (!changed) {
+            return null;
+        }
+        short[] values = new short[len];
+        for (int i = 0; i < len; i++) {
+            values[i] = register(data, offset + i);
+        }
+        mShortData = values;
+        return changed(new PollData(mSpec, values, null));
+    }
+
+    /**
+     * 读取失败
+     *
+     * @param e
+     * @return 连续失败时为null
+     */
+    Runnable fail(final Exception e) {
+        if (mFailed) {
+            return null;
+        }
+        mFailed = true;
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!mUnsubscribed) {
+                    mListener.onFailure(mSpec, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 在指定的线程回调
+     *
+     * @param callback
+     */
+    void deliver(Runnable callback) {
+        if (mExecutor == null) {
+            callback.run();
+        } else {
+            mExecutor.execute(callback);
+        }
+    }
+
+    private Runnable changed(final PollData pollData) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!mUnsubscribed) {
+                    mListener.onChanged(pollData);
+                }
+            }
+        };
+    }
+
+    private static boolean bit(byte[] data, int index) {
+        return ((data[index / 8] >> (index % 8)) & 0x1) == 1;
+    }
+
+    private static short register(byte[] data, int index) {
+        return ModbusUtils.toShort(data[index * 2], data[index * 2 + 1]);
+    }
+}
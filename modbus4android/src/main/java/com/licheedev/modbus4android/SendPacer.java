@@ -0,0 +1,130 @@
+package com.licheedev.modbus4android;
+
+import java.util.HashMap;
+
+/**
+ * 发送节拍，按截止时间放行请求，本身不等待。
+ * <p>
+ * 总线间隔：任一请求完成后，至少隔这么久才发下一帧。
+ * <p>
+ * 设备间隔：发给某个从设备的请求完成后，至少隔这么久才再发给它，期间它最多只有一个请求在途，其他从设备不受影响。
+ * <p>
+ * 时间都是{@link System#nanoTime()}的纳秒。
+ */
+class SendPacer {
+
+    /** 不能按时间放行，要等该从设备的在途请求完成 */
+    static final long BLOCKED = Long.MAX_VALUE;
+
+    /** 不属于任何从设备的任务，如初始化 */
+    static final int NO_SLAVE = -1;
+
+    private final HashMap<Integer, Slave> mSlaves = new HashMap<>();
+    private boolean mBusPaced;
+    private long mBusDoneAt;
+
+    /**
+     * 设置从设备的发送间隔
+     *
+     * @param slaveId
+     * @param intervalNanos 0表示不限制
+     */
+    synchronized void setInterval(int slaveId, long intervalNanos) {
+        if (intervalNanos <= 0) {
+            mSlaves.remove(slaveId);
+            return;
+        }
+        Slave slave = mSlaves.get(slaveId);
+        if (slave == null) {
+            slave = new Slave();
+            mSlaves.put(slaveId, slave);
+        }
+        slave.interval = intervalNanos;
+    }
+
+    /**
+     * 从设备的发送间隔
+     *
+     * @param slaveId
+     * @return 0表示不限制
+     */
+    synchronized long getInterval(int slaveId) {
+        Slave slave = mSlaves.get(slaveId);
+        return slave == null ? 0 : slave.interval;
+    }
+
+    /**
+     * 距离可以发给从设备还有多久
+     *
+     * @param slaveId
+     * @param busIntervalNanos 总线间隔
+     * @param now
+     * @return 0表示现在就可以发，{@link #BLOCKED}表示要等在途请求完成
+     */
+    synchronized long delay(int slaveId, long busIntervalNanos, long now) {
+        long delay = 0;
+        if (busIntervalNanos > 0 && mBusPaced) {
+            delay = mBusDoneAt + busIntervalNanos - now;
+        }
+
+        Slave slave = mSlaves.get(slaveId);
+        if (slave != null) {
+            if (slave.inFlight > 0) {
+                return BLOCKED;
+            }
+            if (slave.paced) {
+                delay = Math.max(delay, slave.doneAt + slave.interval - now);
+            }
+        }
+        return delay > 0 ? delay : 0;
+    }
+
+    /**
+     * 请求已交给ModbusMaster
+     *
+     * @param slaveId
+     */
+    synchronized void sent(int slaveId) {
+        Slave slave = mSlaves.get(slaveId);
+        if (slave != null) {
+            slave.inFlight++;
+        }
+    }
+
+    /**
+     * 请求已完成（无论成功失败），从现在开始计算间隔
+     *
+     * @param slaveId
+     * @param now
+     */
+    synchronized void completed(int slaveId, long now) {
+        mBusPaced = true;
+        mBusDoneAt = now;
+        Slave slave = mSlaves.get(slaveId);
+        if (slave != null) {
+            if (slave.inFlight > 0) {
+                slave.inFlight--;
+            }
+            slave.paced = true;
+            slave.doneAt = now;
+        }
+    }
+
+    /**
+     * 重新开始计时，如重新初始化后，下一帧不需要等待
+     */
+    synchronized void reset() {
+        mBusPaced = false;
+        for (Slave slave : mSlaves.values()) {
+            slave.paced = false;
+            slave.inFlight = 0;
+        }
+    }
+
+    private static class Slave {
+        long interval;
+        int inFlight;
+        boolean paced;
+        long doneAt;
+    }
+}
@@ -86,6 +86,21 @@ public class TcpParam implements ModbusParam<TcpParam> {
         return this;
     }
 
+    public int getPipelineWindow() {
+        return mParameters.getPipelineWindow();
+    }
+
+    /**
+     * 同时在途的请求数，需要keepAlive，默认1（一问一答）
+     *
+     * @param pipelineWindow
+     * @return
+     */
+    public TcpParam setPipelineWindow(int pipelineWindow) {
+        mParameters.setPipelineWindow(pipelineWindow);
+        return this;
+    }
+
     @Override
     public ModbusMaster createModbusMaster() {
         ModbusFactory modbusFactory = new ModbusFactory();
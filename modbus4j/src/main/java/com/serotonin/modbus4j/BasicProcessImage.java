@@ -21,9 +21,7 @@
 package com.serotonin.modbus4j;
 
 import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.serotonin.modbus4j.base.ModbusUtils;
@@ -41,7 +39,7 @@ import com.serotonin.modbus4j.locator.StringLocator;
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
-public class BasicProcessImage implements ProcessImage {
+public class BasicProcessImage implements RangeProcessImage {
     private final int slaveId;
     private boolean allowInvalidAddress = false;
     private short invalidAddressValue = 0;
@@ -50,7 +48,7 @@ public class BasicProcessImage implements ProcessImage {
     private final Map<Integer, Boolean> inputs = new HashMap<>();
     private final Map<Integer, Short> holdingRegisters = new HashMap<>();
     private final Map<Integer, Short> inputRegisters = new HashMap<>();
-    private final List<ProcessImageListener> writeListeners = new ArrayList<>();
+    private final ProcessImageNotifier notifier = new ProcessImageNotifier();
     private byte exceptionStatus;
 
     /**
@@ -74,8 +72,8 @@ public class BasicProcessImage implements ProcessImage {
      *
      * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
      */
-    public synchronized void addListener(ProcessImageListener l) {
-        writeListeners.add(l);
+    public void addListener(ProcessImageListener l) {
+        notifier.addListener(l);
     }
 
     /**
@@ -83,8 +81,35 @@ public class BasicProcessImage implements ProcessImage {
      *
      * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
      */
-    public synchronized void removeListener(ProcessImageListener l) {
-        writeListeners.remove(l);
+    public void removeListener(ProcessImageListener l) {
+        notifier.removeListener(l);
+    }
+
+    /**
+     * <p>addRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void addRangeListener(ProcessImageRangeListener l) {
+        notifier.addRangeListener(l);
+    }
+
+    /**
+     * <p>removeRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void removeRangeListener(ProcessImageRangeListener l) {
+        notifier.removeRangeListener(l);
+    }
+
+    /**
+     * The notifier of the listeners, through which notifications can be made asynchronous and debounced.
+     *
+     * @return a {@link com.serotonin.modbus4j.ProcessImageNotifier} object.
+     */
+    public ProcessImageNotifier getNotifier() {
+        return notifier;
     }
 
     /**
@@ -459,8 +484,7 @@ public class BasicProcessImage implements ProcessImage {
         boolean old = getBoolean(offset, coils);
         setCoil(offset, value);
 
-        for (ProcessImageListener l : writeListeners)
-            l.coilWrite(offset, old, value);
+        notifier.coilWritten(offset, old, value);
     }
 
     //
@@ -499,8 +523,7 @@ public class BasicProcessImage implements ProcessImage {
         short old = getShort(offset, holdingRegisters);
         setHoldingRegister(offset, value);
 
-        for (ProcessImageListener l : writeListeners)
-            l.holdingRegisterWrite(offset, old, value);
+        notifier.holdingRegisterWritten(offset, old, value);
     }
 
     //
@@ -518,6 +541,64 @@ public class BasicProcessImage implements ProcessImage {
         inputRegisters.put(offset, value);
     }
 
+    //
+    // Ranges
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void readCoils(int offset, int count, boolean[] dst) throws IllegalDataAddressException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getBoolean(offset + i, coils);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void readInputs(int offset, int count, boolean[] dst) throws IllegalDataAddressException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getBoolean(offset + i, inputs);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void readHoldingRegisters(int offset, int count, short[] dst)
+            throws IllegalDataAddressException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getShort(offset + i, holdingRegisters);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void readInputRegisters(int offset, int count, short[] dst)
+            throws IllegalDataAddressException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getShort(offset + i, inputRegisters);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void writeCoils(int offset, boolean[] values) throws IllegalDataAddressException {
+        // Check the whole range before changing anything.
+        boolean[] old = new boolean[values.length];
+        readCoils(offset, values.length, old);
+        for (int i = 0; i < values.length; i++)
+            setCoil(offset + i, values[i]);
+
+        if (notifier.hasListeners())
+            notifier.coilsWritten(offset, old, values.clone());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void writeHoldingRegisters(int offset, short[] values) throws IllegalDataAddressException {
+        // Check the whole range before changing anything.
+        short[] old = new short[values.length];
+        readHoldingRegisters(offset, values.length, old);
+        for (int i = 0; i < values.length; i++)
+            setHoldingRegister(offset + i, values[i]);
+
+        if (notifier.hasListeners())
+            notifier.holdingRegistersWritten(offset, old, values.clone());
+    }
+
     //
     // Exception status
     /** {@inheritDoc} */
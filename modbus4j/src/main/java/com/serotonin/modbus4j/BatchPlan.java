@@ -0,0 +1,183 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.serotonin.modbus4j.base.KeyedModbusLocator;
+import com.serotonin.modbus4j.base.ReadFunctionGroup;
+import com.serotonin.modbus4j.code.ExceptionCode;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.locator.ValueDecoder;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+
+/**
+ * A batch read compiled for repeated polling. The requests of the batch are created once, with their encodings
+ * cached, and the decoder of every locator is chosen once, so that each poll only sends the requests and decodes the
+ * responses straight into the slots of a preallocated BatchPlanResults.
+ *
+ * Every distinct key of the batch is given an index, in the order of the requests, by which its result can also be
+ * read. The plan is a snapshot: locators added to the batch after it was compiled are not included. The error,
+ * exception and cancel settings of the batch are still honoured.
+ *
+ * @author Matthew Lohbihler
+ * @param <K> - Type of read
+ * @version 5.0.0
+ */
+public class BatchPlan<K> {
+    private final BatchRead<K> batch;
+    private final List<K> keys = new ArrayList<>();
+    private final Map<K, Integer> indexes = new HashMap<>();
+    private final ModbusRequest[] requests;
+
+    /**
+     * The locators of group g are at positions groupStarts[g] to groupStarts[g + 1] - 1 of the arrays below.
+     */
+    private final int[] groupStarts;
+    private final int[] resultIndexes;
+    private final int[] offsets;
+    private final ValueDecoder[] decoders;
+
+    BatchPlan(BatchRead<K> batch, ModbusMaster master) throws ModbusTransportException {
+        this.batch = batch;
+
+        List<ReadFunctionGroup<K>> functionGroups = batch.getReadFunctionGroups(master);
+        int locatorCount = 0;
+        for (ReadFunctionGroup<K> functionGroup : functionGroups)
+            locatorCount += functionGroup.getLocators().size();
+
+        requests = new ModbusRequest[functionGroups.size()];
+        groupStarts = new int[functionGroups.size() + 1];
+        resultIndexes = new int[locatorCount];
+        offsets = new int[locatorCount];
+        decoders = new ValueDecoder[locatorCount];
+
+        int position = 0;
+        for (int group = 0; group < requests.length; group++) {
+            ReadFunctionGroup<K> functionGroup = functionGroups.get(group);
+            requests[group] = master.createReadRequest(functionGroup);
+            groupStarts[group] = position;
+
+            for (KeyedModbusLocator<K> locator : functionGroup.getLocators()) {
+                Integer index = indexes.get(locator.getKey());
+                if (index == null) {
+                    index = keys.size();
+                    keys.add(locator.getKey());
+                    indexes.put(locator.getKey(), index);
+                }
+                resultIndexes[position] = index;
+                offsets[position] = locator.getOffset() - functionGroup.getStartOffset();
+                decoders[position] = locator.getLocator().getDecoder();
+                position++;
+            }
+        }
+        groupStarts[requests.length] = position;
+    }
+
+    /**
+     * <p>Getter for the field <code>batch</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.BatchRead} object.
+     */
+    public BatchRead<K> getBatch() {
+        return batch;
+    }
+
+    /**
+     * <p>getRequestCount.</p>
+     *
+     * @return the number of requests sent by each poll.
+     */
+    public int getRequestCount() {
+        return requests.length;
+    }
+
+    /**
+     * <p>getResultCount.</p>
+     *
+     * @return the number of distinct keys in the plan.
+     */
+    public int getResultCount() {
+        return keys.size();
+    }
+
+    /**
+     * <p>getIndex.</p>
+     *
+     * @param key a K object.
+     * @return the index of the result of the key, or -1 if the key is not in the plan.
+     */
+    public int getIndex(K key) {
+        Integer index = indexes.get(key);
+        if (index == null)
+            return -1;
+        return index;
+    }
+
+    /**
+     * <p>getKey.</p>
+     *
+     * @param index a int.
+     * @return the key of the result at the index.
+     */
+    public K getKey(int index) {
+        return keys.get(index);
+    }
+
+    /**
+     * <p>createResults.</p>
+     *
+     * @return a new {@link com.serotonin.modbus4j.BatchPlanResults} object sized for this plan.
+     */
+    public BatchPlanResults<K> createResults() {
+        return new BatchPlanResults<>(this);
+    }
+
+    ModbusRequest getRequest(int group) {
+        return requests[group];
+    }
+
+    /**
+     * Decodes the data of the response to the given group into the results.
+     */
+    void decode(int group, byte[] data, BatchPlanResults<K> results) {
+        for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+            try {
+                results.decode(resultIndexes[i], decoders[i], data, offsets[i]);
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                // As with batch reads, short responses from the equipment become illegal data address results.
+                results.set(resultIndexes[i], new ExceptionResult(ExceptionCode.ILLEGAL_DATA_ADDRESS));
+            }
+        }
+    }
+
+    /**
+     * Sets the given result, e.g. an error or exception, for all of the locators of the group.
+     */
+    void setResults(int group, Object result, BatchPlanResults<K> results) {
+        for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++)
+            results.set(resultIndexes[i], result);
+    }
+}
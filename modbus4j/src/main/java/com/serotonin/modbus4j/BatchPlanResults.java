@@ -0,0 +1,319 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import java.util.Arrays;
+
+import com.serotonin.modbus4j.exception.InvalidDataConversionException;
+import com.serotonin.modbus4j.locator.ValueDecoder;
+
+/**
+ * The results of a BatchPlan, held in arrays indexed by the plan's result indexes rather than in a map. Numeric and
+ * binary values are decoded into parallel primitive arrays, so that a poll boxes nothing, and can be read without
+ * boxing through the typed getters, e.g. getInt or getDouble. Objects are only created when a result is read with
+ * getValue, and are then the same as a batch read would have returned. Error and exception results, and values that
+ * have no primitive form, such as strings, are held as objects.
+ *
+ * A results object can be passed back to the master to be refilled by each poll, in which case a result keeps its
+ * previous value until it is overwritten, e.g. if the batch is cancelled part way through.
+ *
+ * @author Matthew Lohbihler
+ * @param <K> - Type of read
+ * @version 5.0.0
+ */
+public class BatchPlanResults<K> extends BatchResults<K> {
+    private final BatchPlan<K> plan;
+
+    /**
+     * The primitive type of each result, as given by ValueDecoder, and the decoder that produced it, which knows how
+     * to box it.
+     */
+    private final byte[] types;
+    private final ValueDecoder[] decoders;
+
+    /**
+     * LONG, UNSIGNED_LONG and BOOLEAN results are held in longs, DOUBLE results in doubles, and OBJECT results in
+     * values.
+     */
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] values;
+
+    /**
+     * <p>Constructor for BatchPlanResults.</p>
+     *
+     * @param plan a {@link com.serotonin.modbus4j.BatchPlan} object.
+     */
+    public BatchPlanResults(BatchPlan<K> plan) {
+        this.plan = plan;
+        int size = plan.getResultCount();
+        types = new byte[size];
+        decoders = new ValueDecoder[size];
+        longs = new long[size];
+        doubles = new double[size];
+        values = new Object[size];
+    }
+
+    /**
+     * <p>Getter for the field <code>plan</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.BatchPlan} object.
+     */
+    public BatchPlan<K> getPlan() {
+        return plan;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addResult(K key, Object value) {
+        set(indexOf(key), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getValue(K key) {
+        int index = plan.getIndex(key);
+        if (index == -1)
+            return null;
+        return getValue(index);
+    }
+
+    /**
+     * <p>getValue.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a {@link java.lang.Object} object.
+     */
+    public Object getValue(int index) {
+        switch (types[index]) {
+        case ValueDecoder.LONG:
+        case ValueDecoder.UNSIGNED_LONG:
+            return ((ValueDecoder.OfLong) decoders[index]).box(longs[index]);
+        case ValueDecoder.DOUBLE:
+            return ((ValueDecoder.OfDouble) decoders[index]).box(doubles[index]);
+        case ValueDecoder.BOOLEAN:
+            return longs[index] != 0;
+        }
+        return values[index];
+    }
+
+    /**
+     * <p>getPrimitiveType.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return one of the primitive type constants of {@link com.serotonin.modbus4j.locator.ValueDecoder}.
+     */
+    public int getPrimitiveType(int index) {
+        return types[index];
+    }
+
+    /**
+     * <p>getInt.</p>
+     *
+     * @param key a K object.
+     * @return a int.
+     */
+    public int getInt(K key) {
+        return getInt(indexOf(key));
+    }
+
+    /**
+     * <p>getInt.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a int.
+     */
+    public int getInt(int index) {
+        return (int) getLong(index);
+    }
+
+    /**
+     * <p>getLong.</p>
+     *
+     * @param key a K object.
+     * @return a long.
+     */
+    public long getLong(K key) {
+        return getLong(indexOf(key));
+    }
+
+    /**
+     * <p>getLong.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a long. Unsigned eight byte values are returned as their bits.
+     */
+    public long getLong(int index) {
+        switch (types[index]) {
+        case ValueDecoder.LONG:
+        case ValueDecoder.UNSIGNED_LONG:
+            return longs[index];
+        case ValueDecoder.DOUBLE:
+            return (long) doubles[index];
+        }
+        return toNumber(index, "long").longValue();
+    }
+
+    /**
+     * <p>getFloat.</p>
+     *
+     * @param key a K object.
+     * @return a float.
+     */
+    public float getFloat(K key) {
+        return getFloat(indexOf(key));
+    }
+
+    /**
+     * <p>getFloat.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a float.
+     */
+    public float getFloat(int index) {
+        return (float) getDouble(index);
+    }
+
+    /**
+     * <p>getDouble.</p>
+     *
+     * @param key a K object.
+     * @return a double.
+     */
+    public double getDouble(K key) {
+        return getDouble(indexOf(key));
+    }
+
+    /**
+     * <p>getDouble.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a double.
+     */
+    public double getDouble(int index) {
+        switch (types[index]) {
+        case ValueDecoder.LONG:
+            return longs[index];
+        case ValueDecoder.UNSIGNED_LONG:
+            long l = longs[index];
+            if (l >= 0)
+                return l;
+            return ((l >>> 1) | (l & 1)) * 2.0;
+        case ValueDecoder.DOUBLE:
+            return doubles[index];
+        }
+        return toNumber(index, "double").doubleValue();
+    }
+
+    /**
+     * <p>getBoolean.</p>
+     *
+     * @param key a K object.
+     * @return a boolean.
+     */
+    public boolean getBoolean(K key) {
+        return getBoolean(indexOf(key));
+    }
+
+    /**
+     * <p>getBoolean.</p>
+     *
+     * @param index the result index, as given by the plan.
+     * @return a boolean.
+     */
+    public boolean getBoolean(int index) {
+        if (types[index] == ValueDecoder.BOOLEAN)
+            return longs[index] != 0;
+        if (types[index] == ValueDecoder.OBJECT && values[index] instanceof Boolean)
+            return (Boolean) values[index];
+        throw new InvalidDataConversionException("Can't convert " + describe(index) + " to boolean");
+    }
+
+    /**
+     * Clears all of the results.
+     */
+    public void clear() {
+        Arrays.fill(types, (byte) ValueDecoder.OBJECT);
+        Arrays.fill(decoders, null);
+        Arrays.fill(values, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(plan.getKey(i)).append('=').append(getValue(i));
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a value into the result at the given index, into the primitive arrays if the decoder allows.
+     */
+    void decode(int index, ValueDecoder decoder, byte[] data, int offset) {
+        int type = decoder.getPrimitiveType();
+        if (decoder instanceof ValueDecoder.OfLong)
+            longs[index] = ((ValueDecoder.OfLong) decoder).decodeLong(data, offset);
+        else if (decoder instanceof ValueDecoder.OfDouble)
+            doubles[index] = ((ValueDecoder.OfDouble) decoder).decodeDouble(data, offset);
+        else if (decoder instanceof ValueDecoder.OfBoolean)
+            longs[index] = ((ValueDecoder.OfBoolean) decoder).decodeBoolean(data, offset) ? 1 : 0;
+        else {
+            type = ValueDecoder.OBJECT;
+            values[index] = decoder.decode(data, offset);
+        }
+        if (type != ValueDecoder.OBJECT)
+            values[index] = null;
+        types[index] = (byte) type;
+        decoders[index] = decoder;
+    }
+
+    void set(int index, Object value) {
+        types[index] = ValueDecoder.OBJECT;
+        decoders[index] = null;
+        values[index] = value;
+    }
+
+    private int indexOf(K key) {
+        int index = plan.getIndex(key);
+        if (index == -1)
+            throw new IllegalArgumentException("Key is not in the plan: " + key);
+        return index;
+    }
+
+    private Number toNumber(int index, String to) {
+        if (types[index] == ValueDecoder.OBJECT && values[index] instanceof Number)
+            return (Number) values[index];
+        throw new InvalidDataConversionException("Can't convert " + describe(index) + " to " + to);
+    }
+
+    private String describe(int index) {
+        Object value = getValue(index);
+        if (value == null)
+            return "missing result for " + plan.getKey(index);
+        return value.getClass().toString();
+    }
+}
@@ -30,7 +30,9 @@ import java.util.Map;
 
 import com.serotonin.modbus4j.base.KeyedModbusLocator;
 import com.serotonin.modbus4j.base.ReadFunctionGroup;
+import com.serotonin.modbus4j.base.RequestPartitioner;
 import com.serotonin.modbus4j.base.SlaveAndRange;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
 import com.serotonin.modbus4j.locator.BaseLocator;
 
 /**
@@ -58,6 +60,12 @@ public class BatchRead<K> {
      */
     private boolean contiguousRequests = false;
 
+    /**
+     * If set, replaces the default partitioning of locators into requests, and contiguousRequests is ignored. See
+     * CostBasedRequestPartitioner for reading across small gaps.
+     */
+    private RequestPartitioner partitioner;
+
     /**
      * If this value is false, any error response received will cause an exception to be thrown, and the entire batch to
      * be aborted (unless exceptionsInResults is true - see below). If set to true, error responses will be set as the
@@ -102,6 +110,25 @@ public class BatchRead<K> {
         functionGroups = null;
     }
 
+    /**
+     * <p>Getter for the field <code>partitioner</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.base.RequestPartitioner} object.
+     */
+    public RequestPartitioner getPartitioner() {
+        return partitioner;
+    }
+
+    /**
+     * <p>Setter for the field <code>partitioner</code>.</p>
+     *
+     * @param partitioner a {@link com.serotonin.modbus4j.base.RequestPartitioner} object.
+     */
+    public void setPartitioner(RequestPartitioner partitioner) {
+        this.partitioner = partitioner;
+        functionGroups = null;
+    }
+
     /**
      * <p>isErrorsInResults.</p>
      *
@@ -150,6 +177,17 @@ public class BatchRead<K> {
         return functionGroups;
     }
 
+    /**
+     * Compiles the batch into a plan for repeated polling with the given master. See BatchPlan.
+     *
+     * @param master a {@link com.serotonin.modbus4j.ModbusMaster} object.
+     * @return a {@link com.serotonin.modbus4j.BatchPlan} object.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     */
+    public BatchPlan<K> compile(ModbusMaster master) throws ModbusTransportException {
+        return new BatchPlan<>(this, master);
+    }
+
     /**
      * <p>addLocator.</p>
      *
@@ -218,7 +256,10 @@ public class BatchRead<K> {
             int maxReadCount = master.getMaxReadCount(functionLocatorList.get(0).getSlaveAndRange().getRange());
 
             // Create the request groups.
-            createRequestGroups(functionGroups, functionLocatorList, maxReadCount);
+            if (partitioner != null)
+                partitioner.partition(functionGroups, functionLocatorList, maxReadCount);
+            else
+                createRequestGroups(functionGroups, functionLocatorList, maxReadCount);
             //System.out.println("requests: " + functionGroups.size());
         }
     }
@@ -232,45 +273,43 @@ public class BatchRead<K> {
      */
     private void createRequestGroups(List<ReadFunctionGroup<K>> functionGroups, List<KeyedModbusLocator<K>> locators,
             int maxCount) {
+        // Locators are marked as they are added to a group rather than removed from the list, since removing from the
+        // front of an array list makes large batches quadratic.
+        boolean[] grouped = new boolean[locators.size()];
         ReadFunctionGroup<K> functionGroup;
         KeyedModbusLocator<K> locator;
+        int first = 0;
         int index;
         int endOffset;
         // Loop for creation of groups.
-        while (locators.size() > 0) {
-            functionGroup = new ReadFunctionGroup<>(locators.remove(0));
+        while (true) {
+            while (first < grouped.length && grouped[first])
+                first++;
+            if (first == grouped.length)
+                break;
+
+            grouped[first] = true;
+            functionGroup = new ReadFunctionGroup<>(locators.get(first));
             functionGroups.add(functionGroup);
             endOffset = functionGroup.getStartOffset() + maxCount - 1;
 
             // Loop for adding locators to the current group
-            index = 0;
-            while (locators.size() > index) {
+            for (index = first + 1; index < grouped.length; index++) {
+                if (grouped[index])
+                    continue;
+
                 locator = locators.get(index);
-                boolean added = false;
+                if (locator.getOffset() > endOffset)
+                    // Since the list is sorted by offset, no other locators can fit either, so quit the loop.
+                    break;
 
                 if (locator.getEndOffset() <= endOffset) {
-                    if (contiguousRequests) {
-                        // The locator must at least abut the other locators in the group.
-                        if (locator.getOffset() <= functionGroup.getEndOffset() + 1) {
-                            functionGroup.add(locators.remove(index));
-                            added = true;
-                        }
-                    }
-                    else {
-                        functionGroup.add(locators.remove(index));
-                        added = true;
+                    // In contiguous mode the locator must at least abut the other locators in the group.
+                    if (!contiguousRequests || locator.getOffset() <= functionGroup.getEndOffset() + 1) {
+                        functionGroup.add(locator);
+                        grouped[index] = true;
                     }
                 }
-
-                if (!added) {
-                    // This locator does not fit inside the current function...
-                    if (locator.getOffset() > endOffset)
-                        // ... and since the list is sorted by offset, no other locators can either, so quit the loop.
-                        break;
-
-                    // ... but there still may be other locators that can, so increment the index
-                    index++;
-                }
             }
         }
     }
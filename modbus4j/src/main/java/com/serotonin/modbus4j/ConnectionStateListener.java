@@ -0,0 +1,51 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+/**
+ * Notified of the changes in state of a master's connection. Called on the thread that noticed the change, e.g. the
+ * thread of a request that failed, or the thread that re-establishes the connection, so implementations should return
+ * quickly.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface ConnectionStateListener {
+    /**
+     * Called when the connection has been re-established.
+     */
+    public void connected();
+
+    /**
+     * Called when the connection has been lost.
+     *
+     * @param cause the failure that showed the connection to be lost.
+     */
+    public void disconnected(Exception cause);
+
+    /**
+     * Called before each attempt to re-establish the connection.
+     *
+     * @param attempt the number of the attempt, from 1.
+     * @param delay the time in milliseconds that will pass before the attempt.
+     */
+    public void reconnecting(int attempt, long delay);
+}
@@ -0,0 +1,669 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.serotonin.modbus4j.base.ModbusUtils;
+import com.serotonin.modbus4j.exception.IllegalDataAddressException;
+import com.serotonin.modbus4j.exception.ModbusIdException;
+
+/**
+ * A process image that keeps its values in arrays rather than maps, for slaves that serve many values at a high rate.
+ * Each of the four tables covers a window of addresses, set with e.g. setHoldingRegisterWindow, within which every
+ * address is valid and initially 0. Addresses outside of the windows are invalid, as are addresses that have never
+ * been set in a BasicProcessImage. Registers are held in short arrays and bits in long bitsets.
+ *
+ * Rather than synchronizing on the image, each table is divided into stripes of 256 addresses, each with its own read
+ * write lock. A read takes the read locks of the stripes that it covers, so any number of clients can read at once,
+ * and a write only excludes readers of the stripes that it touches. Ranges can be read and written in one call with
+ * e.g. readHoldingRegisters, which copies the whole range under a single acquisition of its locks.
+ *
+ * Windows should be set before the image is added to a slave. Setting a window replaces the table, discarding its
+ * values.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class DenseProcessImage implements RangeProcessImage {
+    private static final int STRIPE_SHIFT = 8;
+
+    private final int slaveId;
+    private volatile boolean allowInvalidAddress = false;
+    private volatile short invalidAddressValue = 0;
+
+    private volatile BitTable coils = new BitTable(0, 0);
+    private volatile BitTable inputs = new BitTable(0, 0);
+    private volatile RegisterTable holdingRegisters = new RegisterTable(0, 0);
+    private volatile RegisterTable inputRegisters = new RegisterTable(0, 0);
+    private final ProcessImageNotifier notifier = new ProcessImageNotifier();
+    private volatile byte exceptionStatus;
+
+    /**
+     * <p>Constructor for DenseProcessImage.</p>
+     *
+     * @param slaveId a int.
+     */
+    public DenseProcessImage(int slaveId) {
+        ModbusUtils.validateSlaveId(slaveId, false);
+        this.slaveId = slaveId;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSlaveId() {
+        return slaveId;
+    }
+
+    /**
+     * <p>addListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
+     */
+    public void addListener(ProcessImageListener l) {
+        notifier.addListener(l);
+    }
+
+    /**
+     * <p>removeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
+     */
+    public void removeListener(ProcessImageListener l) {
+        notifier.removeListener(l);
+    }
+
+    /**
+     * <p>addRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void addRangeListener(ProcessImageRangeListener l) {
+        notifier.addRangeListener(l);
+    }
+
+    /**
+     * <p>removeRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void removeRangeListener(ProcessImageRangeListener l) {
+        notifier.removeRangeListener(l);
+    }
+
+    /**
+     * The notifier of the listeners, through which notifications can be made asynchronous and debounced.
+     *
+     * @return a {@link com.serotonin.modbus4j.ProcessImageNotifier} object.
+     */
+    public ProcessImageNotifier getNotifier() {
+        return notifier;
+    }
+
+    /**
+     * <p>isAllowInvalidAddress.</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isAllowInvalidAddress() {
+        return allowInvalidAddress;
+    }
+
+    /**
+     * If set, invalid addresses read as invalidAddressValue, or false for bits, and writes to them are ignored, rather
+     * than causing illegal data address responses.
+     *
+     * @param allowInvalidAddress a boolean.
+     */
+    public void setAllowInvalidAddress(boolean allowInvalidAddress) {
+        this.allowInvalidAddress = allowInvalidAddress;
+    }
+
+    /**
+     * <p>Getter for the field <code>invalidAddressValue</code>.</p>
+     *
+     * @return a short.
+     */
+    public short getInvalidAddressValue() {
+        return invalidAddressValue;
+    }
+
+    /**
+     * <p>Setter for the field <code>invalidAddressValue</code>.</p>
+     *
+     * @param invalidAddressValue a short.
+     */
+    public void setInvalidAddressValue(short invalidAddressValue) {
+        this.invalidAddressValue = invalidAddressValue;
+    }
+
+    /**
+     * <p>Setter for the field <code>exceptionStatus</code>.</p>
+     *
+     * @param exceptionStatus a byte.
+     */
+    public void setExceptionStatus(byte exceptionStatus) {
+        this.exceptionStatus = exceptionStatus;
+    }
+
+    //
+    // Windows
+    /**
+     * Sets the window of valid coil addresses.
+     *
+     * @param offset the first address.
+     * @param count the number of addresses.
+     */
+    public void setCoilWindow(int offset, int count) {
+        coils = new BitTable(offset, count);
+    }
+
+    /**
+     * Sets the window of valid input addresses.
+     *
+     * @param offset the first address.
+     * @param count the number of addresses.
+     */
+    public void setInputWindow(int offset, int count) {
+        inputs = new BitTable(offset, count);
+    }
+
+    /**
+     * Sets the window of valid holding register addresses.
+     *
+     * @param offset the first address.
+     * @param count the number of addresses.
+     */
+    public void setHoldingRegisterWindow(int offset, int count) {
+        holdingRegisters = new RegisterTable(offset, count);
+    }
+
+    /**
+     * Sets the window of valid input register addresses.
+     *
+     * @param offset the first address.
+     * @param count the number of addresses.
+     */
+    public void setInputRegisterWindow(int offset, int count) {
+        inputRegisters = new RegisterTable(offset, count);
+    }
+
+    //
+    // Ranges
+    /**
+     * Reads a range of coils.
+     *
+     * @param offset the first address.
+     * @param count the number of coils.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void readCoils(int offset, int count, boolean[] dst) throws IllegalDataAddressException {
+        readBits(coils, offset, count, dst);
+    }
+
+    /**
+     * Reads a range of inputs.
+     *
+     * @param offset the first address.
+     * @param count the number of inputs.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void readInputs(int offset, int count, boolean[] dst) throws IllegalDataAddressException {
+        readBits(inputs, offset, count, dst);
+    }
+
+    /**
+     * Reads a range of holding registers.
+     *
+     * @param offset the first address.
+     * @param count the number of registers.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void readHoldingRegisters(int offset, int count, short[] dst) throws IllegalDataAddressException {
+        readRegisters(holdingRegisters, offset, count, dst);
+    }
+
+    /**
+     * Reads a range of input registers.
+     *
+     * @param offset the first address.
+     * @param count the number of registers.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void readInputRegisters(int offset, int count, short[] dst) throws IllegalDataAddressException {
+        readRegisters(inputRegisters, offset, count, dst);
+    }
+
+    /**
+     * Sets a range of coils as a result of a write command from the master, notifying the listeners once for the whole
+     * range.
+     *
+     * @param offset the first address.
+     * @param values the values to write.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void writeCoils(int offset, boolean[] values) throws IllegalDataAddressException {
+        BitTable table = coils;
+        if (!table.contains(offset, values.length)) {
+            if (!allowInvalidAddress)
+                throw new IllegalDataAddressException();
+            for (int i = 0; i < values.length; i++)
+                writeCoil(offset + i, values[i]);
+            return;
+        }
+
+        boolean[] old = new boolean[values.length];
+        table.write(offset, values, old);
+
+        if (notifier.hasListeners())
+            notifier.coilsWritten(offset, old, values.clone());
+    }
+
+    /**
+     * Sets a range of holding registers as a result of a write command from the master, notifying the listeners once for
+     * the whole range.
+     *
+     * @param offset the first address.
+     * @param values the values to write.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    @Override
+    public void writeHoldingRegisters(int offset, short[] values) throws IllegalDataAddressException {
+        RegisterTable table = holdingRegisters;
+        if (!table.contains(offset, values.length)) {
+            if (!allowInvalidAddress)
+                throw new IllegalDataAddressException();
+            for (int i = 0; i < values.length; i++)
+                writeHoldingRegister(offset + i, values[i]);
+            return;
+        }
+
+        short[] old = new short[values.length];
+        table.write(offset, values, old);
+
+        if (notifier.hasListeners())
+            notifier.holdingRegistersWritten(offset, old, values.clone());
+    }
+
+    /**
+     * <p>setHoldingRegister.</p>
+     *
+     * @param offset a int.
+     * @param registers an array of {@link short} objects.
+     */
+    public void setHoldingRegister(int offset, short[] registers) {
+        setRegisters(holdingRegisters, offset, registers);
+    }
+
+    /**
+     * <p>setInputRegister.</p>
+     *
+     * @param offset a int.
+     * @param registers an array of {@link short} objects.
+     */
+    public void setInputRegister(int offset, short[] registers) {
+        setRegisters(inputRegisters, offset, registers);
+    }
+
+    //
+    //
+    // ProcessImage interface
+    //
+
+    //
+    // Coils
+    /** {@inheritDoc} */
+    @Override
+    public boolean getCoil(int offset) throws IllegalDataAddressException {
+        return getBit(coils, offset);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCoil(int offset, boolean value) {
+        setBit(coils, offset, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeCoil(int offset, boolean value) throws IllegalDataAddressException {
+        BitTable table = coils;
+        if (!table.contains(offset, 1)) {
+            if (allowInvalidAddress)
+                return;
+            throw new IllegalDataAddressException();
+        }
+
+        boolean old = table.getAndSet(offset, value);
+        notifier.coilWritten(offset, old, value);
+    }
+
+    //
+    // Inputs
+    /** {@inheritDoc} */
+    @Override
+    public boolean getInput(int offset) throws IllegalDataAddressException {
+        return getBit(inputs, offset);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setInput(int offset, boolean value) {
+        setBit(inputs, offset, value);
+    }
+
+    //
+    // Holding registers
+    /** {@inheritDoc} */
+    @Override
+    public short getHoldingRegister(int offset) throws IllegalDataAddressException {
+        return getRegister(holdingRegisters, offset);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setHoldingRegister(int offset, short value) {
+        setRegister(holdingRegisters, offset, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeHoldingRegister(int offset, short value) throws IllegalDataAddressException {
+        RegisterTable table = holdingRegisters;
+        if (!table.contains(offset, 1)) {
+            if (allowInvalidAddress)
+                return;
+            throw new IllegalDataAddressException();
+        }
+
+        short old = table.getAndSet(offset, value);
+        notifier.holdingRegisterWritten(offset, old, value);
+    }
+
+    //
+    // Input registers
+    /** {@inheritDoc} */
+    @Override
+    public short getInputRegister(int offset) throws IllegalDataAddressException {
+        return getRegister(inputRegisters, offset);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setInputRegister(int offset, short value) {
+        setRegister(inputRegisters, offset, value);
+    }
+
+    //
+    // Exception status
+    /** {@inheritDoc} */
+    @Override
+    public byte getExceptionStatus() {
+        return exceptionStatus;
+    }
+
+    //
+    // Report slave id
+    /** {@inheritDoc} */
+    @Override
+    public byte[] getReportSlaveIdData() {
+        return new byte[0];
+    }
+
+    //
+    //
+    // Private
+    //
+    private boolean getBit(BitTable table, int offset) throws IllegalDataAddressException {
+        if (table.contains(offset, 1))
+            return table.get(offset);
+        if (allowInvalidAddress)
+            return false;
+        throw new IllegalDataAddressException();
+    }
+
+    private void setBit(BitTable table, int offset, boolean value) {
+        if (!table.contains(offset, 1))
+            throw new ModbusIdException("Offset outside of window: " + offset);
+        table.getAndSet(offset, value);
+    }
+
+    private void readBits(BitTable table, int offset, int count, boolean[] dst) throws IllegalDataAddressException {
+        if (table.contains(offset, count))
+            table.read(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = getBit(table, offset + i);
+        }
+    }
+
+    private short getRegister(RegisterTable table, int offset) throws IllegalDataAddressException {
+        if (table.contains(offset, 1))
+            return table.get(offset);
+        if (allowInvalidAddress)
+            return invalidAddressValue;
+        throw new IllegalDataAddressException();
+    }
+
+    private void setRegister(RegisterTable table, int offset, short value) {
+        if (!table.contains(offset, 1))
+            throw new ModbusIdException("Offset outside of window: " + offset);
+        table.getAndSet(offset, value);
+    }
+
+    private void setRegisters(RegisterTable table, int offset, short[] values) {
+        if (!table.contains(offset, values.length))
+            throw new ModbusIdException("Range outside of window: " + offset + "+" + values.length);
+        table.write(offset, values, null);
+    }
+
+    private void readRegisters(RegisterTable table, int offset, int count, short[] dst)
+            throws IllegalDataAddressException {
+        if (table.contains(offset, count))
+            table.read(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = getRegister(table, offset + i);
+        }
+    }
+
+    /**
+     * A window of addresses divided into stripes, each with its own lock. Ranges lock their stripes in ascending order.
+     */
+    abstract static class Table {
+        final int start;
+        final int count;
+        private final ReentrantReadWriteLock[] locks;
+
+        Table(int start, int count) {
+            if (start < 0 || count < 0 || start + count > 65536)
+                throw new ModbusIdException("Invalid window: " + start + "+" + count);
+            this.start = start;
+            this.count = count;
+            locks = new ReentrantReadWriteLock[(count + (1 << STRIPE_SHIFT) - 1) >> STRIPE_SHIFT];
+            for (int i = 0; i < locks.length; i++)
+                locks[i] = new ReentrantReadWriteLock();
+        }
+
+        boolean contains(int offset, int length) {
+            return offset >= start && length > 0 && offset + length <= start + count;
+        }
+
+        void lockRead(int offset, int length) {
+            for (int i = firstStripe(offset); i <= lastStripe(offset, length); i++)
+                locks[i].readLock().lock();
+        }
+
+        void unlockRead(int offset, int length) {
+            for (int i = lastStripe(offset, length); i >= firstStripe(offset); i--)
+                locks[i].readLock().unlock();
+        }
+
+        void lockWrite(int offset, int length) {
+            for (int i = firstStripe(offset); i <= lastStripe(offset, length); i++)
+                locks[i].writeLock().lock();
+        }
+
+        void unlockWrite(int offset, int length) {
+            for (int i = lastStripe(offset, length); i >= firstStripe(offset); i--)
+                locks[i].writeLock().unlock();
+        }
+
+        private int firstStripe(int offset) {
+            return (offset - start) >> STRIPE_SHIFT;
+        }
+
+        private int lastStripe(int offset, int length) {
+            return (offset - start + Math.max(length, 1) - 1) >> STRIPE_SHIFT;
+        }
+    }
+
+    static class RegisterTable extends Table {
+        private final short[] values;
+
+        RegisterTable(int start, int count) {
+            super(start, count);
+            values = new short[count];
+        }
+
+        short get(int offset) {
+            lockRead(offset, 1);
+            try {
+                return values[offset - start];
+            }
+            finally {
+                unlockRead(offset, 1);
+            }
+        }
+
+        short getAndSet(int offset, short value) {
+            lockWrite(offset, 1);
+            try {
+                short old = values[offset - start];
+                values[offset - start] = value;
+                return old;
+            }
+            finally {
+                unlockWrite(offset, 1);
+            }
+        }
+
+        void read(int offset, int length, short[] dst) {
+            lockRead(offset, length);
+            try {
+                System.arraycopy(values, offset - start, dst, 0, length);
+            }
+            finally {
+                unlockRead(offset, length);
+            }
+        }
+
+        void write(int offset, short[] src, short[] old) {
+            lockWrite(offset, src.length);
+            try {
+                if (old != null)
+                    System.arraycopy(values, offset - start, old, 0, src.length);
+                System.arraycopy(src, 0, values, offset - start, src.length);
+            }
+            finally {
+                unlockWrite(offset, src.length);
+            }
+        }
+    }
+
+    static class BitTable extends Table {
+        private final long[] bits;
+
+        BitTable(int start, int count) {
+            super(start, count);
+            bits = new long[(count + 63) >> 6];
+        }
+
+        boolean get(int offset) {
+            lockRead(offset, 1);
+            try {
+                return getUnlocked(offset - start);
+            }
+            finally {
+                unlockRead(offset, 1);
+            }
+        }
+
+        boolean getAndSet(int offset, boolean value) {
+            lockWrite(offset, 1);
+            try {
+                boolean old = getUnlocked(offset - start);
+                setUnlocked(offset - start, value);
+                return old;
+            }
+            finally {
+                unlockWrite(offset, 1);
+            }
+        }
+
+        void read(int offset, int length, boolean[] dst) {
+            lockRead(offset, length);
+            try {
+                int index = offset - start;
+                for (int i = 0; i < length; i++)
+                    dst[i] = getUnlocked(index + i);
+            }
+            finally {
+                unlockRead(offset, length);
+            }
+        }
+
+        void write(int offset, boolean[] src, boolean[] old) {
+            lockWrite(offset, src.length);
+            try {
+                int index = offset - start;
+                for (int i = 0; i < src.length; i++) {
+                    if (old != null)
+                        old[i] = getUnlocked(index + i);
+                    setUnlocked(index + i, src[i]);
+                }
+            }
+            finally {
+                unlockWrite(offset, src.length);
+            }
+        }
+
+        private boolean getUnlocked(int index) {
+            return (bits[index >> 6] & (1L << index)) != 0;
+        }
+
+        private void setUnlocked(int index, boolean value) {
+            if (value)
+                bits[index >> 6] |= 1L << index;
+            else
+                bits[index >> 6] &= ~(1L << index);
+        }
+    }
+}
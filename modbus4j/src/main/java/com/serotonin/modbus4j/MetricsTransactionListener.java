@@ -0,0 +1,96 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import com.serotonin.modbus4j.exception.ChecksumException;
+import com.serotonin.modbus4j.ip.IpMessage;
+import com.serotonin.modbus4j.msg.ModbusMessage;
+import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.serial.SerialMessage;
+import com.serotonin.modbus4j.sero.messaging.IncomingMessage;
+import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
+import com.serotonin.modbus4j.sero.messaging.TransactionListener;
+
+/**
+ * Passes the transactions of a master's message control on to the master's metrics listener, unwrapping the
+ * messages of whichever transport into their slave ids and function codes. It looks the listener up on every call, so
+ * that one can be set or removed while the master is running, and costs next to nothing while there is none.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+class MetricsTransactionListener implements TransactionListener {
+    private final ModbusMaster master;
+
+    MetricsTransactionListener(ModbusMaster master) {
+        this.master = master;
+    }
+
+    private static ModbusMessage unwrap(Object message) {
+        if (message instanceof IpMessage)
+            return ((IpMessage) message).getModbusMessage();
+        if (message instanceof SerialMessage)
+            return ((SerialMessage) message).getModbusMessage();
+        return null;
+    }
+
+    @Override
+    public void requestSent(OutgoingRequestMessage request, int length, boolean retry) {
+        ModbusMetricsListener l = master.getMetricsListener();
+        ModbusMessage message;
+        if (l != null && (message = unwrap(request)) != null)
+            l.requestSent(message.getSlaveId(), message.getFunctionCode(), length, retry);
+    }
+
+    @Override
+    public void messageReceived(IncomingMessage incoming, int length) {
+        ModbusMetricsListener l = master.getMetricsListener();
+        ModbusMessage message;
+        if (l != null && (message = unwrap(incoming)) instanceof ModbusResponse)
+            l.responseReceived(message.getSlaveId(), message.getFunctionCode(), length,
+                    ((ModbusResponse) message).isException());
+    }
+
+    @Override
+    public void transactionCompleted(OutgoingRequestMessage request, long queueNanos, long wireNanos,
+            long totalNanos) {
+        ModbusMetricsListener l = master.getMetricsListener();
+        ModbusMessage message;
+        if (l != null && (message = unwrap(request)) != null)
+            l.transactionCompleted(message.getSlaveId(), message.getFunctionCode(), queueNanos, wireNanos,
+                    totalNanos);
+    }
+
+    @Override
+    public void transactionTimedOut(OutgoingRequestMessage request) {
+        ModbusMetricsListener l = master.getMetricsListener();
+        ModbusMessage message;
+        if (l != null && (message = unwrap(request)) != null)
+            l.transactionTimedOut(message.getSlaveId(), message.getFunctionCode());
+    }
+
+    @Override
+    public void receiveFailed(Exception e) {
+        ModbusMetricsListener l = master.getMetricsListener();
+        if (l != null && e instanceof ChecksumException)
+            l.checksumError(((ChecksumException) e).getSlaveId());
+    }
+}
@@ -8,6 +8,7 @@ public class ModbusConfig {
 	private static boolean sEnableRtuCrc = true;
 	private static boolean sShowSendLog = false;
 	private static boolean sShowRecvLog = false;
+	private static boolean sEnableCrcSlicingBy8 = false;
 
 	/**
 	 * 是否启用Rtu的Crc校验
@@ -27,6 +28,24 @@ public class ModbusConfig {
 		sEnableRtuCrc = enableRtuCrc;
 	}
 
+	/**
+	 * 是否使用slicing-by-8查表法计算CRC
+	 * 
+	 * @return
+	 */
+	public static boolean isEnableCrcSlicingBy8() {
+		return sEnableCrcSlicingBy8;
+	}
+
+	/**
+	 * 配置是否使用slicing-by-8查表法计算CRC，每次处理8个字节，适合较长的帧，需额外占用8KB的查表内存
+	 * 
+	 * @param enableCrcSlicingBy8
+	 */
+	public static void setEnableCrcSlicingBy8(boolean enableCrcSlicingBy8) {
+		sEnableCrcSlicingBy8 = enableCrcSlicingBy8;
+	}
+
 	/**
 	 * 配置是否打印log
 	 * 
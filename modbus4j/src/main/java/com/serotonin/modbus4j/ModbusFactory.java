@@ -27,6 +27,7 @@ import com.serotonin.modbus4j.exception.ModbusTransportException;
 import com.serotonin.modbus4j.ip.IpParameters;
 import com.serotonin.modbus4j.ip.listener.TcpListener;
 import com.serotonin.modbus4j.ip.tcp.TcpMaster;
+import com.serotonin.modbus4j.ip.tcp.TcpMasterPool;
 import com.serotonin.modbus4j.ip.tcp.TcpSlave;
 import com.serotonin.modbus4j.ip.udp.UdpMaster;
 import com.serotonin.modbus4j.ip.udp.UdpSlave;
@@ -94,6 +95,18 @@ public class ModbusFactory {
         return new TcpMaster(params, keepAlive,lingerTime);
     }
 
+    /**
+     * <p>createTcpMasterPool.</p>
+     *
+     * @param params a {@link com.serotonin.modbus4j.ip.IpParameters} object.
+     * @param minConnections a int.
+     * @param maxConnections a int.
+     * @return a {@link com.serotonin.modbus4j.ModbusMaster} object.
+     */
+    public ModbusMaster createTcpMasterPool(IpParameters params, int minConnections, int maxConnections) {
+        return new TcpMasterPool(params, minConnections, maxConnections);
+    }
+
     /**
      * <p>createUdpMaster.</p>
      *
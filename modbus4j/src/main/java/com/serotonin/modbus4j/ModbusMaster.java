@@ -22,8 +22,13 @@ package com.serotonin.modbus4j;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.serotonin.modbus4j.base.KeyedModbusLocator;
 import com.serotonin.modbus4j.base.ReadFunctionGroup;
@@ -36,6 +41,7 @@ import com.serotonin.modbus4j.exception.ErrorResponseException;
 import com.serotonin.modbus4j.exception.InvalidDataConversionException;
 import com.serotonin.modbus4j.exception.ModbusInitException;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.ip.IpMessage;
 import com.serotonin.modbus4j.locator.BaseLocator;
 import com.serotonin.modbus4j.locator.BinaryLocator;
 import com.serotonin.modbus4j.locator.NumericLocator;
@@ -53,9 +59,15 @@ import com.serotonin.modbus4j.msg.WriteRegisterRequest;
 import com.serotonin.modbus4j.msg.WriteRegistersRequest;
 import com.serotonin.modbus4j.sero.epoll.InputStreamEPollWrapper;
 import com.serotonin.modbus4j.sero.log.BaseIOLog;
+import com.serotonin.modbus4j.serial.SerialMessage;
+import com.serotonin.modbus4j.sero.messaging.IncomingResponseMessage;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
+import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
+import com.serotonin.modbus4j.sero.nio.NioSelectorGroup;
 import com.serotonin.modbus4j.sero.util.ArrayUtils;
+import com.serotonin.modbus4j.sero.util.FutureListener;
 import com.serotonin.modbus4j.sero.util.ProgressiveTask;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>Abstract ModbusMaster class.</p>
@@ -64,6 +76,11 @@ import com.serotonin.modbus4j.sero.util.ProgressiveTask;
  * @version 5.0.0
  */
 abstract public class ModbusMaster extends Modbus {
+    /**
+     * Extra time, in milliseconds, allowed to a parallel batch beyond the timeouts and retries of its requests.
+     */
+    private static final long BATCH_TIMEOUT_MARGIN = 1000;
+
     private int timeout = 500;
     private int retries = 2;
 
@@ -104,6 +121,7 @@ abstract public class ModbusMaster extends Modbus {
 
     private int discardDataDelay = 0;
     private BaseIOLog ioLog;
+    private volatile ModbusMetricsListener metricsListener;
 
     /**
      * An input stream ePoll will use a single thread to read all input streams. If multiple serial or TCP modbus
@@ -111,6 +129,19 @@ abstract public class ModbusMaster extends Modbus {
      */
     private InputStreamEPollWrapper ePoll;
 
+    /**
+     * A selector group serves the sockets of any number of TCP masters from one or a few threads, and hands incoming
+     * data over as soon as it arrives rather than polling the stream. Takes precedence over the ePoll for TCP.
+     */
+    private NioSelectorGroup selectorGroup;
+
+    /**
+     * The number of function groups of a batch read that may be in flight at once. Groups are only actually sent
+     * concurrently by masters that can have more than one request outstanding, such as a keep-alive TCP master.
+     * Others, and serial masters, still send them one at a time.
+     */
+    private int batchParallelism = 1;
+
     private final Map<Integer, SlaveProfile> slaveProfiles = new HashMap<>();
     protected boolean initialized;
 
@@ -138,11 +169,14 @@ abstract public class ModbusMaster extends Modbus {
     /**
      * <p>send.</p>
      *
+     * Masters that queue their requests, such as a scheduled SerialMaster, override this to route them through the
+     * queue; sendImpl always puts the request on the line directly.
+     *
      * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
      * @return a {@link com.serotonin.modbus4j.msg.ModbusResponse} object.
      * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
      */
-    public final ModbusResponse send(ModbusRequest request) throws ModbusTransportException {
+    public ModbusResponse send(ModbusRequest request) throws ModbusTransportException {
         request.validate(this);
 		ModbusResponse modbusResponse = sendImpl(request);
 		if(validateResponse)
@@ -159,6 +193,78 @@ abstract public class ModbusMaster extends Modbus {
      */
     abstract public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException;
 
+    /**
+     * Sends the request without blocking the calling thread. The returned future is completed with the response, or
+     * failed with a ModbusTransportException, typically by the transport's data listening thread. Listeners added to
+     * the future must therefore not block.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public final SettableFuture<ModbusResponse> sendAsync(final ModbusRequest request) {
+        final SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        try {
+            request.validate(this);
+        }
+        catch (ModbusTransportException e) {
+            future.fail(e);
+            return future;
+        }
+        return validated(request, sendAsyncImpl(request));
+    }
+
+    /**
+     * Adapts the future of a sent request to the future returned to the caller, checking the slave id of the response
+     * if responses are validated.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @param sent the future of the sent request.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    protected SettableFuture<ModbusResponse> validated(final ModbusRequest request,
+            SettableFuture<ModbusResponse> sent) {
+        final SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        sent.addListener(new FutureListener<ModbusResponse>() {
+            @Override
+            public void completed(ModbusResponse response) {
+                if (validateResponse && response != null) {
+                    try {
+                        response.validateResponse(request);
+                    }
+                    catch (ModbusTransportException e) {
+                        future.fail(e);
+                        return;
+                    }
+                }
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.fail(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Masters that can send without blocking override this method. The default implementation sends the request
+     * synchronously on the calling thread and returns a future that is already done.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    protected SettableFuture<ModbusResponse> sendAsyncImpl(ModbusRequest request) {
+        SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        try {
+            future.complete(sendImpl(request));
+        }
+        catch (ModbusTransportException e) {
+            future.fail(e);
+        }
+        return future;
+    }
+
     /**
      * Returns a value from the modbus network according to the given locator information. Various data types are
      * allowed to be requested including multi-word types. The determination of the correct request message to send is
@@ -400,6 +506,25 @@ abstract public class ModbusMaster extends Modbus {
         this.ioLog = ioLog;
     }
 
+    /**
+     * <p>Getter for the field <code>metricsListener</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.ModbusMetricsListener} object.
+     */
+    public ModbusMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener to notify of the traffic of each transaction, e.g. a {@link ModbusMetrics}, or null for none.
+     * Unlike most settings it takes effect straight away, also while the master is running.
+     *
+     * @param metricsListener a {@link com.serotonin.modbus4j.ModbusMetricsListener} object.
+     */
+    public void setMetricsListener(ModbusMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
     /**
      * <p>Getter for the field <code>ePoll</code>.</p>
      *
@@ -418,6 +543,56 @@ abstract public class ModbusMaster extends Modbus {
         this.ePoll = ePoll;
     }
 
+    /**
+     * <p>Getter for the field <code>selectorGroup</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.sero.nio.NioSelectorGroup} object.
+     */
+    public NioSelectorGroup getSelectorGroup() {
+        return selectorGroup;
+    }
+
+    /**
+     * <p>Setter for the field <code>selectorGroup</code>.</p>
+     *
+     * @param selectorGroup a {@link com.serotonin.modbus4j.sero.nio.NioSelectorGroup} object.
+     */
+    public void setSelectorGroup(NioSelectorGroup selectorGroup) {
+        this.selectorGroup = selectorGroup;
+    }
+
+    /**
+     * <p>Getter for the field <code>batchParallelism</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * <p>Setter for the field <code>batchParallelism</code>.</p>
+     *
+     * @param batchParallelism a int.
+     */
+    public void setBatchParallelism(int batchParallelism) {
+        if (batchParallelism < 1)
+            this.batchParallelism = 1;
+        else
+            this.batchParallelism = batchParallelism;
+    }
+
+    /**
+     * The number of requests that it is worth having outstanding on this master at once. Callers that queue requests
+     * for the master can hand it up to this many through sendAsync before waiting for responses. The default is 1,
+     * for masters that put one request on the line at a time.
+     *
+     * @return a int.
+     */
+    public int getPipelineDepth() {
+        return 1;
+    }
+
     /**
      * Useful for sending a number of polling commands at once, or at least in as optimal a batch as possible.
      *
@@ -431,6 +606,9 @@ abstract public class ModbusMaster extends Modbus {
         if (!initialized)
             throw new ModbusTransportException("not initialized");
 
+        if (batchParallelism > 1)
+            return sendParallel(batch);
+
         BatchResults<K> results = new BatchResults<>();
         List<ReadFunctionGroup<K>> functionGroups = batch.getReadFunctionGroups(this);
 
@@ -444,6 +622,115 @@ abstract public class ModbusMaster extends Modbus {
         return results;
     }
 
+    /**
+     * The asynchronous counterpart of send(BatchRead). Up to batchParallelism function groups are sent at a time, the
+     * next one going out as each response arrives, without holding a thread in between. The results, errors and
+     * exceptions are handled exactly as by the synchronous method.
+     *
+     * @param batch a {@link com.serotonin.modbus4j.BatchRead} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     * @param <K> type of result
+     */
+    public <K> SettableFuture<BatchResults<K>> sendAsync(BatchRead<K> batch) {
+        SettableFuture<BatchResults<K>> future = new SettableFuture<>();
+        if (!initialized) {
+            future.fail(new ModbusTransportException("not initialized"));
+            return future;
+        }
+
+        new AsyncBatch<>(batch, future).next();
+        return future;
+    }
+
+    /**
+     * Polls a compiled batch plan, returning the results in a new results object.
+     *
+     * @param plan a {@link com.serotonin.modbus4j.BatchPlan} object.
+     * @return a {@link com.serotonin.modbus4j.BatchPlanResults} object.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     * @throws com.serotonin.modbus4j.exception.ErrorResponseException if any.
+     * @param <K> type of result
+     */
+    public <K> BatchPlanResults<K> send(BatchPlan<K> plan) throws ModbusTransportException, ErrorResponseException {
+        BatchPlanResults<K> results = plan.createResults();
+        send(plan, results);
+        return results;
+    }
+
+    /**
+     * Polls a compiled batch plan, decoding the responses into the given results object, which is typically reused
+     * from one poll to the next. The requests of the plan are sent one at a time.
+     *
+     * @param plan a {@link com.serotonin.modbus4j.BatchPlan} object.
+     * @param results a {@link com.serotonin.modbus4j.BatchPlanResults} object created by the plan.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     * @throws com.serotonin.modbus4j.exception.ErrorResponseException if any.
+     * @param <K> type of result
+     */
+    public <K> void send(BatchPlan<K> plan, BatchPlanResults<K> results) throws ModbusTransportException,
+            ErrorResponseException {
+        if (!initialized)
+            throw new ModbusTransportException("not initialized");
+
+        BatchRead<K> batch = plan.getBatch();
+        for (int group = 0; group < plan.getRequestCount(); group++) {
+            ModbusRequest request = plan.getRequest(group);
+
+            ReadResponse response = null;
+            try {
+                response = (ReadResponse) send(request);
+            }
+            catch (ModbusTransportException e) {
+                if (!batch.isExceptionsInResults())
+                    throw e;
+                plan.setResults(group, e, results);
+            }
+
+            if (response != null) {
+                if (!response.isException())
+                    plan.decode(group, response.getData(), results);
+                else if (batch.isErrorsInResults())
+                    plan.setResults(group, new ExceptionResult(response.getExceptionCode()), results);
+                else
+                    throw new ErrorResponseException(request, response);
+            }
+
+            if (batch.isCancel())
+                break;
+        }
+    }
+
+    private <K> BatchResults<K> sendParallel(BatchRead<K> batch) throws ModbusTransportException,
+            ErrorResponseException {
+        // Each round of up to batchParallelism requests may take all of its retries to time out.
+        long rounds = (batch.getReadFunctionGroups(this).size() + batchParallelism - 1) / batchParallelism;
+        long timeout = rounds * getTimeout() * (getRetries() + 1L) + BATCH_TIMEOUT_MARGIN;
+
+        SettableFuture<BatchResults<K>> future = sendAsync(batch);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            ModbusTransportException mte = new ModbusTransportException(e);
+            // Stops the rest of the batch from being sent.
+            future.fail(mte);
+            throw mte;
+        }
+        catch (InterruptedException e) {
+            throw new ModbusTransportException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ModbusTransportException)
+                throw (ModbusTransportException) cause;
+            if (cause instanceof ErrorResponseException)
+                throw (ErrorResponseException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new ModbusTransportException(cause);
+        }
+    }
+
     //
     //
     // Protected methods
@@ -460,9 +747,43 @@ abstract public class ModbusMaster extends Modbus {
         conn.setDiscardDataDelay(getDiscardDataDelay());
         conn.setExceptionHandler(getExceptionHandler());
         conn.setIoLog(ioLog);
+        conn.setTransactionListener(new MetricsTransactionListener(this));
         return conn;
     }
 
+    /**
+     * Sends the message through the message control without blocking, and adapts the response to a ModbusResponse.
+     *
+     * @param conn a {@link com.serotonin.modbus4j.sero.messaging.MessageControl} object.
+     * @param message a {@link com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage} object.
+     * @param slaveId a int.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    protected SettableFuture<ModbusResponse> sendAsync(MessageControl conn, OutgoingRequestMessage message,
+            final int slaveId) {
+        final SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        conn.sendAsync(message).addListener(new FutureListener<IncomingResponseMessage>() {
+            @Override
+            public void completed(IncomingResponseMessage response) {
+                if (response instanceof IpMessage)
+                    future.complete((ModbusResponse) ((IpMessage) response).getModbusMessage());
+                else if (response instanceof SerialMessage)
+                    future.complete((ModbusResponse) ((SerialMessage) response).getModbusMessage());
+                else
+                    future.complete(null);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (e instanceof ModbusTransportException)
+                    future.fail(e);
+                else
+                    future.fail(new ModbusTransportException(e, slaveId));
+            }
+        });
+        return future;
+    }
+
     /**
      * <p>closeMessageControl.</p>
      *
@@ -484,22 +805,7 @@ abstract public class ModbusMaster extends Modbus {
     private <K> void sendFunctionGroup(ReadFunctionGroup<K> functionGroup, BatchResults<K> results,
             boolean errorsInResults, boolean exceptionsInResults) throws ModbusTransportException,
             ErrorResponseException {
-        int slaveId = functionGroup.getSlaveAndRange().getSlaveId();
-        int startOffset = functionGroup.getStartOffset();
-        int length = functionGroup.getLength();
-
-        // Inspect the function group for data required to create the request.
-        ModbusRequest request;
-        if (functionGroup.getFunctionCode() == FunctionCode.READ_COILS)
-            request = new ReadCoilsRequest(slaveId, startOffset, length);
-        else if (functionGroup.getFunctionCode() == FunctionCode.READ_DISCRETE_INPUTS)
-            request = new ReadDiscreteInputsRequest(slaveId, startOffset, length);
-        else if (functionGroup.getFunctionCode() == FunctionCode.READ_HOLDING_REGISTERS)
-            request = new ReadHoldingRegistersRequest(slaveId, startOffset, length);
-        else if (functionGroup.getFunctionCode() == FunctionCode.READ_INPUT_REGISTERS)
-            request = new ReadInputRegistersRequest(slaveId, startOffset, length);
-        else
-            throw new RuntimeException("Unsupported function");
+        ModbusRequest request = createReadRequest(functionGroup);
 
         ReadResponse response;
         try {
@@ -515,6 +821,31 @@ abstract public class ModbusMaster extends Modbus {
             return;
         }
 
+        addResults(functionGroup, request, response, results, errorsInResults);
+    }
+
+    <K> ModbusRequest createReadRequest(ReadFunctionGroup<K> functionGroup) throws ModbusTransportException {
+        int slaveId = functionGroup.getSlaveAndRange().getSlaveId();
+        int startOffset = functionGroup.getStartOffset();
+        int length = functionGroup.getLength();
+
+        // Inspect the function group for data required to create the request.
+        if (functionGroup.getFunctionCode() == FunctionCode.READ_COILS)
+            return new ReadCoilsRequest(slaveId, startOffset, length);
+        if (functionGroup.getFunctionCode() == FunctionCode.READ_DISCRETE_INPUTS)
+            return new ReadDiscreteInputsRequest(slaveId, startOffset, length);
+        if (functionGroup.getFunctionCode() == FunctionCode.READ_HOLDING_REGISTERS)
+            return new ReadHoldingRegistersRequest(slaveId, startOffset, length);
+        if (functionGroup.getFunctionCode() == FunctionCode.READ_INPUT_REGISTERS)
+            return new ReadInputRegistersRequest(slaveId, startOffset, length);
+        throw new RuntimeException("Unsupported function");
+    }
+
+    private <K> void addResults(ReadFunctionGroup<K> functionGroup, ModbusRequest request, ReadResponse response,
+            BatchResults<K> results, boolean errorsInResults) throws ErrorResponseException {
+        int startOffset = functionGroup.getStartOffset();
+        int length = functionGroup.getLength();
+
         byte[] data = null;
         if (!errorsInResults && response.isException())
             throw new ErrorResponseException(request, response);
@@ -597,5 +928,109 @@ abstract public class ModbusMaster extends Modbus {
         return sp;
     }
 
+    /**
+     * Walks the function groups of a batch, keeping up to batchParallelism requests in flight and sending the next
+     * group as each response arrives. Completions that happen while the walk is already running on another frame are
+     * looped rather than recursed, so a master that completes synchronously does not grow the stack with each group.
+     * Responses may arrive on different threads, so the results are only touched while holding the batch's lock.
+     */
+    class AsyncBatch<K> {
+        private final BatchRead<K> batch;
+        private final SettableFuture<BatchResults<K>> future;
+        private final BatchResults<K> results = new BatchResults<>();
+        private final Iterator<ReadFunctionGroup<K>> groups;
+        private final int parallelism;
+        private final AtomicInteger wip = new AtomicInteger();
+        private int inFlight;
+
+        AsyncBatch(BatchRead<K> batch, SettableFuture<BatchResults<K>> future) {
+            this.batch = batch;
+            this.future = future;
+            groups = batch.getReadFunctionGroups(ModbusMaster.this).iterator();
+            parallelism = batchParallelism;
+        }
+
+        void next() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            do {
+                sendNext();
+            }
+            while (wip.decrementAndGet() != 0);
+        }
+
+        private void sendNext() {
+            while (true) {
+                ReadFunctionGroup<K> functionGroup = null;
+                boolean finished = false;
+                synchronized (this) {
+                    if (future.isDone() || inFlight >= parallelism)
+                        return;
+                    if (!groups.hasNext() || batch.isCancel())
+                        finished = inFlight == 0;
+                    else {
+                        functionGroup = groups.next();
+                        inFlight++;
+                    }
+                }
 
+                if (functionGroup == null) {
+                    if (finished)
+                        future.complete(results);
+                    return;
+                }
+
+                ModbusRequest request;
+                try {
+                    request = createReadRequest(functionGroup);
+                }
+                catch (ModbusTransportException e) {
+                    future.fail(e);
+                    return;
+                }
+                sendAsync(request).addListener(new GroupListener(functionGroup, request));
+            }
+        }
+
+        class GroupListener implements FutureListener<ModbusResponse> {
+            private final ReadFunctionGroup<K> functionGroup;
+            private final ModbusRequest request;
+
+            GroupListener(ReadFunctionGroup<K> functionGroup, ModbusRequest request) {
+                this.functionGroup = functionGroup;
+                this.request = request;
+            }
+
+            @Override
+            public void completed(ModbusResponse response) {
+                try {
+                    synchronized (AsyncBatch.this) {
+                        inFlight--;
+                        addResults(functionGroup, request, (ReadResponse) response, results,
+                                batch.isErrorsInResults());
+                    }
+                }
+                catch (ErrorResponseException | RuntimeException e) {
+                    future.fail(e);
+                    return;
+                }
+                next();
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (!(e instanceof ModbusTransportException) || !batch.isExceptionsInResults()) {
+                    future.fail(e);
+                    return;
+                }
+
+                synchronized (AsyncBatch.this) {
+                    inFlight--;
+                    for (KeyedModbusLocator<K> locator : functionGroup.getLocators())
+                        results.addResult(locator.getKey(), e);
+                }
+                next();
+            }
+        }
+    }
 }
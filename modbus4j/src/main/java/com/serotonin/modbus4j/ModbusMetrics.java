@@ -0,0 +1,265 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.serotonin.modbus4j.sero.util.LatencyHistogram;
+
+/**
+ * A metrics listener that keeps counters and latency histograms for each slave and function code. Recording takes a
+ * few atomic operations and no locks, so it can be left on in production. Checksum errors are counted under function
+ * code 0, because the function code of a corrupt frame cannot be trusted.
+ *
+ * <pre>
+ * ModbusMetrics metrics = new ModbusMetrics();
+ * master.setMetricsListener(metrics);
+ * ...
+ * for (ModbusMetrics.Counters counters : metrics.getCounters())
+ *     System.out.println(counters);
+ * </pre>
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class ModbusMetrics implements ModbusMetricsListener {
+    /** The highest latency, in microseconds, that the histograms track precisely. */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final ConcurrentMap<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    private Counters counters(int slaveId, int functionCode) {
+        Integer key = (slaveId << 8) | (functionCode & 0xff);
+        Counters c = counters.get(key);
+        if (c == null) {
+            Counters created = new Counters(slaveId, functionCode & 0xff);
+            c = counters.putIfAbsent(key, created);
+            if (c == null)
+                c = created;
+        }
+        return c;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestSent(int slaveId, int functionCode, int length, boolean retry) {
+        Counters c = counters(slaveId, functionCode);
+        if (retry)
+            c.retries.incrementAndGet();
+        else
+            c.requests.incrementAndGet();
+        c.bytesOut.addAndGet(length);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void responseReceived(int slaveId, int functionCode, int length, boolean exception) {
+        Counters c = counters(slaveId, functionCode);
+        c.responses.incrementAndGet();
+        if (exception)
+            c.exceptionResponses.incrementAndGet();
+        c.bytesIn.addAndGet(length);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transactionCompleted(int slaveId, int functionCode, long queueNanos, long wireNanos,
+            long totalNanos) {
+        Counters c = counters(slaveId, functionCode);
+        c.queueTime.record(TimeUnit.NANOSECONDS.toMicros(queueNanos));
+        c.wireTime.record(TimeUnit.NANOSECONDS.toMicros(wireNanos));
+        c.totalTime.record(TimeUnit.NANOSECONDS.toMicros(totalNanos));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transactionTimedOut(int slaveId, int functionCode) {
+        counters(slaveId, functionCode).timeouts.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void checksumError(int slaveId) {
+        counters(slaveId, 0).checksumErrors.incrementAndGet();
+    }
+
+    /**
+     * <p>getCounters.</p>
+     *
+     * @param slaveId a int.
+     * @param functionCode a int.
+     * @return the counters of the slave and function code, or null if there has been no traffic for them.
+     */
+    public Counters getCounters(int slaveId, int functionCode) {
+        return counters.get((slaveId << 8) | (functionCode & 0xff));
+    }
+
+    /**
+     * <p>getCounters.</p>
+     *
+     * @return the counters of every slave and function code that has had traffic, ordered by slave id and function
+     *         code.
+     */
+    public List<Counters> getCounters() {
+        List<Counters> result = new ArrayList<>(counters.values());
+        Collections.sort(result, new Comparator<Counters>() {
+            @Override
+            public int compare(Counters a, Counters b) {
+                if (a.slaveId != b.slaveId)
+                    return a.slaveId < b.slaveId ? -1 : 1;
+                return a.functionCode < b.functionCode ? -1 : (a.functionCode == b.functionCode ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Clears all counters.
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * The counters and latency histograms of one slave and function code. The histograms are in microseconds.
+     */
+    public static class Counters {
+        private final int slaveId;
+        private final int functionCode;
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong responses = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong exceptionResponses = new AtomicLong();
+        final AtomicLong checksumErrors = new AtomicLong();
+        final AtomicLong bytesOut = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final LatencyHistogram queueTime = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+        final LatencyHistogram wireTime = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+        final LatencyHistogram totalTime = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+
+        Counters(int slaveId, int functionCode) {
+            this.slaveId = slaveId;
+            this.functionCode = functionCode;
+        }
+
+        public int getSlaveId() {
+            return slaveId;
+        }
+
+        /**
+         * <p>getFunctionCode.</p>
+         *
+         * @return the function code, or 0 for the counters of checksum errors.
+         */
+        public int getFunctionCode() {
+            return functionCode;
+        }
+
+        /**
+         * <p>getRequests.</p>
+         *
+         * @return the number of requests sent, not counting retries.
+         */
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        public long getResponses() {
+            return responses.get();
+        }
+
+        /**
+         * <p>getTimeouts.</p>
+         *
+         * @return the number of requests that timed out along with all of their retries.
+         */
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        public long getExceptionResponses() {
+            return exceptionResponses.get();
+        }
+
+        public long getChecksumErrors() {
+            return checksumErrors.get();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.get();
+        }
+
+        public long getBytesIn() {
+            return bytesIn.get();
+        }
+
+        /**
+         * <p>getQueueTime.</p>
+         *
+         * @return the time that requests spent waiting for earlier requests before their first write.
+         */
+        public LatencyHistogram getQueueTime() {
+            return queueTime;
+        }
+
+        /**
+         * <p>getWireTime.</p>
+         *
+         * @return the time from the last write of a request to its response.
+         */
+        public LatencyHistogram getWireTime() {
+            return wireTime;
+        }
+
+        /**
+         * <p>getTotalTime.</p>
+         *
+         * @return the time from a request being given to the message control to its response, including queueing and
+         *         retries.
+         */
+        public LatencyHistogram getTotalTime() {
+            return totalTime;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return "Counters [slaveId=" + slaveId + ", functionCode=" + functionCode + ", requests=" + getRequests()
+                    + ", retries=" + getRetries() + ", responses=" + getResponses() + ", timeouts=" + getTimeouts()
+                    + ", exceptionResponses=" + getExceptionResponses() + ", checksumErrors="
+                    + getChecksumErrors() + ", bytesOut=" + getBytesOut() + ", bytesIn=" + getBytesIn()
+                    + ", queueTime=[" + queueTime + "], wireTime=[" + wireTime + "], totalTime=[" + totalTime
+                    + "]]";
+        }
+    }
+}
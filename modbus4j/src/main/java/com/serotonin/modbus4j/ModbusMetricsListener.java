@@ -0,0 +1,78 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+/**
+ * Notified by a master of the traffic of its transactions, by slave and function code, e.g. to keep metrics such as
+ * those of {@link ModbusMetrics}. Called on the messaging threads themselves, so implementations must return quickly
+ * and must not throw.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface ModbusMetricsListener {
+    /**
+     * A request has been written.
+     *
+     * @param slaveId the slave id.
+     * @param functionCode the function code.
+     * @param length the number of bytes written, including the framing.
+     * @param retry whether this is a retry of a request that timed out.
+     */
+    public void requestSent(int slaveId, int functionCode, int length, boolean retry);
+
+    /**
+     * A response has been received, whether or not it answers a waiting request.
+     *
+     * @param slaveId the slave id.
+     * @param functionCode the function code, without the exception bit.
+     * @param length the number of bytes received, including the framing.
+     * @param exception whether it is an exception response.
+     */
+    public void responseReceived(int slaveId, int functionCode, int length, boolean exception);
+
+    /**
+     * A request has received its response.
+     *
+     * @param slaveId the slave id.
+     * @param functionCode the function code.
+     * @param queueNanos the time spent waiting for earlier requests before the first write.
+     * @param wireNanos the time from the last write to the response.
+     * @param totalNanos the time from the request being given to the master's message control to the response,
+     *            including any retries.
+     */
+    public void transactionCompleted(int slaveId, int functionCode, long queueNanos, long wireNanos, long totalNanos);
+
+    /**
+     * A request has timed out, along with all of its retries.
+     *
+     * @param slaveId the slave id.
+     * @param functionCode the function code.
+     */
+    public void transactionTimedOut(int slaveId, int functionCode);
+
+    /**
+     * A frame has been received with a bad CRC or LRC.
+     *
+     * @param slaveId the slave id given in the frame, which may itself be corrupt, or -1 if it is not known.
+     */
+    public void checksumError(int slaveId);
+}
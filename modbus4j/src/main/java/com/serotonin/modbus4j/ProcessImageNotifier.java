@@ -0,0 +1,396 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.serotonin.modbus4j.sero.timer.TimerWheel;
+
+/**
+ * Delivers the write notifications of a process image to its listeners.
+ *
+ * By default listeners are called synchronously by the thread handling the write command, and so while it holds any
+ * lock of the process image, as they always have been. If an executor is set, each write command instead becomes a
+ * single event that is queued and delivered on the executor, in order and one at a time, after the process image has
+ * released its locks and without holding up the response to the master. ProcessImageListeners are still called per
+ * address, from the event.
+ *
+ * If a debounce period is also set, writes are collected for that long after the first of them, and then delivered as
+ * one event per contiguous run of written addresses, carrying the value from before the first write and after the
+ * last. Without an executor, debounced events are delivered on the shared timer wheel thread, so listeners must then
+ * be quick.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class ProcessImageNotifier {
+    private static final Log LOG = LogFactory.getLog(ProcessImageNotifier.class);
+
+    private final List<ProcessImageListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ProcessImageRangeListener> rangeListeners = new CopyOnWriteArrayList<>();
+    private volatile Executor executor;
+    private volatile long debounce;
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Debounced writes by address: the value from before the first write, and from the last write.
+     */
+    private TreeMap<Integer, boolean[]> pendingCoils = new TreeMap<>();
+    private TreeMap<Integer, short[]> pendingRegisters = new TreeMap<>();
+    private boolean flushScheduled;
+
+    /**
+     * <p>addListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
+     */
+    public void addListener(ProcessImageListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * <p>removeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageListener} object.
+     */
+    public void removeListener(ProcessImageListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * <p>addRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void addRangeListener(ProcessImageRangeListener l) {
+        rangeListeners.add(l);
+    }
+
+    /**
+     * <p>removeRangeListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ProcessImageRangeListener} object.
+     */
+    public void removeRangeListener(ProcessImageRangeListener l) {
+        rangeListeners.remove(l);
+    }
+
+    /**
+     * <p>hasListeners.</p>
+     *
+     * @return a boolean.
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty() || !rangeListeners.isEmpty();
+    }
+
+    /**
+     * <p>Getter for the field <code>executor</code>.</p>
+     *
+     * @return a {@link java.util.concurrent.Executor} object.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor on which notifications are delivered, or null to deliver them synchronously.
+     *
+     * @param executor a {@link java.util.concurrent.Executor} object.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * <p>Getter for the field <code>debounce</code>.</p>
+     *
+     * @return the debounce period in milliseconds.
+     */
+    public long getDebounce() {
+        return debounce;
+    }
+
+    /**
+     * Sets the period over which writes are collected before they are delivered, or 0 not to debounce.
+     *
+     * @param debounce the debounce period in milliseconds.
+     */
+    public void setDebounce(long debounce) {
+        this.debounce = debounce < 0 ? 0 : debounce;
+    }
+
+    /**
+     * Called by the process image when the master has written a coil.
+     *
+     * @param offset a int.
+     * @param oldValue a boolean.
+     * @param newValue a boolean.
+     */
+    public void coilWritten(int offset, boolean oldValue, boolean newValue) {
+        if (executor == null && debounce == 0 && rangeListeners.isEmpty()) {
+            for (ProcessImageListener l : listeners)
+                l.coilWrite(offset, oldValue, newValue);
+        }
+        else if (hasListeners())
+            coilsWritten(offset, new boolean[] { oldValue }, new boolean[] { newValue });
+    }
+
+    /**
+     * Called by the process image when the master has written a range of coils. The arrays are handed over to the
+     * notifier.
+     *
+     * @param offset a int.
+     * @param oldValues an array of {@link boolean} objects.
+     * @param newValues an array of {@link boolean} objects.
+     */
+    public void coilsWritten(int offset, boolean[] oldValues, boolean[] newValues) {
+        if (!hasListeners())
+            return;
+        if (debounce > 0) {
+            synchronized (this) {
+                for (int i = 0; i < newValues.length; i++) {
+                    boolean[] pending = pendingCoils.get(offset + i);
+                    if (pending == null)
+                        pendingCoils.put(offset + i, new boolean[] { oldValues[i], newValues[i] });
+                    else
+                        pending[1] = newValues[i];
+                }
+                scheduleFlush();
+            }
+        }
+        else
+            publish(new CoilsEvent(offset, oldValues, newValues));
+    }
+
+    /**
+     * Called by the process image when the master has written a holding register.
+     *
+     * @param offset a int.
+     * @param oldValue a short.
+     * @param newValue a short.
+     */
+    public void holdingRegisterWritten(int offset, short oldValue, short newValue) {
+        if (executor == null && debounce == 0 && rangeListeners.isEmpty()) {
+            for (ProcessImageListener l : listeners)
+                l.holdingRegisterWrite(offset, oldValue, newValue);
+        }
+        else if (hasListeners())
+            holdingRegistersWritten(offset, new short[] { oldValue }, new short[] { newValue });
+    }
+
+    /**
+     * Called by the process image when the master has written a range of holding registers. The arrays are handed over
+     * to the notifier.
+     *
+     * @param offset a int.
+     * @param oldValues an array of {@link short} objects.
+     * @param newValues an array of {@link short} objects.
+     */
+    public void holdingRegistersWritten(int offset, short[] oldValues, short[] newValues) {
+        if (!hasListeners())
+            return;
+        if (debounce > 0) {
+            synchronized (this) {
+                for (int i = 0; i < newValues.length; i++) {
+                    short[] pending = pendingRegisters.get(offset + i);
+                    if (pending == null)
+                        pendingRegisters.put(offset + i, new short[] { oldValues[i], newValues[i] });
+                    else
+                        pending[1] = newValues[i];
+                }
+                scheduleFlush();
+            }
+        }
+        else
+            publish(new RegistersEvent(offset, oldValues, newValues));
+    }
+
+    //
+    // Private
+    //
+    private void scheduleFlush() {
+        if (flushScheduled)
+            return;
+        flushScheduled = true;
+        TimerWheel.getShared().schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, debounce);
+    }
+
+    private void flush() {
+        TreeMap<Integer, boolean[]> coils;
+        TreeMap<Integer, short[]> registers;
+        synchronized (this) {
+            coils = pendingCoils;
+            registers = pendingRegisters;
+            pendingCoils = new TreeMap<>();
+            pendingRegisters = new TreeMap<>();
+            flushScheduled = false;
+        }
+
+        for (List<Map.Entry<Integer, boolean[]>> run : runs(coils)) {
+            boolean[] oldValues = new boolean[run.size()];
+            boolean[] newValues = new boolean[run.size()];
+            for (int i = 0; i < run.size(); i++) {
+                oldValues[i] = run.get(i).getValue()[0];
+                newValues[i] = run.get(i).getValue()[1];
+            }
+            publish(new CoilsEvent(run.get(0).getKey(), oldValues, newValues));
+        }
+
+        for (List<Map.Entry<Integer, short[]>> run : runs(registers)) {
+            short[] oldValues = new short[run.size()];
+            short[] newValues = new short[run.size()];
+            for (int i = 0; i < run.size(); i++) {
+                oldValues[i] = run.get(i).getValue()[0];
+                newValues[i] = run.get(i).getValue()[1];
+            }
+            publish(new RegistersEvent(run.get(0).getKey(), oldValues, newValues));
+        }
+    }
+
+    /**
+     * Splits the pending writes into runs of consecutive addresses.
+     */
+    private static <T> List<List<Map.Entry<Integer, T>>> runs(TreeMap<Integer, T> pending) {
+        List<List<Map.Entry<Integer, T>>> runs = new ArrayList<>();
+        List<Map.Entry<Integer, T>> run = null;
+        int next = -1;
+        for (Map.Entry<Integer, T> e : pending.entrySet()) {
+            if (run == null || e.getKey() != next) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(e);
+            next = e.getKey() + 1;
+        }
+        return runs;
+    }
+
+    private void publish(Event event) {
+        Executor executor = this.executor;
+        if (executor == null && debounce == 0) {
+            event.deliver();
+            return;
+        }
+
+        queue.add(event);
+        if (wip.getAndIncrement() == 0) {
+            if (executor == null)
+                drain();
+            else
+                executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            Event event;
+            while ((event = queue.poll()) != null) {
+                try {
+                    event.deliver();
+                }
+                catch (RuntimeException e) {
+                    LOG.warn("Process image listener failed", e);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0)
+                break;
+        }
+    }
+
+    abstract static class Event {
+        final int offset;
+
+        Event(int offset) {
+            this.offset = offset;
+        }
+
+        abstract void deliver();
+    }
+
+    class CoilsEvent extends Event {
+        private final boolean[] oldValues;
+        private final boolean[] newValues;
+
+        CoilsEvent(int offset, boolean[] oldValues, boolean[] newValues) {
+            super(offset);
+            this.oldValues = oldValues;
+            this.newValues = newValues;
+        }
+
+        @Override
+        void deliver() {
+            for (ProcessImageRangeListener l : rangeListeners)
+                l.coilsWrite(offset, oldValues, newValues);
+            for (ProcessImageListener l : listeners) {
+                for (int i = 0; i < newValues.length; i++)
+                    l.coilWrite(offset + i, oldValues[i], newValues[i]);
+            }
+        }
+    }
+
+    class RegistersEvent extends Event {
+        private final short[] oldValues;
+        private final short[] newValues;
+
+        RegistersEvent(int offset, short[] oldValues, short[] newValues) {
+            super(offset);
+            this.oldValues = oldValues;
+            this.newValues = newValues;
+        }
+
+        @Override
+        void deliver() {
+            for (ProcessImageRangeListener l : rangeListeners)
+                l.holdingRegistersWrite(offset, oldValues, newValues);
+            for (ProcessImageListener l : listeners) {
+                for (int i = 0; i < newValues.length; i++)
+                    l.holdingRegisterWrite(offset + i, oldValues[i], newValues[i]);
+            }
+        }
+    }
+}
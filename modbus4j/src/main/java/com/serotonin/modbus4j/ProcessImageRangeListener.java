@@ -0,0 +1,52 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+/**
+ * Notified once for each write command from the master, with the whole range of values that it wrote, rather than
+ * once per address as a ProcessImageListener is. When a ProcessImageNotifier debounces, each call covers a contiguous
+ * run of addresses written during the debounce period, with the values from before the first write and after the
+ * last.
+ *
+ * The arrays are not shared with the process image and may be kept, but should not be modified.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface ProcessImageRangeListener {
+    /**
+     * <p>coilsWrite.</p>
+     *
+     * @param offset the first address written.
+     * @param oldValues the values before the write.
+     * @param newValues the values written.
+     */
+    public void coilsWrite(int offset, boolean[] oldValues, boolean[] newValues);
+
+    /**
+     * <p>holdingRegistersWrite.</p>
+     *
+     * @param offset the first address written.
+     * @param oldValues the values before the write.
+     * @param newValues the values written.
+     */
+    public void holdingRegistersWrite(int offset, short[] oldValues, short[] newValues);
+}
@@ -0,0 +1,91 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j;
+
+import com.serotonin.modbus4j.exception.IllegalDataAddressException;
+
+/**
+ * A process image that can read and write ranges of addresses in one call, e.g. under a single acquisition of its
+ * lock, rather than one address at a time. The request handlers use these methods when the process image implements
+ * this interface, and otherwise fall back to the per address methods of ProcessImage. See ProcessImageUtils.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface RangeProcessImage extends ProcessImage {
+    /**
+     * Reads a range of coils.
+     *
+     * @param offset the first address.
+     * @param count the number of coils.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void readCoils(int offset, int count, boolean[] dst) throws IllegalDataAddressException;
+
+    /**
+     * Reads a range of inputs.
+     *
+     * @param offset the first address.
+     * @param count the number of inputs.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void readInputs(int offset, int count, boolean[] dst) throws IllegalDataAddressException;
+
+    /**
+     * Reads a range of holding registers.
+     *
+     * @param offset the first address.
+     * @param count the number of registers.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void readHoldingRegisters(int offset, int count, short[] dst) throws IllegalDataAddressException;
+
+    /**
+     * Reads a range of input registers.
+     *
+     * @param offset the first address.
+     * @param count the number of registers.
+     * @param dst the array into which the values are copied, from index 0.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void readInputRegisters(int offset, int count, short[] dst) throws IllegalDataAddressException;
+
+    /**
+     * Used to set a range of coils as a result of a write command from the master.
+     *
+     * @param offset the first address.
+     * @param values the values to write.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void writeCoils(int offset, boolean[] values) throws IllegalDataAddressException;
+
+    /**
+     * Used to set a range of holding registers as a result of a write command from the master.
+     *
+     * @param offset the first address.
+     * @param values the values to write.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any of the addresses is invalid.
+     */
+    void writeHoldingRegisters(int offset, short[] values) throws IllegalDataAddressException;
+}
@@ -0,0 +1,76 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.serotonin.modbus4j.code.RegisterRange;
+
+/**
+ * A request cost model counted in bytes on the wire. A register costs two bytes and a bit an eighth of a byte, and
+ * each request costs a fixed overhead that covers framing and the time the bus sits idle between the request and the
+ * response, expressed as the number of bytes that could have been sent in that time. The overhead can be set per
+ * slave, since slow devices behind a gateway can take far longer to answer than the rest.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class ByteRequestCostModel implements RequestCostModel {
+    private final int defaultOverhead;
+    private final Map<Integer, Integer> slaveOverheads = new HashMap<>();
+
+    /**
+     * <p>Constructor for ByteRequestCostModel.</p>
+     *
+     * @param defaultOverhead the overhead of a request in bytes, for slaves that have not been given their own.
+     */
+    public ByteRequestCostModel(int defaultOverhead) {
+        this.defaultOverhead = defaultOverhead;
+    }
+
+    /**
+     * <p>setOverhead.</p>
+     *
+     * @param slaveId a int.
+     * @param overhead the overhead of a request to the slave in bytes.
+     */
+    public void setOverhead(int slaveId, int overhead) {
+        slaveOverheads.put(slaveId, overhead);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getRequestCost(int slaveId) {
+        Integer overhead = slaveOverheads.get(slaveId);
+        if (overhead == null)
+            return defaultOverhead;
+        return overhead;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getUnitCost(int slaveId, int range) {
+        if (range == RegisterRange.COIL_STATUS || range == RegisterRange.INPUT_STATUS)
+            return 0.125;
+        return 2;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.base;
+
+import java.util.List;
+
+/**
+ * A partitioner that reads across gaps between locators when that is cheaper than sending another request.
+ *
+ * The locators are first collected into blocks of overlapping or abutting locators. Requests are then formed from
+ * runs of consecutive blocks, choosing the runs that minimize the total cost according to the cost model, subject to
+ * the maximum request length and to never reading across a gap wider than maxGap. Without a cost model every request
+ * costs the same and registers are free, i.e. the fewest requests are sent. With a max gap of zero the result is the
+ * same as BatchRead's contiguous requests.
+ *
+ * The work is linear in the number of locators times the number of blocks that fit in one request, on top of the sort
+ * that the batch read has already done.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class CostBasedRequestPartitioner implements RequestPartitioner {
+    private final int maxGap;
+    private final RequestCostModel costModel;
+
+    /**
+     * <p>Constructor for CostBasedRequestPartitioner.</p>
+     *
+     * @param maxGap the most unrequested registers or bits that a request may read between two locators.
+     */
+    public CostBasedRequestPartitioner(int maxGap) {
+        this(maxGap, null);
+    }
+
+    /**
+     * <p>Constructor for CostBasedRequestPartitioner.</p>
+     *
+     * @param maxGap the most unrequested registers or bits that a request may read between two locators.
+     * @param costModel a {@link com.serotonin.modbus4j.base.RequestCostModel} object, or null to minimize the number
+     *            of requests.
+     */
+    public CostBasedRequestPartitioner(int maxGap, RequestCostModel costModel) {
+        this.maxGap = maxGap < 0 ? 0 : maxGap;
+        this.costModel = costModel;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <K> void partition(List<ReadFunctionGroup<K>> functionGroups, List<KeyedModbusLocator<K>> locators,
+            int maxCount) {
+        int n = locators.size();
+        if (n == 0)
+            return;
+
+        // Collect the locators into blocks. A block never spans more than maxCount, so a run of abutting locators
+        // longer than that is cut at a locator boundary.
+        int[] blockStart = new int[n];
+        int[] blockEnd = new int[n];
+        int[] firstLocator = new int[n + 1];
+        int blocks = 0;
+        for (int i = 0; i < n; i++) {
+            KeyedModbusLocator<K> locator = locators.get(i);
+            if (blocks > 0 && locator.getOffset() <= blockEnd[blocks - 1] + 1
+                    && Math.max(blockEnd[blocks - 1], locator.getEndOffset()) - blockStart[blocks - 1] < maxCount) {
+                if (blockEnd[blocks - 1] < locator.getEndOffset())
+                    blockEnd[blocks - 1] = locator.getEndOffset();
+            }
+            else {
+                blockStart[blocks] = locator.getOffset();
+                blockEnd[blocks] = locator.getEndOffset();
+                firstLocator[blocks] = i;
+                blocks++;
+            }
+        }
+        firstLocator[blocks] = n;
+
+        SlaveAndRange slaveAndRange = locators.get(0).getSlaveAndRange();
+        double requestCost = 1;
+        double unitCost = 0;
+        if (costModel != null) {
+            requestCost = costModel.getRequestCost(slaveAndRange.getSlaveId());
+            unitCost = costModel.getUnitCost(slaveAndRange.getSlaveId(), slaveAndRange.getRange());
+        }
+
+        // best[i] is the least cost of reading the first i blocks, and from[i] the first block of the last request
+        // in that solution. Since block ends only increase, the span of a run of blocks only grows as the run is
+        // extended backwards, so the inner loop can stop at the first run that is too long.
+        double[] best = new double[blocks + 1];
+        int[] from = new int[blocks + 1];
+        for (int i = 1; i <= blocks; i++) {
+            best[i] = Double.MAX_VALUE;
+            int widestGap = 0;
+            for (int j = i - 1; j >= 0; j--) {
+                if (j < i - 1)
+                    widestGap = Math.max(widestGap, blockStart[j + 1] - blockEnd[j] - 1);
+                int span = blockEnd[i - 1] - blockStart[j] + 1;
+                // A single block always fits.
+                if (j < i - 1 && (span > maxCount || widestGap > maxGap))
+                    break;
+
+                double cost = best[j] + requestCost + unitCost * span;
+                if (cost < best[i]) {
+                    best[i] = cost;
+                    from[i] = j;
+                }
+            }
+        }
+
+        // Walk the solution back from the end, then create the groups in offset order.
+        int[] cuts = new int[blocks + 1];
+        int count = 0;
+        for (int i = blocks; i > 0; i = from[i])
+            cuts[count++] = i;
+        int start = 0;
+        while (count > 0) {
+            int end = cuts[--count];
+            ReadFunctionGroup<K> functionGroup = new ReadFunctionGroup<>(locators.get(firstLocator[start]));
+            for (int l = firstLocator[start] + 1; l < firstLocator[end]; l++)
+                functionGroup.add(locators.get(l));
+            functionGroups.add(functionGroup);
+            start = end;
+        }
+    }
+}
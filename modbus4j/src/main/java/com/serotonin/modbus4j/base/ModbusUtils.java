@@ -20,7 +20,9 @@
  */
 package com.serotonin.modbus4j.base;
 
+import com.serotonin.modbus4j.ModbusConfig;
 import com.serotonin.modbus4j.code.RegisterRange;
+import com.serotonin.modbus4j.exception.ChecksumException;
 import com.serotonin.modbus4j.exception.IllegalSlaveIdException;
 import com.serotonin.modbus4j.exception.ModbusIdException;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
@@ -189,13 +191,23 @@ public class ModbusUtils {
      * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
      */
     public static void checkCRC(ModbusMessage modbusMessage, ByteQueue queue) throws ModbusTransportException {
-        // Check the CRC
-        int calcCrc = calculateCRC(modbusMessage);
+        checkCRC(calculateCRC(modbusMessage), queue, modbusMessage.getSlaveId());
+    }
+
+    /**
+     * Pops the CRC off the queue and compares it with one already calculated over the received bytes, e.g. with
+     * calculateCRC(queue, 0, length) before the message was parsed.
+     *
+     * @param calcCrc the calculated CRC.
+     * @param queue a {@link com.serotonin.modbus4j.sero.util.queue.ByteQueue} object.
+     * @param slaveId the slave id to report in the exception.
+     * @throws com.serotonin.modbus4j.exception.ChecksumException if the CRCs do not match.
+     */
+    public static void checkCRC(int calcCrc, ByteQueue queue, int slaveId) throws ModbusTransportException {
         int givenCrc = ModbusUtils.popUnsignedShort(queue);
 
         if (calcCrc != givenCrc)
-            throw new ModbusTransportException("CRC mismatch: given=" + givenCrc + ", calc=" + calcCrc,
-                    modbusMessage.getSlaveId());
+            throw new ChecksumException("CRC mismatch: given=" + givenCrc + ", calc=" + calcCrc, slaveId);
     }
 
     /**
@@ -207,15 +219,26 @@ public class ModbusUtils {
     public static int calculateCRC(ModbusMessage modbusMessage) {
         ByteQueue queue = new ByteQueue();
         modbusMessage.write(queue);
+        return calculateCRC(queue, 0, queue.size());
+    }
 
+    /**
+     * Calculates the CRC over bytes that are already in a queue, without consuming them. Used on the raw bytes of a
+     * received frame and on an outgoing frame once it has been written, so the message never needs to be serialized
+     * a second time just for its CRC.
+     *
+     * @param queue a {@link com.serotonin.modbus4j.sero.util.queue.ByteQueue} object.
+     * @param offset the position in the queue of the first byte.
+     * @param length the number of bytes.
+     * @return the CRC in the order in which it is pushed, i.e. with pushShort.
+     */
+    public static int calculateCRC(ByteQueue queue, int offset, int length) {
         int high = 0xff;
         int low = 0xff;
-        int nextByte = 0;
         int uIndex;
 
-        while (queue.size() > 0) {
-            nextByte = 0xFF & queue.pop();
-            uIndex = high ^ nextByte;
+        for (int i = 0; i < length; i++) {
+            uIndex = high ^ (0xFF & queue.peek(offset + i));
             high = low ^ lookupCRCHi[uIndex];
             low = lookupCRCLo[uIndex];
         }
@@ -223,6 +246,75 @@ public class ModbusUtils {
         return (high << 8) | low;
     }
 
+    /**
+     * Calculates the CRC over a range of an array. If enabled in ModbusConfig, runs of eight bytes are folded in at
+     * a time using slicing-by-8 tables.
+     *
+     * @param data an array of {@link byte} objects.
+     * @param offset the position of the first byte.
+     * @param length the number of bytes.
+     * @return the CRC in the order in which it is pushed, i.e. with pushShort.
+     */
+    public static int calculateCRC(byte[] data, int offset, int length) {
+        int crc = 0xffff;
+
+        if (ModbusConfig.isEnableCrcSlicingBy8()) {
+            int[][] t = CrcSlicingTables.TABLES;
+            while (length >= 8) {
+                crc ^= (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8);
+                crc = t[7][crc & 0xff] ^ t[6][crc >>> 8] ^ t[5][data[offset + 2] & 0xff]
+                        ^ t[4][data[offset + 3] & 0xff] ^ t[3][data[offset + 4] & 0xff]
+                        ^ t[2][data[offset + 5] & 0xff] ^ t[1][data[offset + 6] & 0xff]
+                        ^ t[0][data[offset + 7] & 0xff];
+                offset += 8;
+                length -= 8;
+            }
+        }
+
+        // The register holds the low order byte of the table entries in its low byte, so this is the same
+        // calculation as above.
+        int uIndex;
+        while (length-- > 0) {
+            uIndex = (crc ^ data[offset++]) & 0xff;
+            crc = (crc >>> 8) ^ (lookupCRCHi[uIndex] | (lookupCRCLo[uIndex] << 8));
+        }
+
+        return ((crc & 0xff) << 8) | (crc >>> 8);
+    }
+
+    /**
+     * Copies the data into a new array with room for the CRC, and writes the CRC into the end of it.
+     *
+     * @param data an array of {@link byte} objects.
+     * @return an array of {@link byte} objects.
+     */
+    public static byte[] appendCRC(byte[] data) {
+        byte[] frame = new byte[data.length + 2];
+        System.arraycopy(data, 0, frame, 0, data.length);
+        int crc = calculateCRC(data, 0, data.length);
+        frame[data.length] = (byte) (crc >> 8);
+        frame[data.length + 1] = (byte) crc;
+        return frame;
+    }
+
+    /**
+     * Slicing-by-8 tables, built from the byte tables below the first time they are needed.
+     */
+    private static class CrcSlicingTables {
+        static final int[][] TABLES = new int[8][256];
+
+        static {
+            for (int i = 0; i < 256; i++)
+                TABLES[0][i] = lookupCRCHi[i] | (lookupCRCLo[i] << 8);
+            for (int k = 1; k < 8; k++) {
+                for (int i = 0; i < 256; i++) {
+                    int prev = TABLES[k - 1][i];
+                    TABLES[k][i] = (prev >>> 8) ^ TABLES[0][prev & 0xff];
+                }
+            }
+        }
+    }
+
     // Table of CRC values for high-order byte
     private final static short[] lookupCRCHi = { 0x00, 0xC1, 0x81, 0x40, 0x01, 0xC0, 0x80, 0x41, 0x01, 0xC0, 0x80,
             0x41, 0x00, 0xC1, 0x81, 0x40, 0x01, 0xC0, 0x80, 0x41, 0x00, 0xC1, 0x81, 0x40, 0x00, 0xC1, 0x81, 0x40, 0x01,
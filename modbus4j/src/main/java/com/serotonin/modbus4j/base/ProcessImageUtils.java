@@ -0,0 +1,146 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.base;
+
+import com.serotonin.modbus4j.ProcessImage;
+import com.serotonin.modbus4j.RangeProcessImage;
+import com.serotonin.modbus4j.exception.IllegalDataAddressException;
+
+/**
+ * Range access to any process image. Images that implement RangeProcessImage are called once for the whole range;
+ * others are called once per address, as the request handlers always used to.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class ProcessImageUtils {
+    /**
+     * <p>readCoils.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link boolean} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void readCoils(ProcessImage processImage, int offset, int count, boolean[] dst)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).readCoils(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = processImage.getCoil(offset + i);
+        }
+    }
+
+    /**
+     * <p>readInputs.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link boolean} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void readInputs(ProcessImage processImage, int offset, int count, boolean[] dst)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).readInputs(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = processImage.getInput(offset + i);
+        }
+    }
+
+    /**
+     * <p>readHoldingRegisters.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link short} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void readHoldingRegisters(ProcessImage processImage, int offset, int count, short[] dst)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).readHoldingRegisters(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = processImage.getHoldingRegister(offset + i);
+        }
+    }
+
+    /**
+     * <p>readInputRegisters.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link short} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void readInputRegisters(ProcessImage processImage, int offset, int count, short[] dst)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).readInputRegisters(offset, count, dst);
+        else {
+            for (int i = 0; i < count; i++)
+                dst[i] = processImage.getInputRegister(offset + i);
+        }
+    }
+
+    /**
+     * <p>writeCoils.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param values an array of {@link boolean} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void writeCoils(ProcessImage processImage, int offset, boolean[] values)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).writeCoils(offset, values);
+        else {
+            for (int i = 0; i < values.length; i++)
+                processImage.writeCoil(offset + i, values[i]);
+        }
+    }
+
+    /**
+     * <p>writeHoldingRegisters.</p>
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param values an array of {@link short} objects.
+     * @throws com.serotonin.modbus4j.exception.IllegalDataAddressException if any.
+     */
+    public static void writeHoldingRegisters(ProcessImage processImage, int offset, short[] values)
+            throws IllegalDataAddressException {
+        if (processImage instanceof RangeProcessImage)
+            ((RangeProcessImage) processImage).writeHoldingRegisters(offset, values);
+        else {
+            for (int i = 0; i < values.length; i++)
+                processImage.writeHoldingRegister(offset + i, values[i]);
+        }
+    }
+}
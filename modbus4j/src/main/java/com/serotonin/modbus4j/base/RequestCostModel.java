@@ -0,0 +1,48 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.base;
+
+/**
+ * Estimates how long requests take on the bus, so that a partitioner can weigh reading across a gap against sending
+ * another request. Costs may be in any unit as long as both methods use the same one.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface RequestCostModel {
+    /**
+     * The fixed cost of one request to the slave, regardless of its length, e.g. the round trip, the slave's
+     * turnaround and the framing of the request and response.
+     *
+     * @param slaveId a int.
+     * @return a double.
+     */
+    double getRequestCost(int slaveId);
+
+    /**
+     * The cost of reading one more register or bit in the given range of the slave.
+     *
+     * @param slaveId a int.
+     * @param range a int.
+     * @return a double.
+     */
+    double getUnitCost(int slaveId, int range);
+}
@@ -0,0 +1,43 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.base;
+
+import java.util.List;
+
+/**
+ * Breaks the locators of one slave and register range into the function groups that a batch read sends as
+ * individual requests. Set on a BatchRead to replace its default partitioning.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface RequestPartitioner {
+    /**
+     * <p>partition.</p>
+     *
+     * @param functionGroups the list to add the new function groups to.
+     * @param locators the locators of a single slave and range, sorted by offset. Implementations must not rely on
+     *            being able to modify this list.
+     * @param maxCount the most registers or bits that a single request may read.
+     * @param <K> type of key
+     */
+    <K> void partition(List<ReadFunctionGroup<K>> functionGroups, List<KeyedModbusLocator<K>> locators, int maxCount);
+}
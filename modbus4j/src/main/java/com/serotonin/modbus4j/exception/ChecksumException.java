@@ -0,0 +1,42 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.exception;
+
+/**
+ * Thrown when the CRC or LRC of a received frame does not match its contents, i.e. the frame was corrupted on the
+ * wire.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class ChecksumException extends ModbusTransportException {
+    private static final long serialVersionUID = -1;
+
+    /**
+     * <p>Constructor for ChecksumException.</p>
+     *
+     * @param message a {@link java.lang.String} object.
+     * @param slaveId the slave id given in the frame, or -1 if it is not known.
+     */
+    public ChecksumException(String message, int slaveId) {
+        super(message, slaveId);
+    }
+}
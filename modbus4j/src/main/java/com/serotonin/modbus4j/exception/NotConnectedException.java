@@ -0,0 +1,51 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.exception;
+
+/**
+ * Thrown straight away for a request made while the master's connection is down and being re-established in the
+ * background, rather than making the caller wait for the connection.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class NotConnectedException extends ModbusTransportException {
+    private static final long serialVersionUID = -1;
+
+    /**
+     * <p>Constructor for NotConnectedException.</p>
+     *
+     * @param slaveId a int.
+     */
+    public NotConnectedException(int slaveId) {
+        super("Not connected", slaveId);
+    }
+
+    /**
+     * <p>Constructor for NotConnectedException.</p>
+     *
+     * @param cause the failure that closed the connection.
+     * @param slaveId a int.
+     */
+    public NotConnectedException(Throwable cause, int slaveId) {
+        super("Not connected", cause, slaveId);
+    }
+}
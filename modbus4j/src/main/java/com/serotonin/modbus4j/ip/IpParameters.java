@@ -33,6 +33,7 @@ public class IpParameters {
     private int port = ModbusUtils.TCP_PORT;
     private boolean encapsulated;
     private Integer lingerTime = -1;
+    private int pipelineWindow = 1;
 
 
     /**
@@ -103,6 +104,31 @@ public class IpParameters {
      */
     public void setLingerTime(Integer lingerTime) { this.lingerTime = lingerTime; }
 
+    /**
+     * <p>Getter for the field <code>pipelineWindow</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    /**
+     * Sets the maximum number of requests that a keep-alive TCP master may have on the wire at once. Each pipelined
+     * request carries its own transaction id, so the responses can arrive in any order. A value of 1 (the default)
+     * sends one request at a time. Encapsulated masters have no transaction ids and always send one at a time.
+     *
+     * @param pipelineWindow a int.
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        if (pipelineWindow < 1)
+            this.pipelineWindow = 1;
+        else if (pipelineWindow > 0xffff)
+            this.pipelineWindow = 0xffff;
+        else
+            this.pipelineWindow = pipelineWindow;
+    }
+
 
 
 }
@@ -23,7 +23,6 @@ package com.serotonin.modbus4j.ip.encap;
 import com.serotonin.modbus4j.base.ModbusUtils;
 import com.serotonin.modbus4j.ip.IpMessage;
 import com.serotonin.modbus4j.msg.ModbusMessage;
-import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
 
 /**
  * <p>EncapMessage class.</p>
@@ -47,15 +46,7 @@ public class EncapMessage extends IpMessage {
      * @return an array of {@link byte} objects.
      */
     public byte[] getMessageData() {
-        ByteQueue msgQueue = new ByteQueue();
-
-        // Write the particular message.
-        modbusMessage.write(msgQueue);
-
-        // Write the CRC
-        ModbusUtils.pushShort(msgQueue, ModbusUtils.calculateCRC(modbusMessage));
-
-        // Return the data.
-        return msgQueue.popAll();
+        // Write the particular message and the CRC.
+        return ModbusUtils.appendCRC(modbusMessage.encode());
     }
 }
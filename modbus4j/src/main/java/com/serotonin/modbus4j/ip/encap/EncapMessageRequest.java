@@ -35,12 +35,23 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  */
 public class EncapMessageRequest extends EncapMessage implements OutgoingRequestMessage, IncomingRequestMessage {
     static EncapMessageRequest createEncapMessageRequest(ByteQueue queue) throws ModbusTransportException {
+        // Wait until the whole frame has arrived.
+        int length = ModbusRequest.peekRequestLength(queue, 0);
+        if (length == -1 || queue.size() < length + 2)
+            return null;
+
+        // Calculate the CRC over the raw bytes before they are consumed.
+        int calcCrc = length > 0 ? ModbusUtils.calculateCRC(queue, 0, length) : 0;
+
         // Create the modbus response.
         ModbusRequest request = ModbusRequest.createModbusRequest(queue);
         EncapMessageRequest encapRequest = new EncapMessageRequest(request);
 
         // Check the CRC
-        ModbusUtils.checkCRC(encapRequest.modbusMessage, queue);
+        if (length > 0)
+            ModbusUtils.checkCRC(calcCrc, queue, request.getSlaveId());
+        else
+            ModbusUtils.checkCRC(encapRequest.modbusMessage, queue);
 
         return encapRequest;
     }
@@ -34,12 +34,20 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  */
 public class EncapMessageResponse extends EncapMessage implements IpMessageResponse {
     static EncapMessageResponse createEncapMessageResponse(ByteQueue queue) throws ModbusTransportException {
+        // Wait until the whole frame has arrived.
+        int length = ModbusResponse.peekResponseLength(queue, 0);
+        if (length == -1 || queue.size() < length + 2)
+            return null;
+
+        // Calculate the CRC over the raw bytes before they are consumed.
+        int calcCrc = length > 0 ? ModbusUtils.calculateCRC(queue, 0, length) : 0;
+
         // Create the modbus response.
         ModbusResponse response = ModbusResponse.createModbusResponse(queue);
         EncapMessageResponse encapResponse = new EncapMessageResponse(response);
 
         // Check the CRC
-        ModbusUtils.checkCRC(encapResponse.modbusMessage, queue);
+        ModbusUtils.checkCRC(calcCrc, queue, response.getSlaveId());
 
         return encapResponse;
     }
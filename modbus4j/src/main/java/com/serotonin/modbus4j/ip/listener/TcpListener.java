@@ -23,9 +23,11 @@ package com.serotonin.modbus4j.ip.listener;
 
 import java.io.IOException;
 import java.net.BindException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -50,6 +52,7 @@ import com.serotonin.modbus4j.msg.ModbusRequest;
 import com.serotonin.modbus4j.msg.ModbusResponse;
 import com.serotonin.modbus4j.sero.messaging.EpollStreamTransport;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
+import com.serotonin.modbus4j.sero.messaging.NioSocketTransport;
 import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
 import com.serotonin.modbus4j.sero.messaging.StreamTransport;
 import com.serotonin.modbus4j.sero.messaging.Transport;
@@ -321,12 +324,24 @@ public class TcpListener extends ModbusMaster {
 
                 if (!connected) {
                     try {
-                        serverSocket = new ServerSocket(ipParameters.getPort());
+                        if (getSelectorGroup() != null) {
+                            // A socket accepted through a channel has a channel of its own.
+                            serverSocket = ServerSocketChannel.open().socket();
+                            serverSocket.bind(new InetSocketAddress(ipParameters.getPort()));
+                        }
+                        else
+                            serverSocket = new ServerSocket(ipParameters.getPort());
                         LOG.debug("Start Accept on port: " + ipParameters.getPort());
                         socket = serverSocket.accept();
                         LOG.info("Connected: " + socket.getInetAddress() + ":" + ipParameters.getPort());
 
-                        if (getePoll() != null)
+                        if (getSelectorGroup() != null) {
+                            NioSocketTransport nioTransport = new NioSocketTransport(socket.getChannel(),
+                                    getSelectorGroup());
+                            nioTransport.setWriteTimeout(getTimeout());
+                            transport = nioTransport;
+                        }
+                        else if (getePoll() != null)
                             transport = new EpollStreamTransport(socket.getInputStream(), socket.getOutputStream(),
                                     getePoll());
                         else
@@ -355,7 +370,7 @@ public class TcpListener extends ModbusMaster {
             conn.setExceptionHandler(getExceptionHandler());
             conn.DEBUG = true;
             conn.start(transport, ipMessageParser, null, waitingRoomKeyFactory);
-            if (getePoll() == null)
+            if (transport instanceof StreamTransport)
                 ((StreamTransport) transport).start("Modbus4J TcpMaster");
             connected = true;
         }
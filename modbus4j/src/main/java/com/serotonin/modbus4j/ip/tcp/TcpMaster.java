@@ -23,15 +23,26 @@ package com.serotonin.modbus4j.ip.tcp;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.serotonin.modbus4j.ConnectionStateListener;
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.base.BaseMessageParser;
+import com.serotonin.modbus4j.code.FunctionCode;
 import com.serotonin.modbus4j.exception.ModbusInitException;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.exception.NotConnectedException;
 import com.serotonin.modbus4j.ip.IpMessageResponse;
 import com.serotonin.modbus4j.ip.IpParameters;
 import com.serotonin.modbus4j.ip.encap.EncapMessageParser;
@@ -42,16 +53,29 @@ import com.serotonin.modbus4j.ip.xa.XaMessageRequest;
 import com.serotonin.modbus4j.ip.xa.XaWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.msg.ModbusRequest;
 import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.sero.messaging.BlockingStreamTransport;
 import com.serotonin.modbus4j.sero.messaging.EpollStreamTransport;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
+import com.serotonin.modbus4j.sero.messaging.NioSocketTransport;
 import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
 import com.serotonin.modbus4j.sero.messaging.StreamTransport;
+import com.serotonin.modbus4j.sero.messaging.TimeoutException;
 import com.serotonin.modbus4j.sero.messaging.Transport;
 import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
+import com.serotonin.modbus4j.sero.timer.TimerWheel;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>TcpMaster class.</p>
  *
+ * A keep-alive master with autoReconnect set supervises its connection. When the connection is lost, it is
+ * re-established by a background thread, with exponentially growing and jittered delays between attempts, rather than
+ * by the thread of the request that found it lost. Until it is back, requests fail straight away with a
+ * NotConnectedException. Reads that were in flight when it was lost, and so may be repeated safely, wait up to the
+ * timeout for it to come back and are then sent once more. The changes of state are reported to connection state
+ * listeners.
+ *
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
@@ -67,8 +91,25 @@ public class TcpMaster extends ModbusMaster {
 
     // Runtime fields.
     private Socket socket;
-    private Transport transport;
-    private MessageControl conn;
+    private volatile Transport transport;
+    private volatile MessageControl conn;
+
+    // Pipelining fields. Synchronous and asynchronous requests on a keep-alive connection share the window, which has
+    // a single permit unless pipelining is enabled.
+    private final Object transactionIdLock = new Object();
+    private Semaphore pipelineWindow;
+    private boolean pipelined;
+    private final Queue<Runnable> windowQueue = new ConcurrentLinkedQueue<>();
+
+    // Reconnect supervisor fields.
+    private boolean autoReconnect;
+    private long reconnectInitialDelay = 250;
+    private long reconnectMaxDelay = 30000;
+    private final List<ConnectionStateListener> connectionStateListeners = new CopyOnWriteArrayList<>();
+    private final Object connectionLock = new Object();
+    private Thread reconnectThread;
+    private final Queue<Replay> replays = new ConcurrentLinkedQueue<>();
+    private final Random jitter = new Random();
 
 
     /**
@@ -164,9 +205,84 @@ public class TcpMaster extends ModbusMaster {
         return nextTransactionId;
     }
 
+    /**
+     * <p>isAutoReconnect.</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isAutoReconnect() {
+        return autoReconnect;
+    }
+
+    /**
+     * Sets whether a keep-alive connection that is lost is re-established in the background. Set before init.
+     *
+     * @param autoReconnect a boolean.
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * <p>Getter for the field <code>reconnectInitialDelay</code>.</p>
+     *
+     * @return the delay before the first attempt to reconnect, in milliseconds.
+     */
+    public long getReconnectInitialDelay() {
+        return reconnectInitialDelay;
+    }
+
+    /**
+     * <p>Getter for the field <code>reconnectMaxDelay</code>.</p>
+     *
+     * @return the longest delay between attempts to reconnect, in milliseconds.
+     */
+    public long getReconnectMaxDelay() {
+        return reconnectMaxDelay;
+    }
+
+    /**
+     * Sets the delays between attempts to reconnect. The delay doubles after each failed attempt, up to the maximum,
+     * and each actual delay is chosen at random between half of it and all of it, so that masters that lost their
+     * connections at the same time do not all reconnect at the same time.
+     *
+     * @param initialDelay the delay before the first attempt, in milliseconds.
+     * @param maxDelay the longest delay, in milliseconds.
+     */
+    public void setReconnectDelay(long initialDelay, long maxDelay) {
+        if (initialDelay < 1 || maxDelay < initialDelay)
+            throw new IllegalArgumentException("Invalid reconnect delays: initial " + initialDelay + ", max "
+                    + maxDelay);
+        this.reconnectInitialDelay = initialDelay;
+        this.reconnectMaxDelay = maxDelay;
+    }
+
+    /**
+     * <p>addConnectionStateListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ConnectionStateListener} object.
+     */
+    public void addConnectionStateListener(ConnectionStateListener l) {
+        connectionStateListeners.add(l);
+    }
+
+    /**
+     * <p>removeConnectionStateListener.</p>
+     *
+     * @param l a {@link com.serotonin.modbus4j.ConnectionStateListener} object.
+     */
+    public void removeConnectionStateListener(ConnectionStateListener l) {
+        connectionStateListeners.remove(l);
+    }
+
     /** {@inheritDoc} */
     @Override
     synchronized public void init() throws ModbusInitException {
+        // Encapsulated frames carry no transaction id to tell the responses of the same slave and function apart.
+        pipelined = keepAlive && ipParameters.getPipelineWindow() > 1 && !ipParameters.isEncapsulated()
+                && autoIncrementTransactionId;
+        pipelineWindow = new Semaphore(pipelined ? ipParameters.getPipelineWindow() : 1, true);
+
         try {
             if (keepAlive)
                 openConnection();
@@ -182,11 +298,39 @@ public class TcpMaster extends ModbusMaster {
     synchronized public void destroy() {
         closeConnection();
         initialized = false;
+
+        if (reconnectThread != null) {
+            reconnectThread.interrupt();
+            reconnectThread = null;
+        }
+        synchronized (connectionLock) {
+            connectionLock.notifyAll();
+        }
+        Replay replay;
+        while ((replay = replays.poll()) != null)
+            replay.run();
     }
 
     /** {@inheritDoc} */
     @Override
-    synchronized public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
+    public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
+        if (keepAlive && autoReconnect)
+            return sendSupervised(request);
+        if (!keepAlive)
+            return sendSerialized(request);
+
+        Semaphore window = acquireWindow(request);
+        try {
+            if (pipelined)
+                return sendPipelined(request);
+            return sendSerialized(request);
+        }
+        finally {
+            releaseWindow(window);
+        }
+    }
+
+    synchronized private ModbusResponse sendSerialized(ModbusRequest request) throws ModbusTransportException {
         try {
             // Check if we need to open the connection.
             if (!keepAlive)
@@ -208,7 +352,7 @@ public class TcpMaster extends ModbusMaster {
             ipRequest = new EncapMessageRequest(request);
         else {
             if(autoIncrementTransactionId)
-                this.nextTransactionId++;
+                allocateTransactionId();
             ipRequest = new XaMessageRequest(request, getNextTransactionId());
         }
 
@@ -283,6 +427,411 @@ public class TcpMaster extends ModbusMaster {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Only keep-alive connections are sent asynchronously. Asynchronous requests count against the pipeline window
+     * like synchronous ones, so without pipelining only one request of either kind is on the wire at a time. When the
+     * window is full they are queued without blocking, and written from the send executor as responses free it. A
+     * failure is reported through the future rather than reopening the connection.
+     */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncImpl(ModbusRequest request) {
+        if (keepAlive && autoReconnect)
+            return sendAsyncSupervised(request, new SettableFuture<ModbusResponse>(), false);
+
+        MessageControl c = conn;
+        if (!keepAlive || c == null)
+            return super.sendAsyncImpl(request);
+        return sendAsyncWindowed(c, request);
+    }
+
+    /**
+     * Sends the request as soon as the pipeline window has room for it. The permit is released when the response
+     * arrives or the request fails.
+     */
+    private SettableFuture<ModbusResponse> sendAsyncWindowed(final MessageControl c, final ModbusRequest request) {
+        final Semaphore window = pipelineWindow;
+        final SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        windowQueue.add(new Runnable() {
+            @Override
+            public void run() {
+                sendAsync(c, createIpRequest(request), request.getSlaveId()).addListener(
+                        new FutureListener<ModbusResponse>() {
+                            @Override
+                            public void completed(ModbusResponse response) {
+                                releaseWindow(window);
+                                future.complete(response);
+                            }
+
+                            @Override
+                            public void failed(Exception e) {
+                                releaseWindow(window);
+                                future.fail(e);
+                            }
+                        });
+            }
+        });
+        drainWindowQueue(window);
+        return future;
+    }
+
+    /**
+     * Sends queued asynchronous requests while the window has free permits. Called on the sending thread whenever a
+     * request is queued, and on the send executor whenever a permit is released, so that a queued request is never
+     * left behind a free permit.
+     */
+    private void drainWindowQueue(Semaphore window) {
+        while (!windowQueue.isEmpty() && window.tryAcquire()) {
+            Runnable send = windowQueue.poll();
+            if (send == null)
+                // Another thread took it.
+                window.release();
+            else
+                send.run();
+        }
+    }
+
+    private Semaphore acquireWindow(ModbusRequest request) throws ModbusTransportException {
+        Semaphore window = pipelineWindow;
+        try {
+            window.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModbusTransportException(e, request.getSlaveId());
+        }
+        return window;
+    }
+
+    /**
+     * Releases a permit of the window. The permit is often released on the thread that received a response, which may
+     * be a selector thread that must not block, so queued requests are written from the send executor.
+     */
+    private void releaseWindow(final Semaphore window) {
+        window.release();
+        if (!windowQueue.isEmpty()) {
+            MessageControl.getSendExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    drainWindowQueue(window);
+                }
+            });
+        }
+    }
+
+    private OutgoingRequestMessage createIpRequest(ModbusRequest request) {
+        if (ipParameters.isEncapsulated())
+            return new EncapMessageRequest(request);
+        if (autoIncrementTransactionId)
+            return new XaMessageRequest(request, allocateTransactionId());
+        return new XaMessageRequest(request, getNextTransactionId());
+    }
+
+    //
+    //
+    // Reconnect supervisor
+    //
+    private ModbusResponse sendSupervised(ModbusRequest request) throws ModbusTransportException {
+        boolean replayed = false;
+        while (true) {
+            MessageControl c = conn;
+            if (c == null)
+                throw new NotConnectedException(request.getSlaveId());
+
+            try {
+                return toModbusResponse(sendOn(c, request));
+            }
+            catch (IOException e) {
+                if (e instanceof TimeoutException && conn == c)
+                    // A lost response does not mean the connection is lost.
+                    throw new ModbusTransportException(e, request.getSlaveId());
+
+                connectionLost(c, e);
+                if (replayed || !isIdempotent(request) || !awaitConnection())
+                    throw new NotConnectedException(e, request.getSlaveId());
+                replayed = true;
+            }
+        }
+    }
+
+    private Object sendOn(MessageControl c, ModbusRequest request) throws IOException, ModbusTransportException {
+        Semaphore window = acquireWindow(request);
+        try {
+            return c.send(createIpRequest(request));
+        }
+        finally {
+            releaseWindow(window);
+        }
+    }
+
+    private SettableFuture<ModbusResponse> sendAsyncSupervised(final ModbusRequest request,
+            final SettableFuture<ModbusResponse> future, final boolean replayed) {
+        final MessageControl c = conn;
+        if (c == null) {
+            future.fail(new NotConnectedException(request.getSlaveId()));
+            return future;
+        }
+
+        sendAsyncWindowed(c, request).addListener(
+                new FutureListener<ModbusResponse>() {
+                    @Override
+                    public void completed(ModbusResponse response) {
+                        future.complete(response);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        if (e.getCause() instanceof TimeoutException && conn == c) {
+                            future.fail(e);
+                            return;
+                        }
+
+                        connectionLost(c, e);
+                        if (replayed || !isIdempotent(request))
+                            future.fail(new NotConnectedException(e, request.getSlaveId()));
+                        else
+                            queueReplay(new Replay(request, future, e));
+                    }
+                });
+        return future;
+    }
+
+    /**
+     * Reads can be sent again without changing the slave.
+     */
+    private static boolean isIdempotent(ModbusRequest request) {
+        byte functionCode = request.getFunctionCode();
+        return functionCode == FunctionCode.READ_COILS || functionCode == FunctionCode.READ_DISCRETE_INPUTS
+                || functionCode == FunctionCode.READ_HOLDING_REGISTERS
+                || functionCode == FunctionCode.READ_INPUT_REGISTERS
+                || functionCode == FunctionCode.READ_EXCEPTION_STATUS || functionCode == FunctionCode.REPORT_SLAVE_ID;
+    }
+
+    /**
+     * Called by the transport when the slave closes the connection or it fails.
+     */
+    private void transportClosed(Transport closed) {
+        MessageControl c = conn;
+        if (c != null && transport == closed)
+            connectionLost(c, new IOException("Connection closed"));
+    }
+
+    /**
+     * Closes the connection and starts reconnecting, unless another thread has already done so.
+     */
+    private void connectionLost(MessageControl c, Exception cause) {
+        if (conn != c)
+            return;
+        Thread thread = null;
+        synchronized (this) {
+            if (conn != c || !initialized)
+                return;
+            closeConnection();
+            if (reconnectThread == null) {
+                thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        reconnect();
+                    }
+                }, "Modbus4J TcpMaster reconnect");
+                thread.setDaemon(true);
+                reconnectThread = thread;
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Connection lost: " + ipParameters.getHost() + ":" + ipParameters.getPort(), cause);
+        for (ConnectionStateListener l : connectionStateListeners) {
+            try {
+                l.disconnected(cause);
+            }
+            catch (RuntimeException e) {
+                LOG.warn("Connection state listener failed", e);
+            }
+        }
+
+        // Started after the listeners have heard of the loss, so that they hear of the attempts afterwards.
+        if (thread != null)
+            thread.start();
+    }
+
+    private void reconnect() {
+        long delay = reconnectInitialDelay;
+        for (int attempt = 1;; attempt++) {
+            long wait = delay / 2 + (long) (jitter.nextDouble() * (delay - delay / 2 + 1));
+            for (ConnectionStateListener l : connectionStateListeners) {
+                try {
+                    l.reconnecting(attempt, wait);
+                }
+                catch (RuntimeException e) {
+                    LOG.warn("Connection state listener failed", e);
+                }
+            }
+
+            try {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException e) {
+                // Destroyed.
+                return;
+            }
+
+            synchronized (this) {
+                if (!initialized || reconnectThread != Thread.currentThread())
+                    return;
+                try {
+                    openConnection();
+                    reconnectThread = null;
+                }
+                catch (IOException e) {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Reconnect attempt " + attempt + " failed", e);
+                    closeConnection();
+                }
+            }
+
+            if (conn != null)
+                break;
+            delay = Math.min(delay * 2, reconnectMaxDelay);
+        }
+
+        synchronized (connectionLock) {
+            connectionLock.notifyAll();
+        }
+        for (ConnectionStateListener l : connectionStateListeners) {
+            try {
+                l.connected();
+            }
+            catch (RuntimeException e) {
+                LOG.warn("Connection state listener failed", e);
+            }
+        }
+        replay();
+    }
+
+    /**
+     * Waits up to the timeout for the connection to be re-established.
+     */
+    private boolean awaitConnection() {
+        long deadline = System.currentTimeMillis() + getTimeout();
+        synchronized (connectionLock) {
+            while (conn == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !initialized)
+                    return false;
+                try {
+                    connectionLock.wait(remaining);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void queueReplay(Replay replay) {
+        replay.timeout = TimerWheel.getShared().schedule(replay, getTimeout());
+        replays.add(replay);
+        // The connection may have come back already.
+        if (conn != null)
+            replay();
+    }
+
+    private void replay() {
+        Replay replay;
+        while ((replay = replays.poll()) != null) {
+            if (replay.claim()) {
+                replay.timeout.cancel();
+                sendAsyncSupervised(replay.request, replay.future, true);
+            }
+        }
+    }
+
+    /**
+     * An asynchronous read that was in flight when the connection was lost. It is sent once more when the connection
+     * is re-established, or failed if that does not happen within the timeout.
+     */
+    class Replay implements Runnable {
+        final ModbusRequest request;
+        final SettableFuture<ModbusResponse> future;
+        final Exception cause;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        volatile TimerWheel.Timeout timeout;
+
+        Replay(ModbusRequest request, SettableFuture<ModbusResponse> future, Exception cause) {
+            this.request = request;
+            this.future = future;
+            this.cause = cause;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (claim())
+                future.fail(new NotConnectedException(cause, request.getSlaveId()));
+        }
+    }
+
+    /**
+     * Sends the request without holding the master's monitor, so that up to the configured window of requests can be
+     * waiting for their responses on the same socket. The waiting room routes each response back to its caller by
+     * transaction id.
+     */
+    private ModbusResponse sendPipelined(ModbusRequest request) throws ModbusTransportException {
+        OutgoingRequestMessage ipRequest = new XaMessageRequest(request, allocateTransactionId());
+        MessageControl c = conn;
+        try {
+            if (c == null)
+                c = reopenConnection(null);
+            return toModbusResponse(c.send(ipRequest));
+        }
+        catch (TimeoutException e) {
+            // A lost response does not mean the socket is broken, and the other requests on it are still valid.
+            throw new ModbusTransportException(e, request.getSlaveId());
+        }
+        catch (Exception e) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Exception sending pipelined message", e);
+            // The connection may have been reset. Only the first caller to notice reopens it; the others resend
+            // on the new connection.
+            try {
+                c = reopenConnection(c);
+                return toModbusResponse(c.send(ipRequest));
+            }
+            catch (Exception e2) {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Exception re-sending pipelined message", e2);
+                throw new ModbusTransportException(e2, request.getSlaveId());
+            }
+        }
+    }
+
+    private short allocateTransactionId() {
+        synchronized (transactionIdLock) {
+            return ++nextTransactionId;
+        }
+    }
+
+    synchronized private MessageControl reopenConnection(MessageControl failed) throws IOException {
+        if (!initialized)
+            throw new IOException("Master has been destroyed");
+        if (conn == null || conn == failed)
+            openConnection();
+        return conn;
+    }
+
+    private ModbusResponse toModbusResponse(Object response) {
+        if (response == null)
+            return null;
+        return ((IpMessageResponse) response).getModbusResponse();
+    }
+
     //
     //
     // Private methods
@@ -293,15 +842,40 @@ public class TcpMaster extends ModbusMaster {
 
         Integer soLinger = getLingerTime();
 
-        socket = new Socket();
+        if (getSelectorGroup() != null)
+            socket = SocketChannel.open().socket();
+        else
+            socket = new Socket();
         socket.setSoTimeout(getTimeout());
         if(soLinger == null || soLinger < 0)//any null or negative will disable SO_Linger
             socket.setSoLinger(false, 0);
         else
             socket.setSoLinger(true, soLinger);
         socket.connect(new InetSocketAddress(ipParameters.getHost(), ipParameters.getPort()), getTimeout());
-        if (getePoll() != null)
+        if (getSelectorGroup() != null) {
+            NioSocketTransport nioTransport;
+            if (keepAlive && autoReconnect)
+                nioTransport = new NioSocketTransport(socket.getChannel(), getSelectorGroup()) {
+                    @Override
+                    protected void closed() {
+                        transportClosed(this);
+                    }
+                };
+            else
+                nioTransport = new NioSocketTransport(socket.getChannel(), getSelectorGroup());
+            nioTransport.setWriteTimeout(getTimeout());
+            transport = nioTransport;
+        }
+        else if (getePoll() != null)
             transport = new EpollStreamTransport(socket.getInputStream(), socket.getOutputStream(), getePoll());
+        else if (keepAlive && autoReconnect)
+            // Notices at once when the slave closes the connection.
+            transport = new BlockingStreamTransport(socket.getInputStream(), socket.getOutputStream()) {
+                @Override
+                protected void closed() {
+                    transportClosed(this);
+                }
+            };
         else
             transport = new StreamTransport(socket.getInputStream(), socket.getOutputStream());
 
@@ -316,10 +890,12 @@ public class TcpMaster extends ModbusMaster {
             waitingRoomKeyFactory = new XaWaitingRoomKeyFactory();
         }
 
-        conn = getMessageControl();
-        conn.start(transport, ipMessageParser, null, waitingRoomKeyFactory);
-        if (getePoll() == null)
+        MessageControl c = getMessageControl();
+        c.start(transport, ipMessageParser, null, waitingRoomKeyFactory);
+        if (transport instanceof StreamTransport)
             ((StreamTransport) transport).start("Modbus4J TcpMaster");
+        conn = c;
+        connected = true;
     }
 
     private void closeConnection() {
@@ -334,6 +910,18 @@ public class TcpMaster extends ModbusMaster {
 
         conn = null;
         socket = null;
+        connected = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * When pipelining was enabled at init, up to the pipeline window of requests are on the wire. Encapsulated frames
+     * carry no transaction id, so, as for the UdpMaster, they are sent one at a time.
+     */
+    @Override
+    public int getPipelineDepth() {
+        return pipelined ? ipParameters.getPipelineWindow() : 1;
     }
 
     /**
@@ -0,0 +1,358 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.ip.tcp;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.serotonin.modbus4j.ModbusMaster;
+import com.serotonin.modbus4j.ModbusMetricsListener;
+import com.serotonin.modbus4j.exception.ModbusInitException;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.ip.IpParameters;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.sero.util.FutureListener;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
+import com.serotonin.modbus4j.sero.timer.TimerWheel;
+
+/**
+ * A master that spreads its requests over several keep-alive connections to the same endpoint, for gateways that
+ * accept parallel connections. Each connection is a keep-alive TcpMaster, so each reconnects and pipelines as a single
+ * TcpMaster would.
+ *
+ * The minimum number of connections is opened by init. Each request goes to the connection with the fewest requests
+ * in progress; when every connection is busy and there are fewer than the maximum, another is opened. Connections
+ * beyond the minimum that have been idle for the idle timeout are closed.
+ *
+ * The timeout, retries and other settings of this master are given to each connection as it is opened, so set them
+ * before init.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class TcpMasterPool extends ModbusMaster {
+    private final Log LOG = LogFactory.getLog(TcpMasterPool.class);
+
+    // Configuration fields.
+    private final IpParameters ipParameters;
+    private final int minConnections;
+    private final int maxConnections;
+    private long idleTimeout = 60000;
+
+    // Runtime fields.
+    private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+    private volatile TimerWheel.Timeout evictionTimeout;
+
+    /**
+     * <p>Constructor for TcpMasterPool.</p>
+     *
+     * @param params a {@link com.serotonin.modbus4j.ip.IpParameters} object.
+     * @param minConnections the number of connections opened by init and kept open while idle.
+     * @param maxConnections the most connections to open at once.
+     */
+    public TcpMasterPool(IpParameters params, int minConnections, int maxConnections) {
+        this(params, minConnections, maxConnections, false);
+    }
+
+    /**
+     * <p>Constructor for TcpMasterPool.</p>
+     *
+     * @param params a {@link com.serotonin.modbus4j.ip.IpParameters} object.
+     * @param minConnections the number of connections opened by init and kept open while idle.
+     * @param maxConnections the most connections to open at once.
+     * @param validateResponse - confirm that requested slave id is the same in the response
+     */
+    public TcpMasterPool(IpParameters params, int minConnections, int maxConnections, boolean validateResponse) {
+        if (minConnections < 0 || maxConnections < 1 || minConnections > maxConnections)
+            throw new IllegalArgumentException("Invalid connection limits: min " + minConnections + ", max "
+                    + maxConnections);
+        this.ipParameters = params;
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.validateResponse = validateResponse;
+    }
+
+    /**
+     * <p>Getter for the field <code>idleTimeout</code>.</p>
+     *
+     * @return the idle timeout in milliseconds.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * <p>Setter for the field <code>idleTimeout</code>.</p>
+     *
+     * @param idleTimeout how long in milliseconds a connection beyond the minimum may be idle before it is closed, or
+     *            0 to keep connections open until destroy.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * <p>getConnectionCount.</p>
+     *
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The listener is passed on to the open connections, and to any opened later.
+     */
+    @Override
+    public void setMetricsListener(ModbusMetricsListener metricsListener) {
+        super.setMetricsListener(metricsListener);
+        for (PooledConnection connection : connections)
+            connection.master.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Each connection that the pool may open has its own pipeline window. Encapsulated connections are not pipelined.
+     */
+    @Override
+    public int getPipelineDepth() {
+        return maxConnections * (ipParameters.isEncapsulated() ? 1 : ipParameters.getPipelineWindow());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    synchronized public void init() throws ModbusInitException {
+        try {
+            while (connections.size() < minConnections)
+                connections.add(new PooledConnection(openConnection()));
+        }
+        catch (ModbusInitException e) {
+            closeAll();
+            throw e;
+        }
+
+        initialized = true;
+        scheduleEviction();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    synchronized public void destroy() {
+        initialized = false;
+        if (evictionTimeout != null) {
+            evictionTimeout.cancel();
+            evictionTimeout = null;
+        }
+        closeAll();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
+        PooledConnection connection = acquire(request.getSlaveId());
+        try {
+            return connection.master.sendImpl(request);
+        }
+        finally {
+            connection.release();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncImpl(ModbusRequest request) {
+        final PooledConnection connection;
+        try {
+            connection = acquire(request.getSlaveId());
+        }
+        catch (ModbusTransportException e) {
+            SettableFuture<ModbusResponse> future = new SettableFuture<>();
+            future.fail(e);
+            return future;
+        }
+
+        SettableFuture<ModbusResponse> future = connection.master.sendAsyncImpl(request);
+        future.addListener(new FutureListener<ModbusResponse>() {
+            @Override
+            public void completed(ModbusResponse response) {
+                connection.release();
+            }
+
+            @Override
+            public void failed(Exception e) {
+                connection.release();
+            }
+        });
+        return future;
+    }
+
+    //
+    //
+    // Private methods
+    //
+    /**
+     * Takes the least busy connection, opening another if all are busy and the pool is not full.
+     */
+    private PooledConnection acquire(int slaveId) throws ModbusTransportException {
+        while (true) {
+            PooledConnection least = leastBusy();
+            if (least == null || least.inFlight.get() > 0) {
+                PooledConnection added = grow(slaveId);
+                if (added != null)
+                    least = added;
+            }
+            if (least == null)
+                throw new ModbusTransportException("Master has been destroyed", slaveId);
+            if (least.tryAcquire())
+                return least;
+            // The connection was evicted meanwhile. Choose again.
+        }
+    }
+
+    private PooledConnection leastBusy() {
+        PooledConnection least = null;
+        int leastInFlight = Integer.MAX_VALUE;
+        for (PooledConnection connection : connections) {
+            int inFlight = connection.inFlight.get();
+            if (inFlight >= 0 && inFlight < leastInFlight) {
+                least = connection;
+                leastInFlight = inFlight;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Opens another connection if the pool is not full. Returns null if it is, or if the connection could not be opened
+     * but there are others to use.
+     */
+    synchronized private PooledConnection grow(int slaveId) throws ModbusTransportException {
+        if (!initialized)
+            throw new ModbusTransportException("Master has not been initialized", slaveId);
+        if (connections.size() >= maxConnections)
+            return null;
+
+        // Another thread may have opened a connection while this one waited.
+        PooledConnection least = leastBusy();
+        if (least != null && least.inFlight.get() == 0)
+            return null;
+
+        try {
+            PooledConnection connection = new PooledConnection(openConnection());
+            connections.add(connection);
+            return connection;
+        }
+        catch (ModbusInitException e) {
+            if (connections.isEmpty())
+                throw new ModbusTransportException(e, slaveId);
+            LOG.debug("Could not open another connection, using the open ones", e);
+            return null;
+        }
+    }
+
+    private TcpMaster openConnection() throws ModbusInitException {
+        TcpMaster master = new TcpMaster(ipParameters, true, true, false, ipParameters.getLingerTime());
+        master.setTimeout(getTimeout());
+        master.setRetries(getRetries());
+        master.setDiscardDataDelay(getDiscardDataDelay());
+        master.setExceptionHandler(getExceptionHandler());
+        master.setIoLog(getIoLog());
+        master.setMetricsListener(getMetricsListener());
+        master.setePoll(getePoll());
+        master.setSelectorGroup(getSelectorGroup());
+        master.init();
+        return master;
+    }
+
+    private void closeAll() {
+        for (PooledConnection connection : connections)
+            connection.master.destroy();
+        connections.clear();
+    }
+
+    private void scheduleEviction() {
+        if (!initialized || idleTimeout <= 0)
+            return;
+        evictionTimeout = TimerWheel.getShared().schedule(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+                scheduleEviction();
+            }
+        }, Math.max(1, idleTimeout / 2));
+    }
+
+    /**
+     * Closes connections beyond the minimum that have been idle for the idle timeout, longest idle first. Runs on the
+     * timer thread, so it does not take the lock that is held while connections are opened.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        while (connections.size() > minConnections) {
+            PooledConnection idlest = null;
+            for (PooledConnection connection : connections) {
+                if (connection.inFlight.get() == 0 && now - connection.lastUsed >= idleTimeout
+                        && (idlest == null || connection.lastUsed < idlest.lastUsed))
+                    idlest = connection;
+            }
+            if (idlest == null || !idlest.inFlight.compareAndSet(0, -1))
+                break;
+            connections.remove(idlest);
+            idlest.master.destroy();
+        }
+    }
+
+    /**
+     * A connection of the pool. The number of requests in progress is -1 once the connection has been evicted.
+     */
+    static class PooledConnection {
+        final TcpMaster master;
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(TcpMaster master) {
+            this.master = master;
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int n = inFlight.get();
+                if (n < 0)
+                    return false;
+                if (inFlight.compareAndSet(n, n + 1))
+                    return true;
+            }
+        }
+
+        void release() {
+            lastUsed = System.currentTimeMillis();
+            inFlight.decrementAndGet();
+        }
+    }
+}
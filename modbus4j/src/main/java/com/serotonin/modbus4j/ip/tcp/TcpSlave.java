@@ -22,10 +22,13 @@
 package com.serotonin.modbus4j.ip.tcp;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -39,12 +42,24 @@ import com.serotonin.modbus4j.ip.encap.EncapMessageParser;
 import com.serotonin.modbus4j.ip.encap.EncapRequestHandler;
 import com.serotonin.modbus4j.ip.xa.XaMessageParser;
 import com.serotonin.modbus4j.ip.xa.XaRequestHandler;
+import com.serotonin.modbus4j.sero.messaging.BlockingStreamTransport;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
-import com.serotonin.modbus4j.sero.messaging.TestableTransport;
+import com.serotonin.modbus4j.sero.messaging.NioSocketTransport;
+import com.serotonin.modbus4j.sero.messaging.Transport;
+import com.serotonin.modbus4j.sero.nio.NioSelectorGroup;
 
 /**
  * <p>TcpSlave class.</p>
  *
+ * By default each client connection is served by one thread of the executor service, which blocks reading the socket
+ * and so notices at once when the client closes it. Pass a bounded executor, or on newer platforms a virtual thread
+ * executor, to the constructor to control how those threads are made, and set maxConnections to refuse clients beyond
+ * a limit.
+ *
+ * With a selector group, connections use no thread of their own. Requests are then handled on the selector thread, or,
+ * if a request executor is set, queued per connection and handled on that executor so that a slow process image does
+ * not hold up the other connections of the selector.
+ *
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
@@ -53,6 +68,28 @@ public class TcpSlave extends ModbusSlaveSet {
     private final int port;
     final boolean encapsulated;
 
+    /**
+     * When set, client connections are served by the selector group rather than by two threads each.
+     */
+    private NioSelectorGroup selectorGroup;
+
+    /**
+     * The maximum number of clients connected at once, or 0 for no limit. Further clients are disconnected as soon as
+     * they are accepted.
+     */
+    private int maxConnections;
+
+    /**
+     * When set along with a selector group, requests are handled on this executor rather than on the selector thread.
+     */
+    private Executor requestExecutor;
+
+    /**
+     * The number of reads that may be queued for the request executor per connection before reading from the
+     * connection is suspended.
+     */
+    private int requestQueueSize = 16;
+
     // Runtime fields.
     private ServerSocket serverSocket;
     final ExecutorService executorService;
@@ -74,25 +111,129 @@ public class TcpSlave extends ModbusSlaveSet {
      * @param encapsulated a boolean.
      */
     public TcpSlave(int port, boolean encapsulated) {
+        this(port, encapsulated, Executors.newCachedThreadPool());
+    }
+
+    /**
+     * <p>Constructor for TcpSlave.</p>
+     *
+     * @param port a int.
+     * @param encapsulated a boolean.
+     * @param executorService the executor that runs the client connections, one task per connection for as long as it
+     *            is open. It must be able to run maxConnections tasks at once, and is shut down when the slave is
+     *            stopped.
+     */
+    public TcpSlave(int port, boolean encapsulated, ExecutorService executorService) {
         this.port = port;
         this.encapsulated = encapsulated;
-        executorService = Executors.newCachedThreadPool();
+        this.executorService = executorService;
+    }
+
+    /**
+     * <p>Getter for the field <code>maxConnections</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * <p>Setter for the field <code>maxConnections</code>.</p>
+     *
+     * @param maxConnections the maximum number of clients connected at once, or 0 for no limit.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * <p>Getter for the field <code>requestExecutor</code>.</p>
+     *
+     * @return a {@link java.util.concurrent.Executor} object.
+     */
+    public Executor getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    /**
+     * Sets the executor on which the requests of connections served by the selector group are handled. The requests of
+     * each connection are still handled in order and one at a time.
+     *
+     * @param requestExecutor a {@link java.util.concurrent.Executor} object, or null to handle requests on the
+     *            selector thread.
+     */
+    public void setRequestExecutor(Executor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * <p>Getter for the field <code>requestQueueSize</code>.</p>
+     *
+     * @return a int.
+     */
+    public int getRequestQueueSize() {
+        return requestQueueSize;
+    }
+
+    /**
+     * <p>Setter for the field <code>requestQueueSize</code>.</p>
+     *
+     * @param requestQueueSize the number of reads that may wait for the request executor per connection, or 0 for no
+     *            limit.
+     */
+    public void setRequestQueueSize(int requestQueueSize) {
+        this.requestQueueSize = requestQueueSize;
+    }
+
+    /**
+     * <p>Getter for the field <code>selectorGroup</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.sero.nio.NioSelectorGroup} object.
+     */
+    public NioSelectorGroup getSelectorGroup() {
+        return selectorGroup;
+    }
+
+    /**
+     * <p>Setter for the field <code>selectorGroup</code>.</p>
+     *
+     * @param selectorGroup a {@link com.serotonin.modbus4j.sero.nio.NioSelectorGroup} object.
+     */
+    public void setSelectorGroup(NioSelectorGroup selectorGroup) {
+        this.selectorGroup = selectorGroup;
     }
 
     /** {@inheritDoc} */
     @Override
     public void start() throws ModbusInitException {
         try {
-            serverSocket = new ServerSocket(port);
+            if (selectorGroup != null) {
+                // A socket accepted through a channel has a channel of its own.
+                serverSocket = ServerSocketChannel.open().socket();
+                serverSocket.bind(new InetSocketAddress(port));
+            }
+            else
+                serverSocket = new ServerSocket(port);
 
             Socket socket;
             while (true) {
                 socket = serverSocket.accept();
                 TcpConnectionHandler handler = new TcpConnectionHandler(socket);
-                executorService.execute(handler);
                 synchronized (listConnections) {
+                    if (maxConnections > 0 && listConnections.size() >= maxConnections) {
+                        handler.kill();
+                        getExceptionHandler().receivedException(new ModbusInitException("Connection from "
+                                + socket.getRemoteSocketAddress() + " refused: " + maxConnections
+                                + " clients are already connected"));
+                        continue;
+                    }
                     listConnections.add(handler);
                 }
+                if (selectorGroup != null)
+                    handler.startNio();
+                else
+                    executorService.execute(handler);
             }
         }
         catch (IOException e) {
@@ -130,13 +271,15 @@ public class TcpSlave extends ModbusSlaveSet {
 
     class TcpConnectionHandler implements Runnable {
         private final Socket socket;
-        private TestableTransport transport;
-        private MessageControl conn;
+        private BlockingStreamTransport transport;
+        private volatile MessageControl conn;
 
         TcpConnectionHandler(Socket socket) throws ModbusInitException {
             this.socket = socket;
+            if (selectorGroup != null)
+                return;
             try {
-                transport = new TestableTransport(socket.getInputStream(), socket.getOutputStream());
+                transport = new BlockingStreamTransport(socket.getInputStream(), socket.getOutputStream());
             }
             catch (IOException e) {
                 throw new ModbusInitException(e);
@@ -145,6 +288,42 @@ public class TcpSlave extends ModbusSlaveSet {
 
         @Override
         public void run() {
+            try {
+                startMessageControl(transport);
+                // Returns when the client closes the connection, or it is killed.
+                transport.run();
+            }
+            catch (IOException e) {
+                getExceptionHandler().receivedException(new ModbusInitException(e));
+            }
+
+            close();
+        }
+
+        /**
+         * Registers the connection with the selector group. No thread is used; requests are handled on the selector
+         * thread or the request executor, and the close of the connection is reported by the selector.
+         */
+        void startNio() {
+            NioSocketTransport nioTransport = new NioSocketTransport(socket.getChannel(), selectorGroup) {
+                @Override
+                protected void closed() {
+                    close();
+                }
+            };
+            if (requestExecutor != null)
+                nioTransport.setExecutor(requestExecutor, requestQueueSize);
+
+            try {
+                startMessageControl(nioTransport);
+            }
+            catch (IOException e) {
+                getExceptionHandler().receivedException(new ModbusInitException(e));
+                close();
+            }
+        }
+
+        private void startMessageControl(Transport transport) throws IOException {
             BaseMessageParser messageParser;
             BaseRequestHandler requestHandler;
 
@@ -159,33 +338,12 @@ public class TcpSlave extends ModbusSlaveSet {
 
             conn = new MessageControl();
             conn.setExceptionHandler(getExceptionHandler());
+            conn.start(transport, messageParser, requestHandler, null);
+        }
 
-            try {
-                conn.start(transport, messageParser, requestHandler, null);
-                executorService.execute(transport);
-            }
-            catch (IOException e) {
-                getExceptionHandler().receivedException(new ModbusInitException(e));
-            }
-
-            // Monitor the socket to detect when it gets closed.
-            while (true) {
-                try {
-                    transport.testInputStream();
-                }
-                catch (IOException e) {
-                    break;
-                }
-
-                try {
-                    Thread.sleep(500);
-                }
-                catch (InterruptedException e) {
-                    // no op
-                }
-            }
-
-            conn.close();
+        private void close() {
+            if (conn != null)
+                conn.close();
             kill();
             synchronized (listConnections) {
                 listConnections.remove(this);
@@ -193,6 +351,9 @@ public class TcpSlave extends ModbusSlaveSet {
         }
 
         void kill() {
+            // Stop consuming first, so that the failed read of the closed socket is not reported.
+            if (conn != null)
+                conn.close();
             try {
                 socket.close();
             }
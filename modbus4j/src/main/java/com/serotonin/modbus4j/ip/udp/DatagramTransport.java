@@ -0,0 +1,140 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.ip.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+import com.serotonin.modbus4j.sero.messaging.DataConsumer;
+import com.serotonin.modbus4j.sero.messaging.Transport;
+
+/**
+ * A transport over a datagram channel connected to a single remote address. Connecting the channel makes the system
+ * drop datagrams from any other address, and lets the address be resolved once rather than for every send. Each
+ * datagram received is handed to the consumer whole, from a single receive buffer, and writes go out through a single
+ * send buffer; both are reused for the life of the transport.
+ *
+ * Run the transport on a thread of its own. It is stopped by close. Receive errors are reported to the consumer, and
+ * the transport waits a little longer after each consecutive error before it reads again.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+class DatagramTransport implements Transport, Runnable {
+    private static final int MAX_DATAGRAM_LENGTH = 1024;
+    private static final long MIN_BACKOFF = 10;
+    private static final long MAX_BACKOFF = 1000;
+
+    private final DatagramChannel channel;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_DATAGRAM_LENGTH);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_LENGTH);
+    private volatile DataConsumer consumer;
+
+    DatagramTransport(InetSocketAddress remote) throws IOException {
+        // Connecting to an unresolved address throws an unchecked exception.
+        if (remote.isUnresolved())
+            throw new UnknownHostException(remote.getHostString());
+        channel = DatagramChannel.open();
+        try {
+            channel.connect(remote);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void setConsumer(DataConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void removeConsumer() {
+        consumer = null;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        write(data, data.length);
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int len) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(data, 0, len);
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    @Override
+    public void run() {
+        long backoff = 0;
+        while (channel.isOpen()) {
+            int count;
+            try {
+                receiveBuffer.clear();
+                count = channel.read(receiveBuffer);
+                backoff = 0;
+            }
+            catch (ClosedChannelException e) {
+                break;
+            }
+            catch (PortUnreachableException e) {
+                // Nothing is listening at the remote address yet. The request will time out and may be retried.
+                continue;
+            }
+            catch (IOException e) {
+                DataConsumer consumer = this.consumer;
+                if (consumer != null)
+                    consumer.handleIOException(e);
+
+                // The error may persist, so wait increasingly long before reading again rather than spinning.
+                backoff = backoff == 0 ? MIN_BACKOFF : Math.min(backoff * 2, MAX_BACKOFF);
+                try {
+                    Thread.sleep(backoff);
+                }
+                catch (InterruptedException e1) {
+                    break;
+                }
+                continue;
+            }
+
+            DataConsumer consumer = this.consumer;
+            if (consumer != null && count > 0)
+                consumer.data(receiveBuffer.array(), count);
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            // no op
+        }
+    }
+}
@@ -21,11 +21,7 @@
 package com.serotonin.modbus4j.ip.udp;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
 
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.base.BaseMessageParser;
@@ -35,28 +31,35 @@ import com.serotonin.modbus4j.ip.IpMessageResponse;
 import com.serotonin.modbus4j.ip.IpParameters;
 import com.serotonin.modbus4j.ip.encap.EncapMessageParser;
 import com.serotonin.modbus4j.ip.encap.EncapMessageRequest;
+import com.serotonin.modbus4j.ip.encap.EncapWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.ip.xa.XaMessageParser;
 import com.serotonin.modbus4j.ip.xa.XaMessageRequest;
+import com.serotonin.modbus4j.ip.xa.XaWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.msg.ModbusRequest;
 import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.sero.messaging.MessageControl;
 import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
-import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
+import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>UdpMaster class.</p>
  *
+ * Requests are sent over a single datagram channel connected to the slave, and any number of them may be waiting for
+ * their responses at once. Responses are matched to their requests by transaction id, so that a late response is
+ * never taken for the response to a later request; encapsulated requests, which have no transaction id, are matched
+ * by slave id and function code. Retries and timeouts are handled by the message control, as for TCP.
+ *
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
 public class UdpMaster extends ModbusMaster {
-    private static final int MESSAGE_LENGTH = 1024;
-
     private short nextTransactionId = 0;
     private final IpParameters ipParameters;
 
     // Runtime fields.
-    private BaseMessageParser messageParser;
-    private DatagramSocket socket;
+    private DatagramTransport transport;
+    private volatile MessageControl conn;
 
     /**
      * <p>Constructor for UdpMaster.</p>
@@ -85,107 +88,96 @@ public class UdpMaster extends ModbusMaster {
      *
      * @return a short.
      */
-    protected short getNextTransactionId() {
+    protected synchronized short getNextTransactionId() {
         return nextTransactionId++;
     }
 
     /** {@inheritDoc} */
     @Override
-    public void init() throws ModbusInitException {
-        if (ipParameters.isEncapsulated())
+    synchronized public void init() throws ModbusInitException {
+        BaseMessageParser messageParser;
+        WaitingRoomKeyFactory waitingRoomKeyFactory;
+        if (ipParameters.isEncapsulated()) {
             messageParser = new EncapMessageParser(true);
-        else
+            waitingRoomKeyFactory = new EncapWaitingRoomKeyFactory();
+        }
+        else {
             messageParser = new XaMessageParser(true);
+            waitingRoomKeyFactory = new XaWaitingRoomKeyFactory();
+        }
 
         try {
-            socket = new DatagramSocket();
-            socket.setSoTimeout(getTimeout());
+            // Resolve the address once, rather than for every request.
+            transport = new DatagramTransport(new InetSocketAddress(ipParameters.getHost(), ipParameters.getPort()));
+            MessageControl conn = getMessageControl();
+            conn.setDatagrams(true);
+            conn.start(transport, messageParser, null, waitingRoomKeyFactory);
+            this.conn = conn;
         }
-        catch (SocketException e) {
+        catch (IOException e) {
+            if (transport != null)
+                transport.close();
             throw new ModbusInitException(e);
         }
+
+        Thread thread = new Thread(transport, "Modbus4J UdpMaster");
+        thread.setDaemon(true);
+        thread.start();
         initialized = true;
     }
 
     /** {@inheritDoc} */
     @Override
-    public void destroy() {
-        socket.close();
+    synchronized public void destroy() {
+        closeMessageControl(conn);
+        conn = null;
+        if (transport != null)
+            transport.close();
+        transport = null;
         initialized = false;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Unencapsulated datagrams are matched to their requests by transaction id, so the pipeline window of the
+     * parameters applies to them.
+     */
+    @Override
+    public int getPipelineDepth() {
+        return ipParameters.isEncapsulated() ? 1 : ipParameters.getPipelineWindow();
+    }
+
     /** {@inheritDoc} */
     @Override
     public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
-        // Wrap the modbus request in an ip request.
-        OutgoingRequestMessage ipRequest;
-        if (ipParameters.isEncapsulated())
-            ipRequest = new EncapMessageRequest(request);
-        else
-            ipRequest = new XaMessageRequest(request, getNextTransactionId());
-
-        IpMessageResponse ipResponse;
+        MessageControl c = conn;
+        if (c == null)
+            throw new ModbusTransportException("Master has been destroyed", request.getSlaveId());
 
         try {
-            int attempts = getRetries() + 1;
-
-            while (true) {
-                // Send the request.
-                sendImpl(ipRequest);
-
-                if (!ipRequest.expectsResponse())
-                    return null;
-
-                // Receive the response.
-                try {
-                    ipResponse = receiveImpl();
-                }
-                catch (SocketTimeoutException e) {
-                    attempts--;
-                    if (attempts > 0)
-                        // Try again.
-                        continue;
-
-                    throw new ModbusTransportException(e, request.getSlaveId());
-                }
-
-                // We got the response
-                break;
-            }
-
+            IpMessageResponse ipResponse = (IpMessageResponse) c.send(createIpRequest(request));
+            if (ipResponse == null)
+                return null;
             return ipResponse.getModbusResponse();
         }
-        catch (IOException e) {
+        catch (Exception e) {
             throw new ModbusTransportException(e, request.getSlaveId());
         }
     }
 
-    private void sendImpl(OutgoingRequestMessage request) throws IOException {
-        byte[] data = request.getMessageData();
-        DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(ipParameters.getHost()),
-                ipParameters.getPort());
-        socket.send(packet);
+    /** {@inheritDoc} */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncImpl(ModbusRequest request) {
+        MessageControl c = conn;
+        if (c == null)
+            return super.sendAsyncImpl(request);
+        return sendAsync(c, createIpRequest(request), request.getSlaveId());
     }
 
-    private IpMessageResponse receiveImpl() throws IOException, ModbusTransportException {
-        DatagramPacket packet = new DatagramPacket(new byte[MESSAGE_LENGTH], MESSAGE_LENGTH);
-        socket.receive(packet);
-
-        // We could verify that the packet was received from the same address to which the request was sent,
-        // but let's not bother with that yet.
-
-        ByteQueue queue = new ByteQueue(packet.getData(), 0, packet.getLength());
-        IpMessageResponse response;
-        try {
-            response = (IpMessageResponse) messageParser.parseMessage(queue);
-        }
-        catch (Exception e) {
-            throw new ModbusTransportException(e);
-        }
-
-        if (response == null)
-            throw new ModbusTransportException("Invalid response received");
-
-        return response;
+    private OutgoingRequestMessage createIpRequest(ModbusRequest request) {
+        if (ipParameters.isEncapsulated())
+            return new EncapMessageRequest(request);
+        return new XaMessageRequest(request, getNextTransactionId());
     }
 }
@@ -21,8 +21,13 @@
 package com.serotonin.modbus4j.ip.udp;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -44,18 +49,30 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
 /**
  * <p>UdpSlave class.</p>
  *
+ * Datagrams are received on a datagram channel into a fixed pool of exchanges, each holding a receive buffer, a parse
+ * queue and a response buffer, and handled by a fixed number of worker threads. Exchanges are handed between the
+ * receiving thread and the workers through array queues and returned to the pool once the response is sent, so the
+ * receiving and dispatching of a request allocates nothing. While every exchange is busy, datagrams wait in the
+ * socket's receive buffer.
+ *
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
 public class UdpSlave extends ModbusSlaveSet {
+    private static final int MAX_DATAGRAM_LENGTH = 1028;
+
     // Configuration fields
     private final int port;
+    private final int workers;
 
     // Runtime fields.
     DatagramSocket datagramSocket;
+    private DatagramChannel channel;
     private final ExecutorService executorService;
     final BaseMessageParser messageParser;
     final BaseRequestHandler requestHandler;
+    private final BlockingQueue<Exchange> freeExchanges;
+    private final BlockingQueue<Exchange> receivedExchanges;
 
     /**
      * <p>Constructor for UdpSlave.</p>
@@ -73,7 +90,22 @@ public class UdpSlave extends ModbusSlaveSet {
      * @param encapsulated a boolean.
      */
     public UdpSlave(int port, boolean encapsulated) {
+        this(port, encapsulated, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * <p>Constructor for UdpSlave.</p>
+     *
+     * @param port a int.
+     * @param encapsulated a boolean.
+     * @param workers the number of threads that handle requests. Twice as many exchanges are pooled, so that datagrams
+     *            keep being received while the workers are busy.
+     */
+    public UdpSlave(int port, boolean encapsulated, int workers) {
+        if (workers < 1)
+            throw new IllegalArgumentException("workers cannot be less than one");
         this.port = port;
+        this.workers = workers;
 
         if (encapsulated) {
             messageParser = new EncapMessageParser(false);
@@ -84,37 +116,54 @@ public class UdpSlave extends ModbusSlaveSet {
             requestHandler = new XaRequestHandler(this);
         }
 
-        executorService = Executors.newCachedThreadPool();
+        executorService = Executors.newFixedThreadPool(workers);
+        freeExchanges = new ArrayBlockingQueue<>(workers * 2);
+        receivedExchanges = new ArrayBlockingQueue<>(workers * 2);
+        for (int i = 0; i < workers * 2; i++)
+            freeExchanges.add(new Exchange());
     }
 
     /** {@inheritDoc} */
     @Override
     public void start() throws ModbusInitException {
         try {
-            datagramSocket = new DatagramSocket(port);
+            channel = DatagramChannel.open();
+            datagramSocket = channel.socket();
+            datagramSocket.bind(new InetSocketAddress(port));
 
-            DatagramPacket datagramPacket;
-            while (true) {
-                datagramPacket = new DatagramPacket(new byte[1028], 1028);
-                datagramSocket.receive(datagramPacket);
+            for (int i = 0; i < workers; i++)
+                executorService.execute(new Worker());
 
-                UdpConnectionHandler handler = new UdpConnectionHandler(datagramPacket);
-                executorService.execute(handler);
+            Exchange exchange;
+            while (true) {
+                exchange = freeExchanges.take();
+                exchange.request.clear();
+                exchange.address = channel.receive(exchange.request);
+                exchange.request.flip();
+                receivedExchanges.put(exchange);
             }
         }
         catch (IOException e) {
             throw new ModbusInitException(e);
         }
+        catch (InterruptedException e) {
+            throw new ModbusInitException(e);
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     public void stop() {
         // Close the socket first to prevent new messages.
-        datagramSocket.close();
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            getExceptionHandler().receivedException(e);
+        }
 
-        // Close the executor service.
-        executorService.shutdown();
+        // Close the executor service. The workers are waiting for exchanges, so interrupt them.
+        executorService.shutdownNow();
         try {
             executorService.awaitTermination(3, TimeUnit.SECONDS);
         }
@@ -123,39 +172,52 @@ public class UdpSlave extends ModbusSlaveSet {
         }
     }
 
-    // int getSlaveId() {
-    // return slaveId;
-    // }
-    //
-    // ProcessImage getProcessImage() {
-    // return processImage;
-    // }
-
-    class UdpConnectionHandler implements Runnable {
-        private final DatagramPacket requestPacket;
-
-        UdpConnectionHandler(DatagramPacket requestPacket) {
-            this.requestPacket = requestPacket;
+    class Worker implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                Exchange exchange;
+                try {
+                    exchange = receivedExchanges.take();
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+
+                exchange.handle();
+                exchange.address = null;
+                freeExchanges.add(exchange);
+            }
         }
+    }
 
-        public void run() {
+    /**
+     * The buffers of one request and its response.
+     */
+    class Exchange {
+        final ByteBuffer request = ByteBuffer.allocateDirect(MAX_DATAGRAM_LENGTH);
+        final ByteBuffer response = ByteBuffer.allocateDirect(MAX_DATAGRAM_LENGTH);
+        final ByteQueue requestQueue = new ByteQueue(MAX_DATAGRAM_LENGTH);
+        SocketAddress address;
+
+        void handle() {
             try {
-                ByteQueue requestQueue = new ByteQueue(requestPacket.getData(), 0, requestPacket.getLength());
+                requestQueue.clear();
+                requestQueue.push(request);
 
                 // Parse the request data and get the response.
-                IncomingMessage request = messageParser.parseMessage(requestQueue);
-                OutgoingResponseMessage response = requestHandler.handleRequest((IncomingRequestMessage) request);
+                IncomingMessage message = messageParser.parseMessage(requestQueue);
+                OutgoingResponseMessage responseMessage = requestHandler
+                        .handleRequest((IncomingRequestMessage) message);
 
-                if (response == null)
+                if (responseMessage == null)
                     return;
 
-                // Create a response packet.
-                byte[] responseData = response.getMessageData();
-                DatagramPacket responsePacket = new DatagramPacket(responseData, responseData.length,
-                        requestPacket.getAddress(), requestPacket.getPort());
-
                 // Send the response back.
-                datagramSocket.send(responsePacket);
+                response.clear();
+                response.put(responseMessage.getMessageData());
+                response.flip();
+                channel.send(response, address);
             }
             catch (Exception e) {
                 getExceptionHandler().receivedException(e);
@@ -23,7 +23,6 @@ package com.serotonin.modbus4j.ip.xa;
 import com.serotonin.modbus4j.base.ModbusUtils;
 import com.serotonin.modbus4j.ip.IpMessage;
 import com.serotonin.modbus4j.msg.ModbusMessage;
-import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
 
 /**
  * <p>XaMessage class.</p>
@@ -51,20 +50,20 @@ public class XaMessage extends IpMessage {
      * @return an array of {@link byte} objects.
      */
     public byte[] getMessageData() {
-        ByteQueue msgQueue = new ByteQueue();
+        byte[] msg = modbusMessage.encode();
 
-        // Write the particular message.
-        modbusMessage.write(msgQueue);
-
-        // Create the XA message
-        ByteQueue xaQueue = new ByteQueue();
-        ModbusUtils.pushShort(xaQueue, transactionId);
-        ModbusUtils.pushShort(xaQueue, ModbusUtils.IP_PROTOCOL_ID);
-        ModbusUtils.pushShort(xaQueue, msgQueue.size());
-        xaQueue.push(msgQueue);
+        // Write the XA header and the particular message straight into the frame.
+        byte[] data = new byte[6 + msg.length];
+        data[0] = ModbusUtils.toByte((short) transactionId, true);
+        data[1] = ModbusUtils.toByte((short) transactionId, false);
+        data[2] = ModbusUtils.toByte((short) ModbusUtils.IP_PROTOCOL_ID, true);
+        data[3] = ModbusUtils.toByte((short) ModbusUtils.IP_PROTOCOL_ID, false);
+        data[4] = ModbusUtils.toByte((short) msg.length, true);
+        data[5] = ModbusUtils.toByte((short) msg.length, false);
+        System.arraycopy(msg, 0, data, 6, msg.length);
 
         // Return the data.
-        return xaQueue.popAll();
+        return data;
     }
 
     /**
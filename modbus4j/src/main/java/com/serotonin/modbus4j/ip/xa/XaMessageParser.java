@@ -43,6 +43,10 @@ public class XaMessageParser extends BaseMessageParser {
     /** {@inheritDoc} */
     @Override
     protected IncomingMessage parseMessageImpl(ByteQueue queue) throws Exception {
+        // Wait until the whole frame, as given by the length in the MBAP header, has arrived.
+        if (queue.size() < 6 || queue.size() < 6 + ((queue.peek(4) & 0xff) << 8 | (queue.peek(5) & 0xff)))
+            return null;
+
         if (master)
             return XaMessageResponse.createXaMessageResponse(queue);
         return XaMessageRequest.createXaMessageRequest(queue);
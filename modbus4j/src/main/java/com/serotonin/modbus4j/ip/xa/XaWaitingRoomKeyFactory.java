@@ -3,8 +3,8 @@ package com.serotonin.modbus4j.ip.xa;
 import com.serotonin.modbus4j.msg.ModbusMessage;
 import com.serotonin.modbus4j.sero.messaging.IncomingResponseMessage;
 import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
+import com.serotonin.modbus4j.sero.messaging.SlottedWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.sero.messaging.WaitingRoomKey;
-import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
 
 /**
  * <p>XaWaitingRoomKeyFactory class.</p>
@@ -12,7 +12,9 @@ import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
-public class XaWaitingRoomKeyFactory implements WaitingRoomKeyFactory {
+public class XaWaitingRoomKeyFactory implements SlottedWaitingRoomKeyFactory {
+    private static final int SLOTS = 0x10000;
+
     /** {@inheritDoc} */
     @Override
     public WaitingRoomKey createWaitingRoomKey(OutgoingRequestMessage request) {
@@ -35,6 +37,40 @@ public class XaWaitingRoomKeyFactory implements WaitingRoomKeyFactory {
         return new XaWaitingRoomKey(msg.getTransactionId(), msg.getModbusMessage());
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * One slot for every 16 bit transaction id.
+     */
+    @Override
+    public int getSlotCount() {
+        return SLOTS;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSlot(OutgoingRequestMessage request) {
+        return ((XaMessage) request).getTransactionId() & 0xffff;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSlot(IncomingResponseMessage response) {
+        return ((XaMessage) response).getTransactionId() & 0xffff;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isResponseFor(OutgoingRequestMessage request, IncomingResponseMessage response) {
+        XaMessage req = (XaMessage) request;
+        XaMessage res = (XaMessage) response;
+        if (((req.getTransactionId() ^ res.getTransactionId()) & 0xffff) != 0)
+            return false;
+        ModbusMessage reqMsg = req.getModbusMessage();
+        ModbusMessage resMsg = res.getModbusMessage();
+        return reqMsg.getSlaveId() == resMsg.getSlaveId() && reqMsg.getFunctionCode() == resMsg.getFunctionCode();
+    }
+
     class XaWaitingRoomKey implements WaitingRoomKey {
         private final int transactionId;
         private final int slaveId;
@@ -270,6 +270,21 @@ abstract public class BaseLocator<T> {
      */
     abstract public T bytesToValueRealOffset(byte[] data, int offset);
 
+    /**
+     * Returns a decoder for the values of this locator, for use when the same locator is decoded over and over, e.g.
+     * by a batch plan. By default the decoder simply calls bytesToValueRealOffset.
+     *
+     * @return a {@link com.serotonin.modbus4j.locator.ValueDecoder} object.
+     */
+    public ValueDecoder getDecoder() {
+        return new ValueDecoder() {
+            @Override
+            public Object decode(byte[] data, int offset) {
+                return bytesToValueRealOffset(data, offset);
+            }
+        };
+    }
+
     /**
      * <p>valueToShorts.</p>
      *
@@ -107,9 +107,45 @@ public class BinaryLocator extends BaseLocator<Boolean> {
         return new Boolean((((data[offset + 1 - bit / 8] & 0xff) >> (bit % 8)) & 0x1) == 1);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ValueDecoder getDecoder() {
+        if (range == RegisterRange.COIL_STATUS || range == RegisterRange.INPUT_STATUS)
+            return new BitDecoder();
+        return new RegisterBitDecoder(bit);
+    }
+
     /** {@inheritDoc} */
     @Override
     public short[] valueToShorts(Boolean value) {
         throw new NotImplementedException();
     }
+
+    /**
+     * Decodes a coil or input, the offset of which is in bits.
+     */
+    static class BitDecoder extends ValueDecoder.OfBoolean {
+        @Override
+        public boolean decodeBoolean(byte[] data, int offset) {
+            return (((data[offset >> 3] & 0xff) >> (offset & 7)) & 0x1) == 1;
+        }
+    }
+
+    /**
+     * Decodes a bit in a register.
+     */
+    static class RegisterBitDecoder extends ValueDecoder.OfBoolean {
+        private final int index;
+        private final int shift;
+
+        RegisterBitDecoder(int bit) {
+            index = 1 - bit / 8;
+            shift = bit % 8;
+        }
+
+        @Override
+        public boolean decodeBoolean(byte[] data, int offset) {
+            return (((data[offset * 2 + index] & 0xff) >> shift) & 0x1) == 1;
+        }
+    }
 }
@@ -0,0 +1,257 @@
+package com.serotonin.modbus4j.locator;
+
+import java.math.BigInteger;
+
+import com.serotonin.modbus4j.code.DataType;
+
+/**
+ * The decoders of the numeric data types. Each decoder reads the bytes of its value in the order given by its byte
+ * order, most significant first, so that the swapped variants of a type share the arithmetic of the plain one.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+final class NumericDecoder {
+    private static final int[] ONE_LOWER = { 1 };
+    private static final int[] ONE_UPPER = { 0 };
+    private static final int[] TWO = { 0, 1 };
+    private static final int[] TWO_SWAPPED = { 1, 0 };
+    private static final int[] FOUR = { 0, 1, 2, 3 };
+    private static final int[] FOUR_SWAPPED = { 2, 3, 0, 1 };
+    private static final int[] FOUR_SWAPPED_SWAPPED = { 3, 2, 1, 0 };
+    private static final int[] SIX = { 0, 1, 2, 3, 4, 5 };
+    private static final int[] SIX_SWAPPED = { 4, 5, 2, 3, 0, 1 };
+    private static final int[] EIGHT = { 0, 1, 2, 3, 4, 5, 6, 7 };
+    private static final int[] EIGHT_SWAPPED = { 6, 7, 4, 5, 2, 3, 0, 1 };
+
+    private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
+
+    /**
+     * <p>forDataType.</p>
+     *
+     * @param dataType a int.
+     * @return the decoder for the data type.
+     */
+    static ValueDecoder forDataType(int dataType) {
+        switch (dataType) {
+        case DataType.TWO_BYTE_INT_UNSIGNED:
+            return new Unsigned(TWO);
+        case DataType.TWO_BYTE_INT_SIGNED:
+            return new Signed(TWO);
+        case DataType.TWO_BYTE_INT_UNSIGNED_SWAPPED:
+            return new Unsigned(TWO_SWAPPED);
+        case DataType.TWO_BYTE_INT_SIGNED_SWAPPED:
+            return new Signed(TWO_SWAPPED);
+        case DataType.TWO_BYTE_BCD:
+            return new Bcd(TWO);
+        case DataType.ONE_BYTE_INT_UNSIGNED_LOWER:
+            return new Unsigned(ONE_LOWER);
+        case DataType.ONE_BYTE_INT_UNSIGNED_UPPER:
+            return new Unsigned(ONE_UPPER);
+        case DataType.FOUR_BYTE_INT_UNSIGNED:
+            return new Unsigned(FOUR);
+        case DataType.FOUR_BYTE_INT_SIGNED:
+            return new Signed(FOUR);
+        case DataType.FOUR_BYTE_INT_UNSIGNED_SWAPPED:
+            return new Unsigned(FOUR_SWAPPED);
+        case DataType.FOUR_BYTE_INT_SIGNED_SWAPPED:
+            return new Signed(FOUR_SWAPPED);
+        case DataType.FOUR_BYTE_INT_UNSIGNED_SWAPPED_SWAPPED:
+            return new Unsigned(FOUR_SWAPPED_SWAPPED);
+        case DataType.FOUR_BYTE_INT_SIGNED_SWAPPED_SWAPPED:
+            return new Signed(FOUR_SWAPPED_SWAPPED);
+        case DataType.FOUR_BYTE_FLOAT:
+            return new Floating(FOUR);
+        case DataType.FOUR_BYTE_FLOAT_SWAPPED:
+            return new Floating(FOUR_SWAPPED);
+        case DataType.FOUR_BYTE_BCD:
+            return new Bcd(FOUR);
+        case DataType.FOUR_BYTE_BCD_SWAPPED:
+            return new Bcd(FOUR_SWAPPED);
+        case DataType.FOUR_BYTE_MOD_10K:
+            return new Mod10k(FOUR);
+        case DataType.FOUR_BYTE_MOD_10K_SWAPPED:
+            return new Mod10k(FOUR_SWAPPED);
+        case DataType.SIX_BYTE_MOD_10K:
+            return new Mod10k(SIX);
+        case DataType.SIX_BYTE_MOD_10K_SWAPPED:
+            return new Mod10k(SIX_SWAPPED);
+        case DataType.EIGHT_BYTE_MOD_10K:
+            return new Mod10k(EIGHT);
+        case DataType.EIGHT_BYTE_MOD_10K_SWAPPED:
+            return new Mod10k(EIGHT_SWAPPED);
+        case DataType.EIGHT_BYTE_INT_UNSIGNED:
+            return new Unsigned(EIGHT);
+        case DataType.EIGHT_BYTE_INT_SIGNED:
+            return new Signed(EIGHT);
+        case DataType.EIGHT_BYTE_INT_UNSIGNED_SWAPPED:
+            return new Unsigned(EIGHT_SWAPPED);
+        case DataType.EIGHT_BYTE_INT_SIGNED_SWAPPED:
+            return new Signed(EIGHT_SWAPPED);
+        case DataType.EIGHT_BYTE_FLOAT:
+            return new Floating(EIGHT);
+        case DataType.EIGHT_BYTE_FLOAT_SWAPPED:
+            return new Floating(EIGHT_SWAPPED);
+        }
+
+        throw new RuntimeException("Unsupported data type: " + dataType);
+    }
+
+    private NumericDecoder() {
+        // Static methods only
+    }
+
+    /**
+     * Reads the bytes of the value at the given register offset into a long, most significant first.
+     */
+    static long bits(int[] order, byte[] data, int offset) {
+        offset *= 2;
+        long bits = 0;
+        for (int i = 0; i < order.length; i++)
+            bits = (bits << 8) | (data[offset + order[i]] & 0xff);
+        return bits;
+    }
+
+    /**
+     * The base of the integral types.
+     */
+    abstract static class Integral extends ValueDecoder.OfLong {
+        /**
+         * The positions of the bytes of the value, relative to its first register, most significant first.
+         */
+        protected final int[] order;
+
+        Integral(int[] order) {
+            this.order = order;
+        }
+
+        protected long bits(byte[] data, int offset) {
+            return NumericDecoder.bits(order, data, offset);
+        }
+    }
+
+    static class Unsigned extends Integral {
+        Unsigned(int[] order) {
+            super(order);
+        }
+
+        @Override
+        public boolean isUnsigned() {
+            return order.length == 8;
+        }
+
+        @Override
+        public long decodeLong(byte[] data, int offset) {
+            return bits(data, offset);
+        }
+
+        @Override
+        public Number box(long value) {
+            if (order.length <= 2)
+                return Integer.valueOf((int) value);
+            if (order.length == 4)
+                return Long.valueOf(value);
+            if (value < 0)
+                return BigInteger.valueOf(value).add(TWO_POW_64);
+            return BigInteger.valueOf(value);
+        }
+    }
+
+    static class Signed extends Integral {
+        Signed(int[] order) {
+            super(order);
+        }
+
+        @Override
+        public long decodeLong(byte[] data, int offset) {
+            long bits = bits(data, offset);
+            if (order.length == 2)
+                return (short) bits;
+            if (order.length == 4)
+                return (int) bits;
+            return bits;
+        }
+
+        @Override
+        public Number box(long value) {
+            if (order.length == 2)
+                return Short.valueOf((short) value);
+            if (order.length == 4)
+                return Integer.valueOf((int) value);
+            return Long.valueOf(value);
+        }
+    }
+
+    static class Floating extends ValueDecoder.OfDouble {
+        private final int[] order;
+
+        Floating(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public double decodeDouble(byte[] data, int offset) {
+            long bits = bits(order, data, offset);
+            if (order.length == 4)
+                return Float.intBitsToFloat((int) bits);
+            return Double.longBitsToDouble(bits);
+        }
+
+        @Override
+        public Number box(double value) {
+            if (order.length == 4)
+                return Float.valueOf((float) value);
+            return Double.valueOf(value);
+        }
+    }
+
+    /**
+     * Binary coded decimal, one digit per nibble. Nibbles that are not decimal digits are read as 0.
+     */
+    static class Bcd extends Integral {
+        Bcd(int[] order) {
+            super(order);
+        }
+
+        @Override
+        public long decodeLong(byte[] data, int offset) {
+            long bits = bits(data, offset);
+            long value = 0;
+            for (int shift = order.length * 8 - 4; shift >= 0; shift -= 4) {
+                int n = (int) (bits >> shift) & 0xf;
+                value = value * 10 + (n > 9 ? 0 : n);
+            }
+            return value;
+        }
+
+        @Override
+        public Number box(long value) {
+            if (order.length == 2)
+                return Short.valueOf((short) value);
+            return Integer.valueOf((int) value);
+        }
+    }
+
+    /**
+     * Registers that each hold four decimal digits of the value, most significant register first.
+     */
+    static class Mod10k extends Integral {
+        Mod10k(int[] order) {
+            super(order);
+        }
+
+        @Override
+        public long decodeLong(byte[] data, int offset) {
+            long bits = bits(data, offset);
+            long value = 0;
+            for (int shift = order.length * 8 - 16; shift >= 0; shift -= 16)
+                value = value * 10000 + ((bits >> shift) & 0xffff);
+            return value;
+        }
+
+        @Override
+        public Number box(long value) {
+            return BigInteger.valueOf(value);
+        }
+    }
+}
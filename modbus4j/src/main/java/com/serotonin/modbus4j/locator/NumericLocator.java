@@ -1,7 +1,6 @@
 package com.serotonin.modbus4j.locator;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.math.RoundingMode;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -50,6 +49,7 @@ public class NumericLocator extends BaseLocator<Number> {
     };
 
     private final int dataType;
+    private final ValueDecoder decoder;
     private RoundingMode roundingMode = RoundingMode.HALF_UP;
 
     /**
@@ -64,6 +64,7 @@ public class NumericLocator extends BaseLocator<Number> {
         super(slaveId, range, offset);
         this.dataType = dataType;
         validate();
+        decoder = NumericDecoder.forDataType(dataType);
     }
 
     private void validate() {
@@ -152,174 +153,13 @@ public class NumericLocator extends BaseLocator<Number> {
     /** {@inheritDoc} */
     @Override
     public Number bytesToValueRealOffset(byte[] data, int offset) {
-        offset *= 2;
-
-        // 2 bytes
-        if (dataType == DataType.TWO_BYTE_INT_UNSIGNED)
-            return new Integer(((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff));
-
-        if (dataType == DataType.TWO_BYTE_INT_SIGNED)
-            return new Short((short) (((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff)));
-
-        if (dataType == DataType.TWO_BYTE_INT_UNSIGNED_SWAPPED)
-            return new Integer(((data[offset + 1] & 0xff) << 8) | (data[offset] & 0xff));
-
-        if (dataType == DataType.TWO_BYTE_INT_SIGNED_SWAPPED)
-            return new Short((short) (((data[offset + 1] & 0xff) << 8) | (data[offset] & 0xff)));
-
-        if (dataType == DataType.TWO_BYTE_BCD) {
-            StringBuilder sb = new StringBuilder();
-            appendBCD(sb, data[offset]);
-            appendBCD(sb, data[offset + 1]);
-            return Short.parseShort(sb.toString());
-        }
-        
-        // 1 byte
-        if (dataType == DataType.ONE_BYTE_INT_UNSIGNED_LOWER)
-            return new Integer(data[offset+1] & 0xff);
-        if (dataType == DataType.ONE_BYTE_INT_UNSIGNED_UPPER)
-            return new Integer(data[offset] & 0xff);
-
-        // 4 bytes
-        if (dataType == DataType.FOUR_BYTE_INT_UNSIGNED)
-            return new Long(((long) ((data[offset] & 0xff)) << 24) | ((long) ((data[offset + 1] & 0xff)) << 16)
-                    | ((long) ((data[offset + 2] & 0xff)) << 8) | ((data[offset + 3] & 0xff)));
-
-        if (dataType == DataType.FOUR_BYTE_INT_SIGNED)
-            return new Integer(((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
-                    | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff));
-
-        if (dataType == DataType.FOUR_BYTE_INT_UNSIGNED_SWAPPED)
-            return new Long(((long) ((data[offset + 2] & 0xff)) << 24) | ((long) ((data[offset + 3] & 0xff)) << 16)
-                    | ((long) ((data[offset] & 0xff)) << 8) | ((data[offset + 1] & 0xff)));
-
-        if (dataType == DataType.FOUR_BYTE_INT_SIGNED_SWAPPED)
-            return new Integer(((data[offset + 2] & 0xff) << 24) | ((data[offset + 3] & 0xff) << 16)
-                    | ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff));
-
-        if (dataType == DataType.FOUR_BYTE_INT_UNSIGNED_SWAPPED_SWAPPED)
-            return new Long(((long) ((data[offset + 3] & 0xff)) << 24) | (((data[offset + 2] & 0xff) << 16))
-                    | ((long) ((data[offset + 1] & 0xff)) << 8) | (data[offset] & 0xff));
-
-        if (dataType == DataType.FOUR_BYTE_INT_SIGNED_SWAPPED_SWAPPED)
-            return new Integer(((data[offset + 3] & 0xff) << 24) | ((data[offset + 2] & 0xff) << 16)
-                    | ((data[offset + 1] & 0xff) << 8) | ((data[offset] & 0xff)));
-
-        if (dataType == DataType.FOUR_BYTE_FLOAT)
-            return Float.intBitsToFloat(((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
-                    | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff));
-
-        if (dataType == DataType.FOUR_BYTE_FLOAT_SWAPPED)
-            return Float.intBitsToFloat(((data[offset + 2] & 0xff) << 24) | ((data[offset + 3] & 0xff) << 16)
-                    | ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff));
-
-        if (dataType == DataType.FOUR_BYTE_BCD) {
-            StringBuilder sb = new StringBuilder();
-            appendBCD(sb, data[offset]);
-            appendBCD(sb, data[offset + 1]);
-            appendBCD(sb, data[offset + 2]);
-            appendBCD(sb, data[offset + 3]);
-            return Integer.parseInt(sb.toString());
-        }
-
-        if (dataType == DataType.FOUR_BYTE_BCD_SWAPPED) {
-            StringBuilder sb = new StringBuilder();
-            appendBCD(sb, data[offset + 2]);
-            appendBCD(sb, data[offset + 3]);
-            appendBCD(sb, data[offset]);
-            appendBCD(sb, data[offset + 1]);
-            return Integer.parseInt(sb.toString());
-        }
-        
-        //MOD10K types
-        if (dataType == DataType.FOUR_BYTE_MOD_10K_SWAPPED)
-                return   BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))).multiply(BigInteger.valueOf(10000L))
-                    .add(BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))));
-        if (dataType == DataType.FOUR_BYTE_MOD_10K)
-                return   BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))).multiply(BigInteger.valueOf(10000L))
-                    .add(BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))));
-        if (dataType == DataType.SIX_BYTE_MOD_10K_SWAPPED)
-                return   BigInteger.valueOf((((data[offset + 4] & 0xff) << 8) + (data[offset + 5] & 0xff))).multiply(BigInteger.valueOf(100000000L))
-                    .add(BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))).multiply(BigInteger.valueOf(10000L)))
-                    .add(BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))));
-        if (dataType == DataType.SIX_BYTE_MOD_10K)
-                return   BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))).multiply(BigInteger.valueOf(100000000L))
-                    .add(BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))).multiply(BigInteger.valueOf(10000L)))
-                    .add(BigInteger.valueOf((((data[offset + 4] & 0xff) << 8) + (data[offset + 5] & 0xff))));
-        if (dataType == DataType.EIGHT_BYTE_MOD_10K_SWAPPED)
-                return   BigInteger.valueOf((((data[offset + 6] & 0xff) << 8) + (data[offset + 7] & 0xff))).multiply(BigInteger.valueOf(1000000000000L))
-                    .add(BigInteger.valueOf((((data[offset + 4] & 0xff) << 8) + (data[offset + 5] & 0xff))).multiply(BigInteger.valueOf(100000000L)))
-                    .add(BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))).multiply(BigInteger.valueOf(10000L)))
-                    .add(BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))));
-        if (dataType == DataType.EIGHT_BYTE_MOD_10K)
-                return   BigInteger.valueOf((((data[offset    ] & 0xff) << 8) + (data[offset + 1] & 0xff))).multiply(BigInteger.valueOf(1000000000000L))
-                    .add(BigInteger.valueOf((((data[offset + 2] & 0xff) << 8) + (data[offset + 3] & 0xff))).multiply(BigInteger.valueOf(100000000L)))
-                    .add(BigInteger.valueOf((((data[offset + 4] & 0xff) << 8) + (data[offset + 5] & 0xff))).multiply(BigInteger.valueOf(10000L)))
-                    .add(BigInteger.valueOf((((data[offset + 6] & 0xff) << 8) + (data[offset + 7] & 0xff))));
-
-        // 8 bytes
-        if (dataType == DataType.EIGHT_BYTE_INT_UNSIGNED) {
-            byte[] b9 = new byte[9];
-            System.arraycopy(data, offset, b9, 1, 8);
-            return new BigInteger(b9);
-        }
-
-        if (dataType == DataType.EIGHT_BYTE_INT_SIGNED)
-            return new Long(((long) ((data[offset] & 0xff)) << 56) | ((long) ((data[offset + 1] & 0xff)) << 48)
-                    | ((long) ((data[offset + 2] & 0xff)) << 40) | ((long) ((data[offset + 3] & 0xff)) << 32)
-                    | ((long) ((data[offset + 4] & 0xff)) << 24) | ((long) ((data[offset + 5] & 0xff)) << 16)
-                    | ((long) ((data[offset + 6] & 0xff)) << 8) | ((data[offset + 7] & 0xff)));
-
-        if (dataType == DataType.EIGHT_BYTE_INT_UNSIGNED_SWAPPED) {
-            byte[] b9 = new byte[9];
-            b9[1] = data[offset + 6];
-            b9[2] = data[offset + 7];
-            b9[3] = data[offset + 4];
-            b9[4] = data[offset + 5];
-            b9[5] = data[offset + 2];
-            b9[6] = data[offset + 3];
-            b9[7] = data[offset];
-            b9[8] = data[offset + 1];
-            return new BigInteger(b9);
-        }
-
-        if (dataType == DataType.EIGHT_BYTE_INT_SIGNED_SWAPPED)
-            return new Long(((long) ((data[offset + 6] & 0xff)) << 56) | ((long) ((data[offset + 7] & 0xff)) << 48)
-                    | ((long) ((data[offset + 4] & 0xff)) << 40) | ((long) ((data[offset + 5] & 0xff)) << 32)
-                    | ((long) ((data[offset + 2] & 0xff)) << 24) | ((long) ((data[offset + 3] & 0xff)) << 16)
-                    | ((long) ((data[offset] & 0xff)) << 8) | ((data[offset + 1] & 0xff)));
-
-        if (dataType == DataType.EIGHT_BYTE_FLOAT)
-            return Double.longBitsToDouble(((long) ((data[offset] & 0xff)) << 56)
-                    | ((long) ((data[offset + 1] & 0xff)) << 48) | ((long) ((data[offset + 2] & 0xff)) << 40)
-                    | ((long) ((data[offset + 3] & 0xff)) << 32) | ((long) ((data[offset + 4] & 0xff)) << 24)
-                    | ((long) ((data[offset + 5] & 0xff)) << 16) | ((long) ((data[offset + 6] & 0xff)) << 8)
-                    | ((data[offset + 7] & 0xff)));
-
-        if (dataType == DataType.EIGHT_BYTE_FLOAT_SWAPPED)
-            return Double.longBitsToDouble(((long) ((data[offset + 6] & 0xff)) << 56)
-                    | ((long) ((data[offset + 7] & 0xff)) << 48) | ((long) ((data[offset + 4] & 0xff)) << 40)
-                    | ((long) ((data[offset + 5] & 0xff)) << 32) | ((long) ((data[offset + 2] & 0xff)) << 24)
-                    | ((long) ((data[offset + 3] & 0xff)) << 16) | ((long) ((data[offset] & 0xff)) << 8)
-                    | ((data[offset + 1] & 0xff)));
-
-        throw new RuntimeException("Unsupported data type: " + dataType);
+        return (Number) decoder.decode(data, offset);
     }
 
-    private static void appendBCD(StringBuilder sb, byte b) {
-        sb.append(bcdNibbleToInt(b, true));
-        sb.append(bcdNibbleToInt(b, false));
-    }
-
-    private static int bcdNibbleToInt(byte b, boolean high) {
-        int n;
-        if (high)
-            n = (b >> 4) & 0xf;
-        else
-            n = b & 0xf;
-        if (n > 9)
-            n = 0;
-        return n;
+    /** {@inheritDoc} */
+    @Override
+    public ValueDecoder getDecoder() {
+        return decoder;
     }
 
     /** {@inheritDoc} */
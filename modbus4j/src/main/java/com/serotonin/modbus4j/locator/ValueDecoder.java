@@ -0,0 +1,151 @@
+package com.serotonin.modbus4j.locator;
+
+/**
+ * Converts the data of a read response into the value of a single locator. A locator chooses its decoder once,
+ * according to its data type, so that a batch that is polled over and over does not test the data type again for every
+ * value.
+ *
+ * Decoders of numeric and binary values extend OfLong, OfDouble or OfBoolean, which also decode into primitives and
+ * so let results be stored without boxing. Their box methods turn a stored primitive back into the same object that
+ * decode would have returned.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+abstract public class ValueDecoder {
+    /** Constant <code>OBJECT=0</code>: the value can only be decoded as an object. */
+    public static final int OBJECT = 0;
+    /** Constant <code>LONG=1</code>: the value is decoded by {@link OfLong#decodeLong}. */
+    public static final int LONG = 1;
+    /**
+     * Constant <code>UNSIGNED_LONG=2</code>: the value is decoded by {@link OfLong#decodeLong}, and is to be read as
+     * unsigned.
+     */
+    public static final int UNSIGNED_LONG = 2;
+    /** Constant <code>DOUBLE=3</code>: the value is decoded by {@link OfDouble#decodeDouble}. */
+    public static final int DOUBLE = 3;
+    /** Constant <code>BOOLEAN=4</code>: the value is decoded by {@link OfBoolean#decodeBoolean}. */
+    public static final int BOOLEAN = 4;
+
+    /**
+     * <p>decode.</p>
+     *
+     * @param data the data of the read response.
+     * @param offset the offset of the value from the start of the request, in registers, or in bits for coils and
+     *            inputs.
+     * @return the value.
+     */
+    abstract public Object decode(byte[] data, int offset);
+
+    /**
+     * <p>getPrimitiveType.</p>
+     *
+     * @return one of the primitive type constants. Only the primitive subclasses return anything but OBJECT.
+     */
+    public int getPrimitiveType() {
+        return OBJECT;
+    }
+
+    /**
+     * A decoder of values that fit in a long, such as the integral numeric types.
+     */
+    abstract public static class OfLong extends ValueDecoder {
+        /**
+         * <p>isUnsigned.</p>
+         *
+         * @return whether the values returned by decodeLong are to be read as unsigned.
+         */
+        public boolean isUnsigned() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final int getPrimitiveType() {
+            return isUnsigned() ? UNSIGNED_LONG : LONG;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final Number decode(byte[] data, int offset) {
+            return box(decodeLong(data, offset));
+        }
+
+        /**
+         * <p>decodeLong.</p>
+         *
+         * @param data the data of the read response.
+         * @param offset the offset of the value, as for decode.
+         * @return the value.
+         */
+        abstract public long decodeLong(byte[] data, int offset);
+
+        /**
+         * <p>box.</p>
+         *
+         * @param value a value returned by decodeLong.
+         * @return the object that decode returns for the value.
+         */
+        abstract public Number box(long value);
+    }
+
+    /**
+     * A decoder of floating point values.
+     */
+    abstract public static class OfDouble extends ValueDecoder {
+        /** {@inheritDoc} */
+        @Override
+        public final int getPrimitiveType() {
+            return DOUBLE;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final Number decode(byte[] data, int offset) {
+            return box(decodeDouble(data, offset));
+        }
+
+        /**
+         * <p>decodeDouble.</p>
+         *
+         * @param data the data of the read response.
+         * @param offset the offset of the value, as for decode.
+         * @return the value.
+         */
+        abstract public double decodeDouble(byte[] data, int offset);
+
+        /**
+         * <p>box.</p>
+         *
+         * @param value a value returned by decodeDouble.
+         * @return the object that decode returns for the value.
+         */
+        abstract public Number box(double value);
+    }
+
+    /**
+     * A decoder of binary values.
+     */
+    abstract public static class OfBoolean extends ValueDecoder {
+        /** {@inheritDoc} */
+        @Override
+        public final int getPrimitiveType() {
+            return BOOLEAN;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final Boolean decode(byte[] data, int offset) {
+            return decodeBoolean(data, offset);
+        }
+
+        /**
+         * <p>decodeBoolean.</p>
+         *
+         * @param data the data of the read response.
+         * @param offset the offset of the value, as for decode.
+         * @return the value.
+         */
+        abstract public boolean decodeBoolean(byte[] data, int offset);
+    }
+}
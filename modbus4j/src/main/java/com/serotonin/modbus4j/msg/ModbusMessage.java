@@ -31,7 +31,19 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  * @version 5.0.0
  */
 abstract public class ModbusMessage {
+    /**
+     * Scratch queue that messages are written into before being copied out. Reused by every message encoded on the
+     * thread, so encoding does not build and grow a new queue each time.
+     */
+    private static final ThreadLocal<ByteQueue> ENCODE_BUFFER = new ThreadLocal<ByteQueue>() {
+        @Override
+        protected ByteQueue initialValue() {
+            return new ByteQueue(256);
+        }
+    };
+
     protected int slaveId;
+    private volatile byte[] encoded;
 
     /**
      * <p>Constructor for ModbusMessage.</p>
@@ -73,6 +85,38 @@ abstract public class ModbusMessage {
         writeImpl(queue);
     }
 
+    /**
+     * Returns the message as written by write, i.e. the slave id, function code and data, but without any envelope.
+     * Messages that cannot change once created, such as read requests, keep the result so that polling with the same
+     * request object only encodes it once. The returned array may be shared and must not be modified.
+     *
+     * @return an array of {@link byte} objects.
+     */
+    public byte[] encode() {
+        byte[] b = encoded;
+        if (b != null)
+            return b;
+
+        ByteQueue queue = ENCODE_BUFFER.get();
+        queue.clear();
+        write(queue);
+        b = queue.popAll();
+
+        if (isEncodingCacheable())
+            encoded = b;
+        return b;
+    }
+
+    /**
+     * Whether the encoded form of this message can be kept and reused. Only messages with no way to change their
+     * content after construction should return true.
+     *
+     * @return a boolean.
+     */
+    protected boolean isEncodingCacheable() {
+        return false;
+    }
+
     /**
      * <p>writeImpl.</p>
      *
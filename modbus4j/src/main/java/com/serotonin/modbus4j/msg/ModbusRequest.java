@@ -79,6 +79,35 @@ abstract public class ModbusRequest extends ModbusMessage {
         return request;
     }
 
+    /**
+     * Works out from the bytes already received how long the request at the given position of the queue is, without
+     * consuming anything.
+     *
+     * @param queue a {@link com.serotonin.modbus4j.sero.util.queue.ByteQueue} object.
+     * @param offset the position of the slave id in the queue.
+     * @return the length of the request from the slave id to the end of the data, -1 if not enough of it has been
+     *         received to tell, or 0 if the function code is not known.
+     */
+    public static int peekRequestLength(ByteQueue queue, int offset) {
+        if (queue.size() < offset + 2)
+            return -1;
+
+        byte functionCode = queue.peek(offset + 1);
+        if (functionCode == FunctionCode.READ_COILS || functionCode == FunctionCode.READ_DISCRETE_INPUTS
+                || functionCode == FunctionCode.READ_HOLDING_REGISTERS
+                || functionCode == FunctionCode.READ_INPUT_REGISTERS || functionCode == FunctionCode.WRITE_COIL
+                || functionCode == FunctionCode.WRITE_REGISTER)
+            return 6;
+        if (functionCode == FunctionCode.READ_EXCEPTION_STATUS || functionCode == FunctionCode.REPORT_SLAVE_ID)
+            return 2;
+        if (functionCode == FunctionCode.WRITE_COILS || functionCode == FunctionCode.WRITE_REGISTERS) {
+            if (queue.size() < offset + 7)
+                return -1;
+            return 7 + (queue.peek(offset + 6) & 0xff);
+        }
+        return 0;
+    }
+
     ModbusRequest(int slaveId) throws ModbusTransportException {
         super(slaveId);
     }
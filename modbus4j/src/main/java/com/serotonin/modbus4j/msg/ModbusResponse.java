@@ -87,6 +87,41 @@ abstract public class ModbusResponse extends ModbusMessage {
         return response;
     }
 
+    /**
+     * Works out from the bytes already received how long the response at the given position of the queue is, without
+     * consuming anything. This lets parsers wait for a complete frame up front rather than failing part way through
+     * the parse and backtracking.
+     *
+     * @param queue a {@link com.serotonin.modbus4j.sero.util.queue.ByteQueue} object.
+     * @param offset the position of the slave id in the queue.
+     * @return the length of the response from the slave id to the end of the data, -1 if not enough of it has been
+     *         received to tell, or 0 if the function code is not known.
+     */
+    public static int peekResponseLength(ByteQueue queue, int offset) {
+        if (queue.size() < offset + 2)
+            return -1;
+
+        byte functionCode = queue.peek(offset + 1);
+        if (greaterThan(functionCode, MAX_FUNCTION_CODE))
+            return 3;
+
+        if (functionCode == FunctionCode.READ_COILS || functionCode == FunctionCode.READ_DISCRETE_INPUTS
+                || functionCode == FunctionCode.READ_HOLDING_REGISTERS
+                || functionCode == FunctionCode.READ_INPUT_REGISTERS || functionCode == FunctionCode.REPORT_SLAVE_ID) {
+            if (queue.size() < offset + 3)
+                return -1;
+            return 3 + (queue.peek(offset + 2) & 0xff);
+        }
+        if (functionCode == FunctionCode.READ_EXCEPTION_STATUS)
+            return 3;
+        if (functionCode == FunctionCode.WRITE_COIL || functionCode == FunctionCode.WRITE_REGISTER
+                || functionCode == FunctionCode.WRITE_COILS || functionCode == FunctionCode.WRITE_REGISTERS)
+            return 6;
+        if (functionCode == FunctionCode.WRITE_MASK_REGISTER)
+            return 8;
+        return 0;
+    }
+
     protected byte exceptionCode = -1;
 
     ModbusResponse(int slaveId) throws ModbusTransportException {
@@ -62,6 +62,12 @@ abstract public class ReadBinaryRequest extends ModbusRequest {
         super(slaveId);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isEncodingCacheable() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void writeRequest(ByteQueue queue) {
@@ -87,13 +93,27 @@ abstract public class ReadBinaryRequest extends ModbusRequest {
         boolean[] data = new boolean[numberOfBits];
 
         // Get the data from the process image.
-        for (int i = 0; i < numberOfBits; i++)
-            data[i] = getBinary(processImage, i + startOffset);
+        getBinaries(processImage, startOffset, numberOfBits, data);
 
         // Convert the boolean array into an array of bytes.
         return convertToBytes(data);
     }
 
+    /**
+     * Reads a range of bits from the process image. By default each bit is read with getBinary.
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link boolean} objects.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     */
+    protected void getBinaries(ProcessImage processImage, int offset, int count, boolean[] dst)
+            throws ModbusTransportException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getBinary(processImage, offset + i);
+    }
+
     /**
      * <p>getBinary.</p>
      *
@@ -21,6 +21,7 @@
 package com.serotonin.modbus4j.msg;
 
 import com.serotonin.modbus4j.ProcessImage;
+import com.serotonin.modbus4j.base.ProcessImageUtils;
 import com.serotonin.modbus4j.code.FunctionCode;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
 
@@ -58,6 +59,13 @@ public class ReadCoilsRequest extends ReadBinaryRequest {
         return new ReadCoilsResponse(slaveId, getData(processImage));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void getBinaries(ProcessImage processImage, int offset, int count, boolean[] dst)
+            throws ModbusTransportException {
+        ProcessImageUtils.readCoils(processImage, offset, count, dst);
+    }
+
     /** {@inheritDoc} */
     @Override
     protected boolean getBinary(ProcessImage processImage, int index) throws ModbusTransportException {
@@ -49,6 +49,12 @@ public class ReadExceptionStatusRequest extends ModbusRequest {
         // no op
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isEncodingCacheable() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void writeRequest(ByteQueue queue) {
@@ -21,6 +21,7 @@
 package com.serotonin.modbus4j.msg;
 
 import com.serotonin.modbus4j.ProcessImage;
+import com.serotonin.modbus4j.base.ProcessImageUtils;
 import com.serotonin.modbus4j.code.FunctionCode;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
 
@@ -59,6 +60,13 @@ public class ReadHoldingRegistersRequest extends ReadNumericRequest {
         return new ReadHoldingRegistersResponse(slaveId, getData(processImage));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void getNumerics(ProcessImage processImage, int offset, int count, short[] dst)
+            throws ModbusTransportException {
+        ProcessImageUtils.readHoldingRegisters(processImage, offset, count, dst);
+    }
+
     /** {@inheritDoc} */
     @Override
     protected short getNumeric(ProcessImage processImage, int index) throws ModbusTransportException {
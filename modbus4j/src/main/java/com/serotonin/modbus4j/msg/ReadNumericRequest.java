@@ -62,6 +62,12 @@ abstract public class ReadNumericRequest extends ModbusRequest {
         super(slaveId);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isEncodingCacheable() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void writeRequest(ByteQueue queue) {
@@ -87,12 +93,26 @@ abstract public class ReadNumericRequest extends ModbusRequest {
         short[] data = new short[numberOfRegisters];
 
         // Get the data from the process image.
-        for (int i = 0; i < numberOfRegisters; i++)
-            data[i] = getNumeric(processImage, i + startOffset);
+        getNumerics(processImage, startOffset, numberOfRegisters, data);
 
         return convertToBytes(data);
     }
 
+    /**
+     * Reads a range of registers from the process image. By default each register is read with getNumeric.
+     *
+     * @param processImage a {@link com.serotonin.modbus4j.ProcessImage} object.
+     * @param offset a int.
+     * @param count a int.
+     * @param dst an array of {@link short} objects.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     */
+    protected void getNumerics(ProcessImage processImage, int offset, int count, short[] dst)
+            throws ModbusTransportException {
+        for (int i = 0; i < count; i++)
+            dst[i] = getNumeric(processImage, offset + i);
+    }
+
     /**
      * <p>getNumeric.</p>
      *
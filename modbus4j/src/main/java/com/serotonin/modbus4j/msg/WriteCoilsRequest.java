@@ -20,9 +20,12 @@
  */
 package com.serotonin.modbus4j.msg;
 
+import java.util.Arrays;
+
 import com.serotonin.modbus4j.Modbus;
 import com.serotonin.modbus4j.ProcessImage;
 import com.serotonin.modbus4j.base.ModbusUtils;
+import com.serotonin.modbus4j.base.ProcessImageUtils;
 import com.serotonin.modbus4j.code.FunctionCode;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
 import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
@@ -77,8 +80,9 @@ public class WriteCoilsRequest extends ModbusRequest {
     @Override
     ModbusResponse handleImpl(ProcessImage processImage) throws ModbusTransportException {
         boolean[] bdata = convertToBooleans(data);
-        for (int i = 0; i < numberOfBits; i++)
-            processImage.writeCoil(startOffset + i, bdata[i]);
+        if (bdata.length != numberOfBits)
+            bdata = Arrays.copyOf(bdata, numberOfBits);
+        ProcessImageUtils.writeCoils(processImage, startOffset, bdata);
         return new WriteCoilsResponse(slaveId, startOffset, numberOfBits);
     }
 
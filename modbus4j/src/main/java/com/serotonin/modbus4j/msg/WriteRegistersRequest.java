@@ -23,6 +23,7 @@ package com.serotonin.modbus4j.msg;
 import com.serotonin.modbus4j.Modbus;
 import com.serotonin.modbus4j.ProcessImage;
 import com.serotonin.modbus4j.base.ModbusUtils;
+import com.serotonin.modbus4j.base.ProcessImageUtils;
 import com.serotonin.modbus4j.code.FunctionCode;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
 import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
@@ -77,8 +78,7 @@ public class WriteRegistersRequest extends ModbusRequest {
     @Override
     ModbusResponse handleImpl(ProcessImage processImage) throws ModbusTransportException {
         short[] sdata = convertToShorts(data);
-        for (int i = 0; i < sdata.length; i++)
-            processImage.writeHoldingRegister(startOffset + i, sdata[i]);
+        ProcessImageUtils.writeHoldingRegisters(processImage, startOffset, sdata);
         return new WriteRegistersResponse(slaveId, startOffset, sdata.length);
     }
 
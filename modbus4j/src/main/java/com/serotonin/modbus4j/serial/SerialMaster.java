@@ -25,10 +25,14 @@ import org.apache.commons.logging.LogFactory;
 
 import com.serotonin.modbus4j.ModbusMaster;
 import com.serotonin.modbus4j.exception.ModbusInitException;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
 import com.serotonin.modbus4j.sero.messaging.EpollStreamTransport;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
 import com.serotonin.modbus4j.sero.messaging.StreamTransport;
 import com.serotonin.modbus4j.sero.messaging.Transport;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>Abstract SerialMaster class.</p>
@@ -48,7 +52,7 @@ abstract public class SerialMaster extends ModbusMaster {
     protected SerialPortWrapper wrapper;
     protected Transport transport;
 
-
+    private volatile SerialRequestScheduler scheduler;
 
     /**
      * <p>Constructor for SerialMaster.</p>
@@ -71,6 +75,137 @@ abstract public class SerialMaster extends ModbusMaster {
         this.validateResponse = validateResponse;
     }
 
+    /**
+     * <p>isScheduled.</p>
+     *
+     * @return true if requests are put on the line by a scheduler.
+     */
+    public boolean isScheduled() {
+        return scheduler != null;
+    }
+
+    /**
+     * Sets whether requests are put on the line by a {@link SerialRequestScheduler}, which orders them by priority and
+     * slave id, instead of by whichever calling thread gets the line first. Turning scheduling off stops the scheduler
+     * and fails the requests still queued in it.
+     *
+     * @param scheduled a boolean.
+     */
+    public synchronized void setScheduled(boolean scheduled) {
+        if (scheduled && scheduler == null)
+            scheduler = new SerialRequestScheduler(this);
+        else if (!scheduled && scheduler != null) {
+            scheduler.stop();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>scheduler</code>.</p>
+     *
+     * @return the scheduler, or null if requests are not scheduled.
+     */
+    public SerialRequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sends the request with the given priority and queue deadline, and waits for the response. If requests are not
+     * scheduled, the priority and deadline are ignored.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @param priority one of the priority constants of {@link SerialRequestScheduler}.
+     * @param deadline the time in milliseconds the request may wait to be sent, or 0 for no limit.
+     * @return a {@link com.serotonin.modbus4j.msg.ModbusResponse} object.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     */
+    public ModbusResponse send(ModbusRequest request, int priority, long deadline) throws ModbusTransportException {
+        SerialRequestScheduler s = scheduler;
+        if (s == null)
+            return super.send(request);
+        request.validate(this);
+        return checkResponse(request, s.send(request, priority, deadline));
+    }
+
+    /**
+     * Sends the request with the given priority and queue deadline without blocking the calling thread. If requests
+     * are not scheduled, the priority and deadline are ignored.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @param priority one of the priority constants of {@link SerialRequestScheduler}.
+     * @param deadline the time in milliseconds the request may wait to be sent, or 0 for no limit.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public SettableFuture<ModbusResponse> sendAsync(ModbusRequest request, int priority, long deadline) {
+        try {
+            request.validate(this);
+        }
+        catch (ModbusTransportException e) {
+            SettableFuture<ModbusResponse> future = new SettableFuture<>();
+            future.fail(e);
+            return future;
+        }
+        SerialRequestScheduler s = scheduler;
+        return validated(request, s == null ? sendAsyncDirect(request) : s.submit(request, priority, deadline));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If requests are scheduled, the request is queued with its default priority and deadline. Otherwise it is put
+     * on the line with sendImpl from the calling thread.
+     */
+    @Override
+    public ModbusResponse send(ModbusRequest request) throws ModbusTransportException {
+        SerialRequestScheduler s = scheduler;
+        if (s == null)
+            return super.send(request);
+        request.validate(this);
+        return checkResponse(request, s.send(request));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncImpl(ModbusRequest request) {
+        SerialRequestScheduler s = scheduler;
+        if (s == null)
+            return sendAsyncDirect(request);
+        return s.submit(request);
+    }
+
+    /**
+     * Puts the request on the line without going through the scheduler. The default implementation sends the request
+     * synchronously on the calling thread and returns a future that is already done.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    protected SettableFuture<ModbusResponse> sendAsyncDirect(ModbusRequest request) {
+        SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        try {
+            future.complete(sendImpl(request));
+        }
+        catch (ModbusTransportException e) {
+            future.fail(e);
+        }
+        return future;
+    }
+
+    private ModbusResponse checkResponse(ModbusRequest request, ModbusResponse response) throws ModbusTransportException {
+        if (validateResponse && response != null)
+            response.validateResponse(request);
+        return response;
+    }
+
+    /**
+     * Stops the scheduler, if any, failing the requests still queued in it. It starts again with the next request.
+     */
+    protected void stopScheduler() {
+        SerialRequestScheduler s = scheduler;
+        if (s != null)
+            s.stop();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void init() throws ModbusInitException {
@@ -0,0 +1,465 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2006-2011 Serotonin Software Technologies Inc. http://serotoninsoftware.com
+ * @author Matthew Lohbihler
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.serotonin.modbus4j.serial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.serotonin.modbus4j.code.FunctionCode;
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.sero.timer.TimerWheel;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
+
+/**
+ * Puts the requests of a serial master on the line one at a time from a single thread, in an order of its own
+ * choosing, rather than letting the calling threads race each other for the line.
+ *
+ * Requests are queued by priority class, and a class is only served when all higher classes are empty. By default
+ * writes go in the high class and everything else in the normal class; alarm reads and bulk polls can be given the
+ * high or low class explicitly. Within a class the slaves are served round-robin, one request per slave per turn, so
+ * that a slave with a long backlog cannot hold up the others.
+ *
+ * A request may carry a deadline. A request that is still queued when its deadline passes is dropped, and its future
+ * failed, rather than being sent with data that nobody is waiting for any more. A request that is already on the line
+ * is never dropped.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class SerialRequestScheduler implements Runnable {
+    /** Constant <code>PRIORITY_HIGH=0</code>: writes and alarms. */
+    public static final int PRIORITY_HIGH = 0;
+    /** Constant <code>PRIORITY_NORMAL=1</code>: ordinary reads. */
+    public static final int PRIORITY_NORMAL = 1;
+    /** Constant <code>PRIORITY_LOW=2</code>: bulk polls. */
+    public static final int PRIORITY_LOW = 2;
+
+    private final Log LOG = LogFactory.getLog(SerialRequestScheduler.class);
+
+    private final SerialMaster master;
+    private final PriorityClass[] classes = new PriorityClass[PRIORITY_LOW + 1];
+
+    private long pollDeadline;
+    private Thread thread;
+    private int depth;
+    private int peakDepth;
+    private long droppedCount;
+
+    // Only written by the scheduler thread.
+    private volatile long sentCount;
+
+    /**
+     * <p>Constructor for SerialRequestScheduler.</p>
+     *
+     * @param master the master whose requests are scheduled.
+     */
+    public SerialRequestScheduler(SerialMaster master) {
+        this.master = master;
+        for (int i = 0; i < classes.length; i++)
+            classes[i] = new PriorityClass();
+    }
+
+    /**
+     * The priority class a request is given when none is requested: high for writes, normal for everything else.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a int.
+     */
+    public static int getDefaultPriority(ModbusRequest request) {
+        switch (request.getFunctionCode()) {
+        case FunctionCode.WRITE_COIL:
+        case FunctionCode.WRITE_REGISTER:
+        case FunctionCode.WRITE_COILS:
+        case FunctionCode.WRITE_REGISTERS:
+        case FunctionCode.WRITE_MASK_REGISTER:
+            return PRIORITY_HIGH;
+        }
+        return PRIORITY_NORMAL;
+    }
+
+    /**
+     * <p>Getter for the field <code>pollDeadline</code>.</p>
+     *
+     * @return the deadline in milliseconds given to reads that are submitted without one, or 0 for none.
+     */
+    public synchronized long getPollDeadline() {
+        return pollDeadline;
+    }
+
+    /**
+     * Sets the deadline given to reads that are submitted without one, so that polls that fall behind are dropped
+     * rather than piling up. Writes are never given a deadline by default.
+     *
+     * @param pollDeadline the deadline in milliseconds, or 0 for none.
+     */
+    public synchronized void setPollDeadline(long pollDeadline) {
+        this.pollDeadline = pollDeadline;
+    }
+
+    /**
+     * Queues the request with its default priority and deadline.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public SettableFuture<ModbusResponse> submit(ModbusRequest request) {
+        int priority = getDefaultPriority(request);
+        return submit(request, priority, priority == PRIORITY_HIGH ? 0 : getPollDeadline());
+    }
+
+    /**
+     * Queues the request. The returned future is completed by the scheduler thread, so listeners added to it must not
+     * block.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @param priority one of the priority constants.
+     * @param deadline the time in milliseconds that the request may wait in the queue before it is dropped, or 0 to
+     *            wait for as long as it takes.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public SettableFuture<ModbusResponse> submit(ModbusRequest request, int priority, long deadline) {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW)
+            throw new IllegalArgumentException("Invalid priority: " + priority);
+
+        Entry entry = new Entry(request, priority, deadline);
+        synchronized (this) {
+            if (thread == null) {
+                thread = new Thread(this, "Modbus4J serial scheduler");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            classes[priority].add(entry);
+            if (++depth > peakDepth)
+                peakDepth = depth;
+            notify();
+        }
+
+        // Scheduled outside of the lock, since the timer thread takes it to drop the entry.
+        if (deadline > 0)
+            entry.timeout = TimerWheel.getShared().schedule(entry, deadline);
+        return entry.future;
+    }
+
+    /**
+     * Queues the request with its default priority and deadline, and waits for the response.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @return a {@link com.serotonin.modbus4j.msg.ModbusResponse} object.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if the request failed or was dropped.
+     */
+    public ModbusResponse send(ModbusRequest request) throws ModbusTransportException {
+        return await(submit(request), request.getSlaveId());
+    }
+
+    /**
+     * Queues the request and waits for the response.
+     *
+     * @param request a {@link com.serotonin.modbus4j.msg.ModbusRequest} object.
+     * @param priority one of the priority constants.
+     * @param deadline the time in milliseconds that the request may wait in the queue, or 0 for no limit.
+     * @return a {@link com.serotonin.modbus4j.msg.ModbusResponse} object.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if the request failed or was dropped.
+     */
+    public ModbusResponse send(ModbusRequest request, int priority, long deadline) throws ModbusTransportException {
+        return await(submit(request, priority, deadline), request.getSlaveId());
+    }
+
+    /**
+     * Stops the scheduler thread once the request on the line, if any, is done, and fails all queued requests. A
+     * later submit starts a new thread.
+     */
+    public void stop() {
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            for (PriorityClass pc : classes) {
+                Entry entry;
+                while ((entry = pc.poll()) != null)
+                    dropped.add(entry);
+            }
+            depth = 0;
+            thread = null;
+            notify();
+        }
+
+        for (Entry entry : dropped) {
+            entry.cancelTimeout();
+            entry.future.fail(new ModbusTransportException("Scheduler stopped", entry.request.getSlaveId()));
+        }
+    }
+
+    //
+    //
+    // Metrics
+    //
+    /**
+     * <p>getQueueDepth.</p>
+     *
+     * @return the number of requests waiting to be sent.
+     */
+    public synchronized int getQueueDepth() {
+        return depth;
+    }
+
+    /**
+     * <p>getQueueDepth.</p>
+     *
+     * @param priority one of the priority constants.
+     * @return the number of requests of the priority class waiting to be sent.
+     */
+    public synchronized int getQueueDepth(int priority) {
+        return classes[priority].size;
+    }
+
+    /**
+     * <p>getSlaveQueueDepth.</p>
+     *
+     * @param slaveId a int.
+     * @return the number of requests to the slave waiting to be sent, over all priority classes.
+     */
+    public synchronized int getSlaveQueueDepth(int slaveId) {
+        int size = 0;
+        for (PriorityClass pc : classes)
+            size += pc.size(slaveId);
+        return size;
+    }
+
+    /**
+     * <p>getPeakQueueDepth.</p>
+     *
+     * @return the largest number of requests that have been waiting at once since the last reset.
+     */
+    public synchronized int getPeakQueueDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Starts the peak queue depth again from the current depth.
+     */
+    public synchronized void resetPeakQueueDepth() {
+        peakDepth = depth;
+    }
+
+    /**
+     * <p>getSentCount.</p>
+     *
+     * @return the number of requests that have been put on the line.
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * <p>getDroppedCount.</p>
+     *
+     * @return the number of requests that were dropped because their deadline passed.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            Entry entry = null;
+            synchronized (this) {
+                while (thread == self && (entry = next()) == null) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        // no op
+                    }
+                }
+                if (thread != self)
+                    return;
+            }
+
+            entry.cancelTimeout();
+            if (entry.future.isDone())
+                // Cancelled by its caller.
+                continue;
+
+            if (entry.expires != 0 && System.nanoTime() - entry.expires >= 0) {
+                // The timer has not got round to it yet.
+                synchronized (this) {
+                    droppedCount++;
+                }
+                entry.fail();
+                continue;
+            }
+
+            sentCount++;
+            try {
+                entry.future.complete(master.sendImpl(entry.request));
+            }
+            catch (ModbusTransportException e) {
+                entry.future.fail(e);
+            }
+            catch (RuntimeException e) {
+                LOG.debug("Request failed", e);
+                entry.future.fail(new ModbusTransportException(e, entry.request.getSlaveId()));
+            }
+        }
+    }
+
+    private Entry next() {
+        for (PriorityClass pc : classes) {
+            Entry entry = pc.poll();
+            if (entry != null) {
+                depth--;
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    void expired(Entry entry) {
+        synchronized (this) {
+            if (!entry.queued)
+                return;
+            classes[entry.priority].remove(entry);
+            depth--;
+            droppedCount++;
+        }
+        entry.fail();
+    }
+
+    private static ModbusResponse await(SettableFuture<ModbusResponse> future, int slaveId)
+            throws ModbusTransportException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ModbusTransportException(e, slaveId);
+        }
+        catch (CancellationException e) {
+            throw new ModbusTransportException(e, slaveId);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ModbusTransportException)
+                throw (ModbusTransportException) e.getCause();
+            throw new ModbusTransportException(e.getCause(), slaveId);
+        }
+    }
+
+    class Entry implements Runnable {
+        final ModbusRequest request;
+        final int priority;
+        final long expires;
+        final SettableFuture<ModbusResponse> future = new SettableFuture<>();
+        volatile TimerWheel.Timeout timeout;
+
+        // Guarded by the scheduler's lock.
+        boolean queued;
+
+        Entry(ModbusRequest request, int priority, long deadline) {
+            this.request = request;
+            this.priority = priority;
+            long expires = 0;
+            if (deadline > 0) {
+                expires = System.nanoTime() + deadline * 1000000L;
+                if (expires == 0)
+                    expires = 1;
+            }
+            this.expires = expires;
+        }
+
+        @Override
+        public void run() {
+            expired(this);
+        }
+
+        void cancelTimeout() {
+            TimerWheel.Timeout t = timeout;
+            if (t != null)
+                t.cancel();
+        }
+
+        void fail() {
+            future.fail(new ModbusTransportException("Request dropped after waiting past its deadline",
+                    request.getSlaveId()));
+        }
+    }
+
+    /**
+     * The requests of one priority class, with a queue per slave id. Slaves that have requests waiting take turns
+     * in the ring.
+     */
+    static class PriorityClass {
+        private final Map<Integer, ArrayDeque<Entry>> slaves = new HashMap<>();
+        private final ArrayDeque<ArrayDeque<Entry>> ring = new ArrayDeque<>();
+        int size;
+
+        void add(Entry entry) {
+            ArrayDeque<Entry> queue = slaves.get(entry.request.getSlaveId());
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                slaves.put(entry.request.getSlaveId(), queue);
+            }
+            if (queue.isEmpty())
+                ring.add(queue);
+            queue.add(entry);
+            entry.queued = true;
+            size++;
+        }
+
+        Entry poll() {
+            ArrayDeque<Entry> queue = ring.poll();
+            if (queue == null)
+                return null;
+            Entry entry = queue.poll();
+            if (!queue.isEmpty())
+                // To the back of the ring, behind the other slaves.
+                ring.add(queue);
+            entry.queued = false;
+            size--;
+            return entry;
+        }
+
+        void remove(Entry entry) {
+            ArrayDeque<Entry> queue = slaves.get(entry.request.getSlaveId());
+            queue.remove(entry);
+            if (queue.isEmpty())
+                ring.remove(queue);
+            entry.queued = false;
+            size--;
+        }
+
+        int size(int slaveId) {
+            ArrayDeque<Entry> queue = slaves.get(slaveId);
+            return queue == null ? 0 : queue.size();
+        }
+    }
+}
@@ -2,8 +2,8 @@ package com.serotonin.modbus4j.serial;
 
 import com.serotonin.modbus4j.sero.messaging.IncomingResponseMessage;
 import com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage;
+import com.serotonin.modbus4j.sero.messaging.SlottedWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.sero.messaging.WaitingRoomKey;
-import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
 
 /**
  * <p>SerialWaitingRoomKeyFactory class.</p>
@@ -11,7 +11,7 @@ import com.serotonin.modbus4j.sero.messaging.WaitingRoomKeyFactory;
  * @author Matthew Lohbihler
  * @version 5.0.0
  */
-public class SerialWaitingRoomKeyFactory implements WaitingRoomKeyFactory {
+public class SerialWaitingRoomKeyFactory implements SlottedWaitingRoomKeyFactory {
     private static final Sync sync = new Sync();
 
     /** {@inheritDoc} */
@@ -26,6 +26,34 @@ public class SerialWaitingRoomKeyFactory implements WaitingRoomKeyFactory {
         return sync;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * A serial line carries one request at a time.
+     */
+    @Override
+    public int getSlotCount() {
+        return 1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSlot(OutgoingRequestMessage request) {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSlot(IncomingResponseMessage response) {
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isResponseFor(OutgoingRequestMessage request, IncomingResponseMessage response) {
+        return true;
+    }
+
     static class Sync implements WaitingRoomKey {
         @Override
         public int hashCode() {
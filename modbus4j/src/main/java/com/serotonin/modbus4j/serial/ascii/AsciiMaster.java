@@ -32,6 +32,7 @@ import com.serotonin.modbus4j.serial.SerialPortWrapper;
 import com.serotonin.modbus4j.serial.SerialWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
 import com.serotonin.modbus4j.sero.messaging.StreamTransport;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>AsciiMaster class.</p>
@@ -90,11 +91,21 @@ public class AsciiMaster extends SerialMaster {
     /** {@inheritDoc} */
     @Override
     public void destroy() {
+        stopScheduler();
         closeMessageControl(conn);
         super.close();
         initialized = false;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncDirect(ModbusRequest request) {
+        MessageControl c = conn;
+        if (c == null)
+            return super.sendAsyncDirect(request);
+        return sendAsync(c, new AsciiMessageRequest(request), request.getSlaveId());
+    }
+
     /** {@inheritDoc} */
     @Override
     public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
@@ -20,6 +20,7 @@
  */
 package com.serotonin.modbus4j.serial.ascii;
 
+import com.serotonin.modbus4j.exception.ChecksumException;
 import com.serotonin.modbus4j.exception.ModbusTransportException;
 import com.serotonin.modbus4j.msg.ModbusMessage;
 import com.serotonin.modbus4j.serial.SerialMessage;
@@ -47,20 +48,44 @@ abstract public class AsciiMessage extends SerialMessage {
      * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
      */
     protected static ByteQueue getUnasciiMessage(ByteQueue queue) throws ModbusTransportException {
+        ByteQueue msgQueue = new ByteQueue();
+        if (!getUnasciiMessage(queue, msgQueue))
+            throw new ArrayIndexOutOfBoundsException();
+        return msgQueue;
+    }
+
+    /**
+     * Decodes the message at the head of the queue straight into the given buffer, which is cleared first. The ascii
+     * characters are converted as they are popped, and the LRC is checked over the decoded bytes in the buffer, so
+     * the only copy made is the decoded message itself and a parser can reuse the same buffer for every frame.
+     *
+     * @param queue a {@link com.serotonin.modbus4j.sero.util.queue.ByteQueue} object.
+     * @param msgQueue the buffer to receive the decoded message.
+     * @return false if the message is not yet complete, in which case nothing is consumed.
+     * @throws com.serotonin.modbus4j.exception.ModbusTransportException if any.
+     */
+    protected static boolean getUnasciiMessage(ByteQueue queue, ByteQueue msgQueue) throws ModbusTransportException {
+        // Find the end indicator before consuming anything
+        int end = queue.indexOf(END, 1);
+        if (end == -1) {
+            if (queue.size() == 0 || queue.peek(0) == START)
+                return false;
+        }
+
         // Validate that the message starts with the required indicator
         byte b = queue.pop();
         if (b != START)
             throw new ModbusTransportException("Invalid message start: " + b);
+        if (end < 3)
+            throw new ModbusTransportException("Message too short for an LRC");
 
-        // Find the end indicator
-        int end = queue.indexOf(END);
-        if (end == -1)
-            throw new ArrayIndexOutOfBoundsException();
-
-        // Remove the message from the queue, leaving the LRC there
-        byte[] asciiBytes = new byte[end - 2];
-        queue.pop(asciiBytes);
-        ByteQueue msgQueue = new ByteQueue(asciiBytes);
+        // Convert the message to unascii, leaving the LRC in the queue
+        msgQueue.clear();
+        int len = (end - 3) / 2;
+        for (int i = 0; i < len; i++)
+            msgQueue.push(readAscii(queue));
+        if ((end - 3) % 2 != 0)
+            queue.pop();
 
         // Pop off the LRC
         byte givenLrc = readAscii(queue);
@@ -68,16 +93,13 @@ abstract public class AsciiMessage extends SerialMessage {
         // Pop the end indicator off of the queue
         queue.pop(END.length);
 
-        // Convert to unascii
-        fromAscii(msgQueue, msgQueue.size());
-
         // Check the LRC
         int calcLrc = calculateLRC(msgQueue, 0, msgQueue.size());
         if (calcLrc != givenLrc)
-            throw new ModbusTransportException("LRC mismatch: given=" + (givenLrc & 0xff) + ", calc="
-                    + (calcLrc & 0xff));
+            throw new ChecksumException("LRC mismatch: given=" + (givenLrc & 0xff) + ", calc="
+                    + (calcLrc & 0xff), msgQueue.size() > 0 ? msgQueue.peek(0) & 0xff : -1);
 
-        return msgQueue;
+        return true;
     }
 
     /**
@@ -106,9 +128,25 @@ abstract public class AsciiMessage extends SerialMessage {
      * @return an array of {@link byte} objects.
      */
     public byte[] getMessageData() {
-        ByteQueue queue = new ByteQueue();
-        modbusMessage.write(queue);
-        return getAsciiData(queue);
+        byte[] msg = modbusMessage.encode();
+
+        // Convert the message to ascii straight into the frame, calculating the LRC along the way.
+        byte[] data = new byte[1 + msg.length * 2 + 2 + END.length];
+        int pos = 0;
+        int lrc = 0;
+        data[pos++] = START;
+        for (byte b : msg) {
+            lrc -= b;
+            data[pos++] = lookupAscii[b & 0xf0];
+            data[pos++] = lookupAscii[b & 0x0f];
+        }
+        data[pos++] = lookupAscii[lrc & 0xf0];
+        data[pos++] = lookupAscii[lrc & 0x0f];
+        data[pos++] = END[0];
+        data[pos] = END[1];
+
+        // Return the data.
+        return data;
     }
 
     private static byte calculateLRC(ByteQueue queue, int start, int len) {
@@ -128,12 +166,6 @@ abstract public class AsciiMessage extends SerialMessage {
         to.push(lookupAscii[b & 0x0f]);
     }
 
-    private static void fromAscii(ByteQueue queue, int asciiLen) {
-        int len = asciiLen / 2;
-        for (int i = 0; i < len; i++)
-            queue.push(readAscii(queue));
-    }
-
     private static byte readAscii(ByteQueue from) {
         return (byte) ((lookupUnascii[from.pop()] << 4) | lookupUnascii[from.pop()]);
     }
@@ -31,6 +31,9 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  * @version 5.0.0
  */
 public class AsciiMessageParser extends BaseMessageParser {
+    // Messages are decoded into this buffer. Parsing is single-threaded, so one buffer does for every frame.
+    private final ByteQueue msgQueue = new ByteQueue();
+
     /**
      * <p>Constructor for AsciiMessageParser.</p>
      *
@@ -44,7 +47,7 @@ public class AsciiMessageParser extends BaseMessageParser {
     @Override
     protected IncomingMessage parseMessageImpl(ByteQueue queue) throws Exception {
         if (master)
-            return AsciiMessageResponse.createAsciiMessageResponse(queue);
-        return AsciiMessageRequest.createAsciiMessageRequest(queue);
+            return AsciiMessageResponse.createAsciiMessageResponse(queue, msgQueue);
+        return AsciiMessageRequest.createAsciiMessageRequest(queue, msgQueue);
     }
 }
@@ -43,6 +43,13 @@ public class AsciiMessageRequest extends AsciiMessage implements OutgoingRequest
         return asciiRequest;
     }
 
+    static AsciiMessageRequest createAsciiMessageRequest(ByteQueue queue, ByteQueue msgQueue)
+            throws ModbusTransportException {
+        if (!getUnasciiMessage(queue, msgQueue))
+            return null;
+        return new AsciiMessageRequest(ModbusRequest.createModbusRequest(msgQueue));
+    }
+
     /**
      * <p>Constructor for AsciiMessageRequest.</p>
      *
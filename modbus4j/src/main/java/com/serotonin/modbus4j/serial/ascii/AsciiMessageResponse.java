@@ -43,6 +43,13 @@ public class AsciiMessageResponse extends AsciiMessage implements OutgoingRespon
         return asciiResponse;
     }
 
+    static AsciiMessageResponse createAsciiMessageResponse(ByteQueue queue, ByteQueue msgQueue)
+            throws ModbusTransportException {
+        if (!getUnasciiMessage(queue, msgQueue))
+            return null;
+        return new AsciiMessageResponse(ModbusResponse.createModbusResponse(msgQueue));
+    }
+
     /**
      * <p>Constructor for AsciiMessageResponse.</p>
      *
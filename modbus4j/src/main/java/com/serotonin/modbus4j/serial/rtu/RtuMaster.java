@@ -33,6 +33,7 @@ import com.serotonin.modbus4j.serial.SerialWaitingRoomKeyFactory;
 import com.serotonin.modbus4j.sero.ShouldNeverHappenException;
 import com.serotonin.modbus4j.sero.messaging.MessageControl;
 import com.serotonin.modbus4j.sero.messaging.StreamTransport;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 
 /**
  * <p>RtuMaster class.</p>
@@ -96,11 +97,21 @@ public class RtuMaster extends SerialMaster {
     /** {@inheritDoc} */
     @Override
     public void destroy() {
+        stopScheduler();
         closeMessageControl(conn);
         super.close();
         initialized = false;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected SettableFuture<ModbusResponse> sendAsyncDirect(ModbusRequest request) {
+        MessageControl c = conn;
+        if (c == null)
+            return super.sendAsyncDirect(request);
+        return sendAsync(c, new RtuMessageRequest(request), request.getSlaveId());
+    }
+
     /** {@inheritDoc} */
     @Override
     public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
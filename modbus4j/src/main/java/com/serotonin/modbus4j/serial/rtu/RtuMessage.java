@@ -24,7 +24,6 @@ import com.serotonin.modbus4j.ModbusConfig;
 import com.serotonin.modbus4j.base.ModbusUtils;
 import com.serotonin.modbus4j.msg.ModbusMessage;
 import com.serotonin.modbus4j.serial.SerialMessage;
-import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
 
 /**
  * Convenience superclass primarily for calculating CRC values.
@@ -48,18 +47,14 @@ public class RtuMessage extends SerialMessage {
      * @return an array of {@link byte} objects.
      */
 	public byte[] getMessageData() {
-		ByteQueue queue = new ByteQueue();
-
-		// Write the particular message.
-		modbusMessage.write(queue);
+		// The particular message, which read requests keep once encoded.
+		byte[] msg = modbusMessage.encode();
 
 		// 如果启用的CRC校验,才拼crc数据
-		if (ModbusConfig.isEnableRtuCrc()) {
-			// Write the CRC
-			ModbusUtils.pushShort(queue, ModbusUtils.calculateCRC(modbusMessage));
-		}
+		if (!ModbusConfig.isEnableRtuCrc())
+			return msg;
 
-		// Return the data.
-		return queue.popAll();
+		// Write the CRC
+		return ModbusUtils.appendCRC(msg);
 	}
 }
@@ -35,11 +35,22 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  */
 public class RtuMessageRequest extends RtuMessage implements OutgoingRequestMessage, IncomingRequestMessage {
     static RtuMessageRequest createRtuMessageRequest(ByteQueue queue) throws ModbusTransportException {
+        // Wait until the whole frame has arrived.
+        int length = ModbusRequest.peekRequestLength(queue, 0);
+        if (length == -1 || queue.size() < length + 2)
+            return null;
+
+        // Calculate the CRC over the raw bytes before they are consumed.
+        int calcCrc = length > 0 ? ModbusUtils.calculateCRC(queue, 0, length) : 0;
+
         ModbusRequest request = ModbusRequest.createModbusRequest(queue);
         RtuMessageRequest rtuRequest = new RtuMessageRequest(request);
 
         // Check the CRC
-        ModbusUtils.checkCRC(rtuRequest.modbusMessage, queue);
+        if (length > 0)
+            ModbusUtils.checkCRC(calcCrc, queue, request.getSlaveId());
+        else
+            ModbusUtils.checkCRC(rtuRequest.modbusMessage, queue);
 
         // Return the data.
         return rtuRequest;
@@ -36,13 +36,22 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  */
 public class RtuMessageResponse extends RtuMessage implements OutgoingResponseMessage, IncomingResponseMessage {
 	static RtuMessageResponse createRtuMessageResponse(ByteQueue queue) throws ModbusTransportException {
+		// Wait until the whole frame has arrived.
+		int length = ModbusResponse.peekResponseLength(queue, 0);
+		if (length == -1 || queue.size() < length + (ModbusConfig.isEnableRtuCrc() ? 2 : 0))
+			return null;
+
+		// Calculate the CRC over the raw bytes before they are consumed. An unknown function code has no length, but
+		// fails in the parse anyway.
+		int calcCrc = length > 0 ? ModbusUtils.calculateCRC(queue, 0, length) : 0;
+
 		ModbusResponse response = ModbusResponse.createModbusResponse(queue);
 		RtuMessageResponse rtuResponse = new RtuMessageResponse(response);
 
 		// 如果启用了CRC校验，才做检查
 		if (ModbusConfig.isEnableRtuCrc()) {
 			// Check the CRC
-			ModbusUtils.checkCRC(rtuResponse.modbusMessage, queue);
+			ModbusUtils.checkCRC(calcCrc, queue, response.getSlaveId());
 		}
 
 		// Return the data.
@@ -0,0 +1,104 @@
+package com.serotonin.modbus4j.sero.messaging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * A stream transport whose run method blocks in read rather than polling the stream for available data. Data is
+ * consumed as soon as it arrives, and the end of the stream, e.g. when the peer closes its socket, is reported to
+ * closed straight away rather than having to be tested for.
+ *
+ * Start the transport, or run it on a thread of your own. It is stopped by closing the input stream.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class BlockingStreamTransport extends StreamTransport {
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private volatile DataConsumer consumer;
+
+    /**
+     * <p>Constructor for BlockingStreamTransport.</p>
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     */
+    public BlockingStreamTransport(InputStream in, OutputStream out) {
+        super(in, out);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setConsumer(DataConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeConsumer() {
+        consumer = null;
+    }
+
+    /**
+     * Reads from the stream until it ends or fails, then calls closed.
+     */
+    @Override
+    public void run() {
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        try {
+            while (true) {
+                int readcount;
+                try {
+                    readcount = in.read(buf);
+                }
+                catch (SocketTimeoutException e) {
+                    // The socket has a read timeout, but a quiet connection is not a closed one.
+                    continue;
+                }
+                if (readcount < 0)
+                    break;
+                DataConsumer consumer = this.consumer;
+                if (consumer != null && readcount > 0)
+                    consumer.data(buf, readcount);
+            }
+        }
+        catch (IOException e) {
+            DataConsumer consumer = this.consumer;
+            if (consumer != null)
+                consumer.handleIOException(e);
+        }
+        finally {
+            closed();
+        }
+    }
+
+    /**
+     * Called on the reading thread when the stream has ended or failed. Does nothing by default.
+     */
+    protected void closed() {
+        // no op
+    }
+
+    /**
+     * Runs the transport on a daemon thread of its own.
+     *
+     * @param threadName a {@link java.lang.String} object.
+     */
+    @Override
+    public void start(String threadName) {
+        Thread thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Does nothing. Close the input stream to stop the transport.
+     */
+    @Override
+    public void stop() {
+        // no op
+    }
+}
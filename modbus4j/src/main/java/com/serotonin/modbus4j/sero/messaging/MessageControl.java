@@ -1,12 +1,18 @@
 package com.serotonin.modbus4j.sero.messaging;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import com.serotonin.modbus4j.ModbusConfig;
 import com.serotonin.modbus4j.sero.io.StreamUtils;
 import com.serotonin.modbus4j.sero.log.BaseIOLog;
 import com.serotonin.modbus4j.sero.timer.SystemTimeSource;
 import com.serotonin.modbus4j.sero.timer.TimeSource;
+import com.serotonin.modbus4j.sero.timer.TimerWheel;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
 import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
 
 /**
@@ -14,6 +20,7 @@ import com.serotonin.modbus4j.sero.util.queue.ByteQueue;
  * <ol>
  * <li>Send a message for which no reply is expected, e.g. a broadcast.</li>
  * <li>Send a message and wait for a response with timeout and retries.</li>
+ * <li>Send a message and be notified of the response, without blocking the calling thread.</li>
  * <li>Listen for unsolicited requests.</li>
  * </ol>
  *
@@ -24,6 +31,8 @@ public class MessageControl implements DataConsumer {
     private static int DEFAULT_RETRIES = 2;
     private static int DEFAULT_TIMEOUT = 500;
 
+    private static ExecutorService sendExecutor;
+
     public boolean DEBUG = false;
 
     private Transport transport;
@@ -34,12 +43,15 @@ public class MessageControl implements DataConsumer {
     private int retries = DEFAULT_RETRIES;
     private int timeout = DEFAULT_TIMEOUT;
     private int discardDataDelay = 0;
+    private boolean datagrams;
     private long lastDataTimestamp;
 
     private BaseIOLog ioLog;
+    private TransactionListener transactionListener;
     private TimeSource timeSource = new SystemTimeSource();
 
     private final WaitingRoom waitingRoom = new WaitingRoom();
+    private TransactionTable transactionTable;
     private final ByteQueue dataBuffer = new ByteQueue();
 
     /**
@@ -61,6 +73,10 @@ public class MessageControl implements DataConsumer {
         this.requestHandler = handler;
         this.waitingRoomKeyFactory = waitingRoomKeyFactory;
         waitingRoom.setKeyFactory(waitingRoomKeyFactory);
+        if (waitingRoomKeyFactory instanceof SlottedWaitingRoomKeyFactory)
+            transactionTable = new TransactionTable((SlottedWaitingRoomKeyFactory) waitingRoomKeyFactory);
+        else
+            transactionTable = null;
         transport.setConsumer(this);
     }
 
@@ -139,6 +155,26 @@ public class MessageControl implements DataConsumer {
         this.discardDataDelay = discardDataDelay;
     }
 
+    /**
+     * <p>isDatagrams.</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isDatagrams() {
+        return datagrams;
+    }
+
+    /**
+     * Set when the transport delivers whole datagrams, so that each call to data holds complete messages. Whatever is
+     * left after parsing them, e.g. a truncated or corrupt datagram, is then discarded rather than kept to be completed
+     * by the next datagram.
+     *
+     * @param datagrams a boolean.
+     */
+    public void setDatagrams(boolean datagrams) {
+        this.datagrams = datagrams;
+    }
+
     /**
      * <p>Getter for the field <code>ioLog</code>.</p>
      *
@@ -157,6 +193,24 @@ public class MessageControl implements DataConsumer {
         this.ioLog = ioLog;
     }
 
+    /**
+     * <p>Getter for the field <code>transactionListener</code>.</p>
+     *
+     * @return a {@link com.serotonin.modbus4j.sero.messaging.TransactionListener} object.
+     */
+    public TransactionListener getTransactionListener() {
+        return transactionListener;
+    }
+
+    /**
+     * Sets the listener to notify of each step of the transactions, or null for none.
+     *
+     * @param transactionListener a {@link com.serotonin.modbus4j.sero.messaging.TransactionListener} object.
+     */
+    public void setTransactionListener(TransactionListener transactionListener) {
+        this.transactionListener = transactionListener;
+    }
+
     /**
      * <p>Getter for the field <code>timeSource</code>.</p>
      *
@@ -196,13 +250,42 @@ public class MessageControl implements DataConsumer {
      * @throws java.io.IOException if any.
      */
     public IncomingResponseMessage send(OutgoingRequestMessage request, int timeout, int retries) throws IOException {
+        long start = System.nanoTime();
         byte[] data = request.getMessageData();
         if (DEBUG||ModbusConfig.isEnalbeSendLog())
             System.out.println("MessagingControl.send: " + StreamUtils.dumpHex(data));
 
         IncomingResponseMessage response = null;
+        int attempts = 0;
+        long firstSent = 0;
+        long lastSent = 0;
+
+        if (request.expectsResponse() && transactionTable != null) {
+            int slot = transactionTable.getKeyFactory().getSlot(request);
+
+            // Take the request's slot in the transaction table
+            transactionTable.enter(slot, request);
+
+            try {
+                do {
+                    lastSent = System.nanoTime();
+                    if (attempts++ == 0)
+                        firstSent = lastSent;
+                    write(request, data, attempts > 1);
+                    response = transactionTable.getResponse(slot, timeout);
+
+                    if (DEBUG && response == null)
+                        System.out.println("Timeout waiting for response");
+                }
+                while (response == null && retries-- > 0);
+            }
+            finally {
+                transactionTable.leave(slot);
+            }
 
-        if (request.expectsResponse()) {
+            completed(request, response, start, firstSent, lastSent);
+        }
+        else if (request.expectsResponse()) {
             WaitingRoomKey key = waitingRoomKeyFactory.createWaitingRoomKey(request);
 
             // Enter the waiting room
@@ -211,7 +294,10 @@ public class MessageControl implements DataConsumer {
             try {
                 do {
                     // Send the request.
-                    write(data);
+                    lastSent = System.nanoTime();
+                    if (attempts++ == 0)
+                        firstSent = lastSent;
+                    write(request, data, attempts > 1);
 
                     // Wait for the response.
                     response = waitingRoom.getResponse(key, timeout);
@@ -226,15 +312,79 @@ public class MessageControl implements DataConsumer {
                 waitingRoom.leave(key);
             }
 
-            if (response == null)
-                throw new TimeoutException("request=" + request);
+            completed(request, response, start, firstSent, lastSent);
         }
         else
-            write(data);
+            write(request, data, false);
 
         return response;
     }
 
+    /**
+     * Reports the outcome of a synchronous request to the transaction listener, and throws if it timed out.
+     */
+    private void completed(OutgoingRequestMessage request, IncomingResponseMessage response, long start,
+            long firstSent, long lastSent) throws TimeoutException {
+        TransactionListener l = transactionListener;
+        if (response == null) {
+            if (l != null)
+                l.transactionTimedOut(request);
+            throw new TimeoutException("request=" + request);
+        }
+        if (l != null) {
+            long now = System.nanoTime();
+            l.transactionCompleted(request, firstSent - start, now - lastSent, now - start);
+        }
+    }
+
+    /**
+     * <p>sendAsync.</p>
+     *
+     * @param request a {@link com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage} object.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public SettableFuture<IncomingResponseMessage> sendAsync(OutgoingRequestMessage request) {
+        return sendAsync(request, timeout, retries);
+    }
+
+    /**
+     * Sends the request without blocking. The returned future is completed by the transport's data listening thread
+     * when the response arrives, or by the shared timer wheel with a TimeoutException once all retries have timed
+     * out. Requests that do not expect a response are completed with null once they have been written.
+     *
+     * @param request a {@link com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage} object.
+     * @param timeout a int.
+     * @param retries a int.
+     * @return a {@link com.serotonin.modbus4j.sero.util.SettableFuture} object.
+     */
+    public SettableFuture<IncomingResponseMessage> sendAsync(OutgoingRequestMessage request, int timeout, int retries) {
+        SettableFuture<IncomingResponseMessage> future = new SettableFuture<>();
+        byte[] data = request.getMessageData();
+        if (DEBUG || ModbusConfig.isEnalbeSendLog())
+            System.out.println("MessagingControl.sendAsync: " + StreamUtils.dumpHex(data));
+
+        if (request.expectsResponse() && transactionTable != null) {
+            int slot = transactionTable.getKeyFactory().getSlot(request);
+            transactionTable.enter(slot, request, new AsyncRequest(request, null, slot, data, timeout, retries,
+                    future));
+        }
+        else if (request.expectsResponse()) {
+            WaitingRoomKey key = waitingRoomKeyFactory.createWaitingRoomKey(request);
+            waitingRoom.enter(key, new AsyncRequest(request, key, -1, data, timeout, retries, future));
+        }
+        else {
+            try {
+                write(request, data, false);
+                future.complete(null);
+            }
+            catch (IOException e) {
+                future.fail(e);
+            }
+        }
+
+        return future;
+    }
+
     /**
      * <p>send.</p>
      *
@@ -272,6 +422,7 @@ public class MessageControl implements DataConsumer {
                 // Mark where we are in the buffer. The entire message may not be in yet, but since the parser
                 // will consume the buffer we need to be able to backtrack.
                 dataBuffer.mark();
+                int size = dataBuffer.size();
 
                 IncomingMessage message = messageParser.parseMessage(dataBuffer);
 
@@ -281,6 +432,10 @@ public class MessageControl implements DataConsumer {
                     break;
                 }
 
+                TransactionListener l = transactionListener;
+                if (l != null)
+                    l.messageReceived(message, size - dataBuffer.size());
+
                 if (message instanceof IncomingRequestMessage) {
                     // Received a request. Give it to the request handler
                     if (requestHandler != null) {
@@ -291,16 +446,25 @@ public class MessageControl implements DataConsumer {
                             send(response);
                     }
                 }
+                else if (transactionTable != null)
+                    // Must be a response. Give it to the transaction table.
+                    transactionTable.response((IncomingResponseMessage) message);
                 else
                     // Must be a response. Give it to the waiting room.
                     waitingRoom.response((IncomingResponseMessage) message);
             }
             catch (Exception e) {
+                TransactionListener l = transactionListener;
+                if (l != null)
+                    l.receiveFailed(e);
                 exceptionHandler.receivedException(e);
                 // Clear the buffer
                 //                dataBuffer.clear();
             }
         }
+
+        if (datagrams)
+            dataBuffer.clear();
     }
 
     private void write(byte[] data) throws IOException {
@@ -312,8 +476,161 @@ public class MessageControl implements DataConsumer {
         }
     }
 
+    private void write(OutgoingRequestMessage request, byte[] data, boolean retry) throws IOException {
+        write(data);
+
+        TransactionListener l = transactionListener;
+        if (l != null)
+            l.requestSent(request, data.length, retry);
+    }
+
     /** {@inheritDoc} */
     public void handleIOException(IOException e) {
         exceptionHandler.receivedException(e);
     }
+
+    /**
+     * Returns the executor shared by all message controls for writes that must not be made on the thread that
+     * triggers them, such as asynchronous retries noticed by the timer wheel, or queued requests released by a
+     * response arriving on a selector thread. A write can block on a slow transport. The executor is started if
+     * necessary.
+     *
+     * @return a {@link java.util.concurrent.Executor} object.
+     */
+    public static synchronized Executor getSendExecutor() {
+        if (sendExecutor == null) {
+            sendExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Modbus4J send");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sendExecutor;
+    }
+
+    /**
+     * A request sent with sendAsync. It sits in the waiting room or transaction table without a thread, is written
+     * when admitted, and is timed out by the timer wheel. Retries are written on the send executor.
+     */
+    class AsyncRequest extends WaitingRoom.AsyncMember implements Runnable {
+        private final OutgoingRequestMessage request;
+        private final WaitingRoomKey key;
+        private final int slot;
+        private final byte[] data;
+        private final int timeout;
+        private final SettableFuture<IncomingResponseMessage> future;
+        private int retries;
+        private boolean done;
+        private TimerWheel.Timeout pending;
+        private final long start = System.nanoTime();
+        private int attempts;
+        private long firstSent;
+        private long lastSent;
+        private final Runnable retransmit = new Runnable() {
+            @Override
+            public void run() {
+                transmit();
+            }
+        };
+
+        AsyncRequest(OutgoingRequestMessage request, WaitingRoomKey key, int slot, byte[] data, int timeout,
+                int retries, SettableFuture<IncomingResponseMessage> future) {
+            this.request = request;
+            this.key = key;
+            this.slot = slot;
+            this.data = data;
+            this.timeout = timeout;
+            this.retries = retries;
+            this.future = future;
+        }
+
+        @Override
+        void admitted() {
+            transmit();
+        }
+
+        @Override
+        void setResponse(IncomingResponseMessage response) {
+            finish(response, null);
+        }
+
+        /**
+         * Timer wheel callback: the response did not arrive in time.
+         */
+        @Override
+        public void run() {
+            boolean retry;
+            synchronized (this) {
+                if (done)
+                    return;
+                pending = null;
+                retry = retries-- > 0;
+            }
+
+            if (retry) {
+                if (DEBUG)
+                    System.out.println("Timeout waiting for response, retrying");
+                getSendExecutor().execute(retransmit);
+            }
+            else
+                finish(null, new TimeoutException("request=" + request));
+        }
+
+        private void transmit() {
+            if (future.isCancelled()) {
+                finish(null, null);
+                return;
+            }
+
+            try {
+                lastSent = System.nanoTime();
+                if (attempts++ == 0)
+                    firstSent = lastSent;
+                write(request, data, attempts > 1);
+            }
+            catch (IOException e) {
+                finish(null, e);
+                return;
+            }
+
+            synchronized (this) {
+                if (!done)
+                    pending = TimerWheel.getShared().schedule(this, timeout);
+            }
+        }
+
+        private void finish(IncomingResponseMessage response, IOException e) {
+            synchronized (this) {
+                if (done)
+                    return;
+                done = true;
+                if (pending != null)
+                    pending.cancel();
+                pending = null;
+            }
+
+            if (key == null)
+                transactionTable.leave(slot);
+            else
+                waitingRoom.leave(key);
+
+            TransactionListener l = transactionListener;
+            if (l != null) {
+                if (response != null) {
+                    long now = System.nanoTime();
+                    l.transactionCompleted(request, firstSent - start, now - lastSent, now - start);
+                }
+                else if (e instanceof TimeoutException)
+                    l.transactionTimedOut(request);
+            }
+
+            if (e != null)
+                future.fail(e);
+            else
+                future.complete(response);
+        }
+    }
 }
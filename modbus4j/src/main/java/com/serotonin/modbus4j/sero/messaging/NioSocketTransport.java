@@ -0,0 +1,239 @@
+package com.serotonin.modbus4j.sero.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.serotonin.modbus4j.sero.epoll.Modbus4JInputStreamCallback;
+import com.serotonin.modbus4j.sero.nio.NioSelectorGroup;
+
+/**
+ * First, instantiate with a connected channel and a started selector group. Then add a data consumer, or create a
+ * message control and pass this as the transport (which will make the message control the data consumer). Incoming
+ * data is delivered from the selector thread as soon as it arrives, so no thread is started for the transport. Stop the
+ * transport by stopping the message control.
+ *
+ * If an executor is set, data is instead queued per transport and consumed on the executor, and reading from the
+ * channel is suspended while the queue is full.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class NioSocketTransport implements Transport {
+    private static final long WRITE_RETRY_NANOS = 100000;
+    private static final long DEFAULT_WRITE_TIMEOUT = 500;
+
+    private final SocketChannel channel;
+    private final NioSelectorGroup selectorGroup;
+    private DataConsumer consumer;
+    private long writeTimeout = DEFAULT_WRITE_TIMEOUT;
+
+    /**
+     * When set, data read from the channel is queued and handed to the consumer on this executor instead of on the
+     * selector thread, in order and one chunk at a time.
+     */
+    private Executor executor;
+    private int maxQueued;
+    private final Queue<byte[]> inputs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Object queueLock = new Object();
+    private int queued;
+    private boolean suspended;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * <p>Constructor for NioSocketTransport.</p>
+     *
+     * @param channel a connected {@link java.nio.channels.SocketChannel} object.
+     * @param selectorGroup a {@link com.serotonin.modbus4j.sero.nio.NioSelectorGroup} object.
+     */
+    public NioSocketTransport(SocketChannel channel, NioSelectorGroup selectorGroup) {
+        this.channel = channel;
+        this.selectorGroup = selectorGroup;
+    }
+
+    /**
+     * <p>Getter for the field <code>channel</code>.</p>
+     *
+     * @return a {@link java.nio.channels.SocketChannel} object.
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Hands incoming data to the consumer on the given executor rather than on the selector thread, so that slow request
+     * handling does not hold up the other channels of the selector. Data of this channel is still consumed in order and
+     * one chunk at a time. Must be called before the consumer is set.
+     *
+     * @param executor a {@link java.util.concurrent.Executor} object, or null to consume on the selector thread.
+     * @param maxQueued the number of chunks that may wait for the executor before reading from the channel is
+     *            suspended, or 0 for no limit.
+     */
+    public void setExecutor(Executor executor, int maxQueued) {
+        this.executor = executor;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * <p>Getter for the field <code>writeTimeout</code>.</p>
+     *
+     * @return the time a write may wait for room in the socket buffer, in milliseconds.
+     */
+    public long getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * Sets how long a write may wait for room in the socket buffer before it fails with an IOException. Masters set
+     * it to their timeout.
+     *
+     * @param writeTimeout the timeout in milliseconds.
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setConsumer(final DataConsumer consumer) throws IOException {
+        this.consumer = consumer;
+        selectorGroup.add(channel, new Modbus4JInputStreamCallback() {
+            @Override
+            public void terminated() {
+                removeConsumer();
+            }
+
+            @Override
+            public void ioException(IOException e) {
+                consumer.handleIOException(e);
+            }
+
+            @Override
+            public void input(byte[] buf, int len) {
+                if (executor == null)
+                    consumer.data(buf, len);
+                else
+                    enqueue(Arrays.copyOf(buf, len));
+            }
+
+            @Override
+            public void closed() {
+                removeConsumer();
+                NioSocketTransport.this.closed();
+            }
+        });
+    }
+
+    /**
+     * <p>removeConsumer.</p>
+     */
+    @Override
+    public void removeConsumer() {
+        selectorGroup.remove(channel);
+    }
+
+    /**
+     * <p>write.</p>
+     *
+     * @param data an array of {@link byte} objects.
+     * @throws java.io.IOException if any.
+     */
+    @Override
+    public void write(byte[] data) throws IOException {
+        write(data, data.length);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void write(byte[] data, int len) throws IOException {
+        // The channel is non-blocking. Modbus frames are small enough that the socket buffer is almost never full,
+        // so simply retry until the frame is out, unless the peer has stopped reading for longer than the timeout.
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, len);
+        long deadline = 0;
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                long now = System.nanoTime();
+                if (deadline == 0)
+                    deadline = now + TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+                else if (now - deadline >= 0)
+                    throw new IOException("Write timed out after " + writeTimeout + " ms with " + buffer.remaining()
+                            + " bytes unsent");
+                LockSupport.parkNanos(WRITE_RETRY_NANOS);
+            }
+        }
+    }
+
+    private void enqueue(byte[] data) {
+        inputs.add(data);
+        synchronized (queueLock) {
+            queued++;
+            if (maxQueued > 0 && queued >= maxQueued && !suspended) {
+                suspended = true;
+                selectorGroup.setReadable(channel, false);
+            }
+        }
+        if (wip.getAndIncrement() == 0)
+            executor.execute(drain);
+    }
+
+    private void drain() {
+        int missed = 1;
+        boolean drained = false;
+        try {
+            while (true) {
+                byte[] data;
+                while ((data = inputs.poll()) != null) {
+                    try {
+                        consumer.data(data, data.length);
+                    }
+                    finally {
+                        dequeued();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0)
+                    break;
+            }
+            drained = true;
+        }
+        finally {
+            if (!drained) {
+                // The consumer threw. Reset the count so that the rest of the data, and any that arrives later, is
+                // drained by a new task rather than left waiting for this one.
+                wip.set(0);
+                if (!inputs.isEmpty() && wip.getAndIncrement() == 0)
+                    executor.execute(drain);
+            }
+        }
+    }
+
+    private void dequeued() {
+        synchronized (queueLock) {
+            queued--;
+            if (suspended && queued < maxQueued) {
+                suspended = false;
+                selectorGroup.setReadable(channel, true);
+            }
+        }
+    }
+
+    /**
+     * Called on the selector thread when the peer closes the connection or it fails. Does nothing by default.
+     */
+    protected void closed() {
+        // no op
+    }
+}
@@ -0,0 +1,45 @@
+package com.serotonin.modbus4j.sero.messaging;
+
+/**
+ * A key factory for protocols in which every outstanding request can be identified by a small integer, e.g. a
+ * transaction id, or a single slot on a serial line. Message controls that are started with such a factory use a
+ * transaction table indexed by slot rather than a waiting room keyed by objects, which avoids allocating a key and a
+ * member for each request and lets responses be completed without a lock.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface SlottedWaitingRoomKeyFactory extends WaitingRoomKeyFactory {
+    /**
+     * <p>getSlotCount.</p>
+     *
+     * @return the number of slots. Slots are numbered from 0.
+     */
+    int getSlotCount();
+
+    /**
+     * <p>getSlot.</p>
+     *
+     * @param request a {@link com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage} object.
+     * @return the slot that the request occupies while it waits for its response.
+     */
+    int getSlot(OutgoingRequestMessage request);
+
+    /**
+     * <p>getSlot.</p>
+     *
+     * @param response a {@link com.serotonin.modbus4j.sero.messaging.IncomingResponseMessage} object.
+     * @return the slot of the request that the response answers, or -1 if the response should be ignored.
+     */
+    int getSlot(IncomingResponseMessage response);
+
+    /**
+     * Checks the parts of the message that the slot does not cover, e.g. that the slave id and function code of the
+     * response match those of the request in the slot.
+     *
+     * @param request a {@link com.serotonin.modbus4j.sero.messaging.OutgoingRequestMessage} object.
+     * @param response a {@link com.serotonin.modbus4j.sero.messaging.IncomingResponseMessage} object.
+     * @return a boolean.
+     */
+    boolean isResponseFor(OutgoingRequestMessage request, IncomingResponseMessage response);
+}
@@ -0,0 +1,54 @@
+package com.serotonin.modbus4j.sero.messaging;
+
+/**
+ * Notified by a message control of each step of its transactions, e.g. to keep metrics. Called on the messaging
+ * threads themselves, i.e. the sending thread, the data listening thread or the timer wheel, so implementations must
+ * return quickly and must not throw.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface TransactionListener {
+    /**
+     * A request has been written to the transport.
+     *
+     * @param request the request.
+     * @param length the number of bytes written.
+     * @param retry whether this is a retry of a request that timed out.
+     */
+    void requestSent(OutgoingRequestMessage request, int length, boolean retry);
+
+    /**
+     * A message has been parsed from the incoming data, whether or not it answers a waiting request.
+     *
+     * @param message the message.
+     * @param length the number of bytes it was parsed from.
+     */
+    void messageReceived(IncomingMessage message, int length);
+
+    /**
+     * A request has received its response.
+     *
+     * @param request the request.
+     * @param queueNanos the time from the request being given to the message control to its first write, i.e. the
+     *            time spent waiting for earlier requests.
+     * @param wireNanos the time from the last write to the response.
+     * @param totalNanos the time from the request being given to the message control to the response, including
+     *            any retries.
+     */
+    void transactionCompleted(OutgoingRequestMessage request, long queueNanos, long wireNanos, long totalNanos);
+
+    /**
+     * A request has timed out, along with all of its retries.
+     *
+     * @param request the request.
+     */
+    void transactionTimedOut(OutgoingRequestMessage request);
+
+    /**
+     * The incoming data could not be parsed, e.g. because of a bad checksum.
+     *
+     * @param e the parse failure.
+     */
+    void receiveFailed(Exception e);
+}
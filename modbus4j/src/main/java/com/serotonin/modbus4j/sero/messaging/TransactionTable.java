@@ -0,0 +1,219 @@
+package com.serotonin.modbus4j.sero.messaging;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The slotted counterpart of the waiting room. Each outstanding request occupies the slot given by its key factory,
+ * e.g. its transaction id. Slot objects are created on first use and then reused for the life of the table, so a
+ * request allocates nothing to wait for its response.
+ *
+ * Entering a free slot and completing a slot are single compare-and-set operations. Only when two requests want the
+ * same slot at once, which on a serial line is the normal case, does the later one fall back to the slot's monitor
+ * to wait its turn.
+ *
+ * Large slot spaces, such as the 65536 MBAP transaction ids, are folded onto at most MAX_SLOTS slots so that every
+ * connection does not carry a 64k array. Consecutive ids never share a slot; ids that do share one simply wait for
+ * each other, and the key factory's isResponseFor check keeps their responses apart.
+ *
+ * The state of a slot carries a generation count in its upper bits, so that a response that arrives after its request
+ * has given up cannot complete a later request that has since taken the slot.
+ *
+ * @author Matthew Lohbihler
+ */
+class TransactionTable {
+    private static final int FREE = 0;
+    private static final int WAITING = 1;
+    private static final int COMPLETED = 2;
+    private static final int PHASE_MASK = 3;
+    private static final int GENERATION = 4;
+    private static final int MAX_SLOTS = 1024;
+
+    private final SlottedWaitingRoomKeyFactory keyFactory;
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+
+    TransactionTable(SlottedWaitingRoomKeyFactory keyFactory) {
+        this.keyFactory = keyFactory;
+        int size = 1;
+        while (size < keyFactory.getSlotCount() && size < MAX_SLOTS)
+            size <<= 1;
+        slots = new AtomicReferenceArray<Slot>(size);
+        mask = size - 1;
+    }
+
+    SlottedWaitingRoomKeyFactory getKeyFactory() {
+        return keyFactory;
+    }
+
+    /**
+     * Takes the slot for a request whose thread will wait in getResponse. Blocks while another request holds the
+     * slot. As with the waiting room, the request must be sent AFTER entering.
+     */
+    void enter(int index, OutgoingRequestMessage request) {
+        Slot slot = getSlot(index);
+        if (!slot.tryAcquire()) {
+            synchronized (slot) {
+                slot.waiters++;
+                while (!slot.tryAcquire()) {
+                    try {
+                        slot.wait();
+                    }
+                    catch (InterruptedException e) {
+                        // no op
+                    }
+                }
+                slot.waiters--;
+            }
+        }
+        slot.request = request;
+        slot.waiter = Thread.currentThread();
+    }
+
+    /**
+     * Takes the slot for an asynchronous request. If the slot is busy the member is queued, and admitted by the
+     * thread that releases the slot.
+     */
+    void enter(int index, OutgoingRequestMessage request, WaitingRoom.AsyncMember member) {
+        Slot slot = getSlot(index);
+        if (!slot.tryAcquire()) {
+            synchronized (slot) {
+                // Count ourselves before trying again so that a concurrent release is sure to see us.
+                slot.waiters++;
+                if (!slot.tryAcquire()) {
+                    slot.queue.add(new Queued(request, member));
+                    return;
+                }
+                slot.waiters--;
+            }
+        }
+        slot.request = request;
+        slot.member = member;
+        member.admitted();
+    }
+
+    /**
+     * Parks the calling thread until the slot is completed or the timeout elapses. Returns null on timeout, in which
+     * case the request may be resent and this method called again.
+     */
+    IncomingResponseMessage getResponse(int index, long timeout) {
+        Slot slot = slots.get(index & mask);
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        while (true) {
+            if ((slot.state & PHASE_MASK) == COMPLETED)
+                return slot.response;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return null;
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Frees the slot, handing it directly to the next queued asynchronous request or waking a waiting thread.
+     */
+    void leave(int index) {
+        Slot slot = slots.get(index & mask);
+        slot.request = null;
+        slot.response = null;
+        slot.waiter = null;
+        slot.member = null;
+        Slot.STATE.set(slot, (slot.state & ~PHASE_MASK) + GENERATION);
+
+        if (slot.waiters == 0)
+            return;
+
+        Queued next = null;
+        synchronized (slot) {
+            if (!slot.queue.isEmpty() && slot.tryAcquire()) {
+                next = slot.queue.removeFirst();
+                slot.waiters--;
+                slot.request = next.request;
+                slot.member = next.member;
+            }
+            slot.notifyAll();
+        }
+
+        if (next != null)
+            next.member.admitted();
+    }
+
+    /**
+     * Called by the data listening thread with a response from the transport.
+     *
+     * @throws WaitingRoomException
+     *             if no request is waiting for the response
+     */
+    void response(IncomingResponseMessage response) throws WaitingRoomException {
+        int index = keyFactory.getSlot(response);
+        if (index == -1)
+            // The key factory can return -1 if the response should be ignored.
+            return;
+
+        Slot slot = slots.get(index & mask);
+        if (slot != null) {
+            int state = slot.state;
+            OutgoingRequestMessage request = slot.request;
+            if ((state & PHASE_MASK) == WAITING && request != null && keyFactory.isResponseFor(request, response)) {
+                WaitingRoom.AsyncMember member = slot.member;
+                Thread waiter = slot.waiter;
+                slot.response = response;
+                if (Slot.STATE.compareAndSet(slot, state, (state & ~PHASE_MASK) | COMPLETED)) {
+                    if (member != null)
+                        member.setResponse(response);
+                    else if (waiter != null)
+                        LockSupport.unpark(waiter);
+                    return;
+                }
+            }
+        }
+
+        throw new WaitingRoomException("No recipient was found waiting for response for slot " + index);
+    }
+
+    private Slot getSlot(int index) {
+        index &= mask;
+        Slot slot = slots.get(index);
+        if (slot == null) {
+            slot = new Slot();
+            if (!slots.compareAndSet(index, null, slot))
+                slot = slots.get(index);
+        }
+        return slot;
+    }
+
+    static class Slot {
+        static final AtomicIntegerFieldUpdater<Slot> STATE = AtomicIntegerFieldUpdater.newUpdater(Slot.class,
+                "state");
+
+        volatile int state;
+        volatile OutgoingRequestMessage request;
+        volatile IncomingResponseMessage response;
+        volatile Thread waiter;
+        volatile WaitingRoom.AsyncMember member;
+
+        /**
+         * The number of threads and queued members waiting for the slot. Only changed while holding the slot's
+         * monitor.
+         */
+        volatile int waiters;
+        final LinkedList<Queued> queue = new LinkedList<Queued>();
+
+        boolean tryAcquire() {
+            int s = state;
+            return (s & PHASE_MASK) == FREE && STATE.compareAndSet(this, s, s | WAITING);
+        }
+    }
+
+    static class Queued {
+        final OutgoingRequestMessage request;
+        final WaitingRoom.AsyncMember member;
+
+        Queued(OutgoingRequestMessage request, WaitingRoom.AsyncMember member) {
+            this.request = request;
+            this.member = member;
+        }
+    }
+}
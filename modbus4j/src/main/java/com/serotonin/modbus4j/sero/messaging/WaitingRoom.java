@@ -1,6 +1,7 @@
 package com.serotonin.modbus4j.sero.messaging;
 
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -15,6 +16,7 @@ class WaitingRoom {
     private static final Log LOG = LogFactory.getLog(WaitingRoom.class);
 
     private final Map<WaitingRoomKey, Member> waitHere = new HashMap<WaitingRoomKey, Member>();
+    private final Map<WaitingRoomKey, LinkedList<AsyncMember>> queued = new HashMap<WaitingRoomKey, LinkedList<AsyncMember>>();
 
     private WaitingRoomKeyFactory keyFactory;
 
@@ -51,6 +53,27 @@ class WaitingRoom {
         }
     }
 
+    /**
+     * The asynchronous counterpart of enter. Rather than blocking the caller while a member with the same key is in
+     * the room, the member is queued and admitted when the key is released. The member's admitted method is called
+     * once it is in the room, either immediately on the calling thread or on the thread that releases the key.
+     */
+    void enter(WaitingRoomKey key, AsyncMember member) {
+        synchronized (this) {
+            if (waitHere.get(key) != null) {
+                LinkedList<AsyncMember> list = queued.get(key);
+                if (list == null) {
+                    list = new LinkedList<AsyncMember>();
+                    queued.put(key, list);
+                }
+                list.add(member);
+                return;
+            }
+            waitHere.put(key, member);
+        }
+        member.admitted();
+    }
+
     IncomingResponseMessage getResponse(WaitingRoomKey key, long timeout) throws WaitingRoomException {
         // Get the member.
         Member member;
@@ -66,13 +89,27 @@ class WaitingRoom {
     }
 
     void leave(WaitingRoomKey key) {
+        AsyncMember next = null;
+
         // Leave the waiting room
         synchronized (this) {
             waitHere.remove(key);
 
+            // Queued asynchronous members go first, since they are not competing for the monitor.
+            LinkedList<AsyncMember> list = queued.get(key);
+            if (list != null) {
+                next = list.removeFirst();
+                if (list.isEmpty())
+                    queued.remove(key);
+                waitHere.put(key, next);
+            }
+
             // Notify any threads that are waiting to get in. This could probably be just a notify() call.
             notifyAll();
         }
+
+        if (next != null)
+            next.admitted();
     }
 
     /**
@@ -108,7 +145,7 @@ class WaitingRoom {
      * 
      * @author Matthew Lohbihler
      */
-    class Member {
+    static class Member {
         private IncomingResponseMessage response;
 
         synchronized void setResponse(IncomingResponseMessage response) {
@@ -135,4 +172,18 @@ class WaitingRoom {
             }
         }
     }
+
+    /**
+     * A member that does not wait on a monitor. The response is pushed to it by the data listening thread, and its
+     * timeouts are managed by its owner.
+     */
+    abstract static class AsyncMember extends Member {
+        /**
+         * Called when the member has been let into the room, i.e. when its request may be sent.
+         */
+        abstract void admitted();
+
+        @Override
+        abstract void setResponse(IncomingResponseMessage response);
+    }
 }
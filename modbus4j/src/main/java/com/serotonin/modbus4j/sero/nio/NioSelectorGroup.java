@@ -0,0 +1,247 @@
+package com.serotonin.modbus4j.sero.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.serotonin.modbus4j.sero.epoll.Modbus4JInputStreamCallback;
+
+/**
+ * Serves any number of socket channels from a fixed number of selector threads. This is the NIO counterpart of an
+ * input stream ePoll: rather than one listener thread per connection polling for available data, each thread blocks in
+ * a selector and hands data to the channel's callback as soon as it arrives.
+ *
+ * Callbacks are invoked on the selector thread, so they must not block.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class NioSelectorGroup {
+    private static final Log LOG = LogFactory.getLog(NioSelectorGroup.class);
+
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private final SelectorLoop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates a group with a single selector thread.
+     */
+    public NioSelectorGroup() {
+        this(1);
+    }
+
+    /**
+     * <p>Constructor for NioSelectorGroup.</p>
+     *
+     * @param threads the number of selector threads. Channels are spread across them round robin.
+     */
+    public NioSelectorGroup(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads cannot be less than one");
+        loops = new SelectorLoop[threads];
+    }
+
+    /**
+     * <p>start.</p>
+     *
+     * @param threadName a {@link java.lang.String} object.
+     * @throws java.io.IOException if a selector cannot be opened.
+     */
+    public synchronized void start(String threadName) throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            if (loops[i] != null)
+                continue;
+            loops[i] = new SelectorLoop(Selector.open());
+            Thread thread = new Thread(loops[i], loops.length == 1 ? threadName : threadName + " " + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops all of the selector threads. Channels that are still registered are notified with terminated.
+     */
+    public synchronized void terminate() {
+        for (int i = 0; i < loops.length; i++) {
+            if (loops[i] != null) {
+                loops[i].terminate();
+                loops[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Registers the channel for reading. The channel is put into non-blocking mode.
+     *
+     * @param channel a {@link java.nio.channels.SocketChannel} object.
+     * @param callback a {@link com.serotonin.modbus4j.sero.epoll.Modbus4JInputStreamCallback} object.
+     * @throws java.io.IOException if any.
+     */
+    public void add(SocketChannel channel, Modbus4JInputStreamCallback callback) throws IOException {
+        SelectorLoop loop = loops[(next.getAndIncrement() & 0x7fffffff) % loops.length];
+        if (loop == null)
+            throw new IOException("Selector group has not been started");
+        channel.configureBlocking(false);
+        loop.add(channel, callback);
+    }
+
+    /**
+     * Deregisters the channel. No further callbacks are made for it once the selector thread has processed the
+     * removal. The channel itself is not closed.
+     *
+     * @param channel a {@link java.nio.channels.SocketChannel} object.
+     */
+    public void remove(SocketChannel channel) {
+        for (SelectorLoop loop : loops) {
+            if (loop != null)
+                loop.remove(channel);
+        }
+    }
+
+    /**
+     * Stops or resumes reading from the channel, e.g. while the data already read from it is waiting to be processed.
+     * The change takes effect once the selector thread has processed it; changes are processed in the order they are
+     * made.
+     *
+     * @param channel a {@link java.nio.channels.SocketChannel} object.
+     * @param readable whether the channel should be read.
+     */
+    public void setReadable(SocketChannel channel, boolean readable) {
+        for (SelectorLoop loop : loops) {
+            if (loop != null)
+                loop.setReadable(channel, readable);
+        }
+    }
+
+    class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private volatile boolean running = true;
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void add(final SocketChannel channel, final Modbus4JInputStreamCallback callback) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        channel.register(selector, SelectionKey.OP_READ, callback);
+                    }
+                    catch (ClosedChannelException e) {
+                        callback.closed();
+                    }
+                }
+            });
+        }
+
+        void remove(final SocketChannel channel) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null)
+                        key.cancel();
+                }
+            });
+        }
+
+        void setReadable(final SocketChannel channel, final boolean readable) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null && key.isValid())
+                        key.interestOps(readable ? SelectionKey.OP_READ : 0);
+                }
+            });
+        }
+
+        void terminate() {
+            running = false;
+            selector.wakeup();
+        }
+
+        private void submit(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    try {
+                        selector.select();
+                    }
+                    catch (IOException e) {
+                        LOG.warn("Selector failure", e);
+                        break;
+                    }
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null)
+                        task.run();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable())
+                            read(key);
+                    }
+                }
+            }
+            finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.isValid()) {
+                        key.cancel();
+                        ((Modbus4JInputStreamCallback) key.attachment()).terminated();
+                    }
+                }
+                try {
+                    selector.close();
+                }
+                catch (IOException e) {
+                    // no op
+                }
+            }
+        }
+
+        private void read(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Modbus4JInputStreamCallback callback = (Modbus4JInputStreamCallback) key.attachment();
+            try {
+                buffer.clear();
+                int count = channel.read(buffer);
+                if (count < 0) {
+                    key.cancel();
+                    callback.closed();
+                }
+                else if (count > 0)
+                    callback.input(buffer.array(), count);
+            }
+            catch (IOException e) {
+                key.cancel();
+                callback.ioException(e);
+                callback.closed();
+            }
+            catch (RuntimeException e) {
+                LOG.warn("Exception in channel callback", e);
+            }
+        }
+    }
+}
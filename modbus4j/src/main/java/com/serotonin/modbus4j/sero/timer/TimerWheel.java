@@ -0,0 +1,195 @@
+package com.serotonin.modbus4j.sero.timer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A hashed timer wheel. Timeouts are dropped into a bucket according to their deadline and a single daemon thread
+ * advances the wheel one bucket per tick, firing whatever has expired. Scheduling and cancelling are constant time,
+ * so a large number of outstanding request timeouts can share one thread rather than each parking its own.
+ *
+ * Tasks run on the wheel thread, so they must be short and must not block.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class TimerWheel implements Runnable {
+    private static final Log LOG = LogFactory.getLog(TimerWheel.class);
+
+    private static final int DEFAULT_TICK = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static TimerWheel shared;
+
+    /**
+     * Returns the wheel shared by all message controls, starting it if necessary.
+     *
+     * @return a {@link com.serotonin.modbus4j.sero.timer.TimerWheel} object.
+     */
+    public static synchronized TimerWheel getShared() {
+        if (shared == null) {
+            shared = new TimerWheel(DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+            shared.start("Modbus4J timer wheel");
+        }
+        return shared;
+    }
+
+    private final long tick;
+    private final Timeout[] wheel;
+    private final int mask;
+    private long currentTick;
+    private volatile boolean running = true;
+
+    /**
+     * <p>Constructor for TimerWheel.</p>
+     *
+     * @param tick the resolution of the wheel in milliseconds.
+     * @param wheelSize the number of buckets. Rounded up to a power of two.
+     */
+    public TimerWheel(long tick, int wheelSize) {
+        if (tick < 1)
+            throw new IllegalArgumentException("tick cannot be less than one");
+        int size = 1;
+        while (size < wheelSize)
+            size <<= 1;
+        this.tick = tick;
+        wheel = new Timeout[size];
+        mask = size - 1;
+    }
+
+    /**
+     * <p>start.</p>
+     *
+     * @param threadName a {@link java.lang.String} object.
+     */
+    public void start(String threadName) {
+        Thread thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * <p>stop.</p>
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Schedules the task to run once after the given delay. The returned handle can be used to cancel it.
+     *
+     * @param task a {@link java.lang.Runnable} object.
+     * @param delay the delay in milliseconds.
+     * @return a {@link com.serotonin.modbus4j.sero.timer.TimerWheel.Timeout} object.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        if (delay < 0)
+            delay = 0;
+        Timeout timeout = new Timeout(task);
+        synchronized (this) {
+            // Always land at least one tick ahead so that a timeout never fires early.
+            long ticks = (delay + tick - 1) / tick;
+            if (ticks < 1)
+                ticks = 1;
+            long deadline = currentTick + ticks;
+            timeout.rounds = (ticks - 1) / wheel.length;
+            int index = (int) (deadline & mask);
+            timeout.next = wheel[index];
+            if (timeout.next != null)
+                timeout.next.prev = timeout;
+            wheel[index] = timeout;
+            timeout.bucket = index;
+        }
+        return timeout;
+    }
+
+    /**
+     * <p>run.</p>
+     */
+    public void run() {
+        long next = System.nanoTime();
+        while (running) {
+            next += tick * 1000000L;
+            long sleep = (next - System.nanoTime()) / 1000000L;
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                }
+                catch (InterruptedException e) {
+                    // no op
+                }
+            }
+
+            Timeout expired = null;
+            synchronized (this) {
+                currentTick++;
+                int index = (int) (currentTick & mask);
+                Timeout t = wheel[index];
+                while (t != null) {
+                    Timeout n = t.next;
+                    if (t.rounds > 0)
+                        t.rounds--;
+                    else {
+                        unlink(t);
+                        t.next = expired;
+                        expired = t;
+                    }
+                    t = n;
+                }
+            }
+
+            while (expired != null) {
+                Timeout n = expired.next;
+                expired.next = null;
+                try {
+                    expired.task.run();
+                }
+                catch (RuntimeException e) {
+                    LOG.warn("Exception in timer task", e);
+                }
+                expired = n;
+            }
+        }
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null)
+            t.prev.next = t.next;
+        else
+            wheel[t.bucket] = t.next;
+        if (t.next != null)
+            t.next.prev = t.prev;
+        t.prev = null;
+        t.bucket = -1;
+    }
+
+    /**
+     * A handle to a scheduled task.
+     */
+    public class Timeout {
+        final Runnable task;
+        long rounds;
+        int bucket = -1;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task if it has not already run.
+         *
+         * @return true if the task was cancelled before it ran.
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (bucket == -1)
+                    return false;
+                unlink(this);
+                next = null;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.serotonin.modbus4j.sero.util;
+
+/**
+ * <p>FutureListener interface.</p>
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public interface FutureListener<T> {
+    /**
+     * Notification that the future completed normally. Called at most once.
+     *
+     * @param result the result of the future. May be null.
+     */
+    void completed(T result);
+
+    /**
+     * Notification that the future failed or was cancelled. Called at most once.
+     *
+     * @param e the cause of the failure.
+     */
+    void failed(Exception e);
+}
@@ -0,0 +1,147 @@
+package com.serotonin.modbus4j.sero.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values such as latencies, in the manner of HdrHistogram. Values below 64 have a bucket
+ * each; above that every power of two is split into 32 linear buckets, so a value is known to within about 3% at any
+ * magnitude while the whole range to the highest trackable value needs only a few hundred buckets. Values above the
+ * highest trackable value are counted in the last bucket, though the maximum is still exact.
+ *
+ * Recording takes a few atomic increments and no locks or allocation, so a histogram can be left on in production and
+ * recorded to from any number of threads. Reading while values are being recorded gives a consistent enough view for
+ * monitoring, though not an exact snapshot.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * <p>Constructor for LatencyHistogram.</p>
+     *
+     * @param highestTrackableValue the highest value that gets a bucket of its own.
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKET_COUNT)
+            highestTrackableValue = SUB_BUCKET_COUNT;
+        this.highestTrackableValue = highestTrackableValue;
+        counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * The highest value that falls into the bucket with the given index.
+     */
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * <p>record.</p>
+     *
+     * @param value the value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(indexOf(Math.min(value, highestTrackableValue)));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value))
+            m = max.get();
+    }
+
+    /**
+     * <p>getCount.</p>
+     *
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * <p>getMax.</p>
+     *
+     * @return the highest value recorded, or 0 if there are none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * <p>getMean.</p>
+     *
+     * @return the mean of the values recorded, or 0 if there are none.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * <p>getValueAtPercentile.</p>
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return a value that the given percentage of the recorded values are no higher than, to within the precision
+     *         of the buckets, or 0 if there are none.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * n);
+        if (rank < 1)
+            rank = 1;
+
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueAt(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax();
+    }
+}
@@ -0,0 +1,137 @@
+package com.serotonin.modbus4j.sero.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A future that is completed explicitly by whoever produces the result, typically a transport's reader thread.
+ * Listeners are called on the thread that completes the future (or immediately on the calling thread if the future
+ * is already done), so they must not block.
+ *
+ * @author Matthew Lohbihler
+ * @version 5.0.0
+ */
+public class SettableFuture<T> implements Future<T> {
+    private List<FutureListener<? super T>> listeners;
+    private boolean done;
+    private boolean cancelled;
+    private T result;
+    private Exception exception;
+
+    /**
+     * Completes the future with the given result.
+     *
+     * @param result a T object.
+     * @return false if the future was already done.
+     */
+    public boolean complete(T result) {
+        return finish(result, null, false);
+    }
+
+    /**
+     * Completes the future with the given exception.
+     *
+     * @param e a {@link java.lang.Exception} object.
+     * @return false if the future was already done.
+     */
+    public boolean fail(Exception e) {
+        return finish(null, e, false);
+    }
+
+    /**
+     * Adds a listener to be notified when the future is done.
+     *
+     * @param listener a {@link com.serotonin.modbus4j.sero.util.FutureListener} object.
+     */
+    public void addListener(FutureListener<? super T> listener) {
+        synchronized (this) {
+            if (!done) {
+                if (listeners == null)
+                    listeners = new ArrayList<>(1);
+                listeners.add(listener);
+                return;
+            }
+        }
+        if (exception != null)
+            listener.failed(exception);
+        else
+            listener.completed(result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, new CancellationException(), true);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done)
+            wait();
+        return getResult();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+            TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    private boolean finish(T result, Exception e, boolean cancel) {
+        List<FutureListener<? super T>> l;
+        synchronized (this) {
+            if (done)
+                return false;
+            this.result = result;
+            exception = e;
+            cancelled = cancel;
+            done = true;
+            l = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        if (l != null) {
+            for (FutureListener<? super T> listener : l) {
+                if (e != null)
+                    listener.failed(e);
+                else
+                    listener.completed(result);
+            }
+        }
+        return true;
+    }
+
+    private T getResult() throws ExecutionException {
+        if (cancelled)
+            throw (CancellationException) exception;
+        if (exception != null)
+            throw new ExecutionException(exception);
+        return result;
+    }
+}
@@ -0,0 +1,248 @@
+package com.serotonin.modbus4j.serial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.modbus4j.exception.ModbusTransportException;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ModbusResponse;
+import com.serotonin.modbus4j.msg.ReadHoldingRegistersRequest;
+import com.serotonin.modbus4j.msg.WriteRegisterRequest;
+import com.serotonin.modbus4j.sero.util.SettableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the order in which the scheduler puts requests on the line, and that queued requests are dropped at their
+ * deadline. A blocking request is put on the line first, so that everything submitted after it queues up.
+ */
+public class SerialRequestSchedulerTest {
+    private FakeMaster master;
+    private SerialRequestScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        master = new FakeMaster();
+        master.setScheduled(true);
+        scheduler = master.getScheduler();
+    }
+
+    @After
+    public void tearDown() {
+        master.unblock();
+        master.destroy();
+    }
+
+    @Test
+    public void higherClassesGoFirst() throws Exception {
+        SettableFuture<ModbusResponse> blocker = block();
+        List<SettableFuture<ModbusResponse>> futures = new ArrayList<>();
+        futures.add(master.sendAsync(read(1), SerialRequestScheduler.PRIORITY_LOW, 0));
+        futures.add(master.sendAsync(read(2), SerialRequestScheduler.PRIORITY_NORMAL, 0));
+        futures.add(master.sendAsync(new WriteRegisterRequest(3, 0, 1)));
+        futures.add(master.sendAsync(read(4), SerialRequestScheduler.PRIORITY_HIGH, 0));
+        assertEquals(4, scheduler.getQueueDepth());
+        assertEquals(2, scheduler.getQueueDepth(SerialRequestScheduler.PRIORITY_HIGH));
+
+        master.unblock();
+        blocker.get(1, TimeUnit.SECONDS);
+        for (SettableFuture<ModbusResponse> future : futures)
+            future.get(1, TimeUnit.SECONDS);
+
+        assertEquals(list("9:3", "3:6", "4:3", "2:3", "1:3"), master.sent);
+        assertEquals(5, scheduler.getSentCount());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void slavesTakeTurnsWithinAClass() throws Exception {
+        SettableFuture<ModbusResponse> blocker = block();
+        List<SettableFuture<ModbusResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            futures.add(master.sendAsync(read(1)));
+        for (int i = 0; i < 2; i++)
+            futures.add(master.sendAsync(read(2)));
+        futures.add(master.sendAsync(read(3)));
+        assertEquals(3, scheduler.getSlaveQueueDepth(1));
+        assertEquals(6, scheduler.getPeakQueueDepth());
+
+        master.unblock();
+        blocker.get(1, TimeUnit.SECONDS);
+        for (SettableFuture<ModbusResponse> future : futures)
+            future.get(1, TimeUnit.SECONDS);
+
+        assertEquals(list("9:3", "1:3", "2:3", "3:3", "1:3", "2:3", "1:3"), master.sent);
+    }
+
+    @Test
+    public void queuedRequestIsDroppedAtItsDeadline() throws Exception {
+        SettableFuture<ModbusResponse> blocker = block();
+        SettableFuture<ModbusResponse> late = master.sendAsync(read(1), SerialRequestScheduler.PRIORITY_NORMAL, 50);
+        SettableFuture<ModbusResponse> patient = master.sendAsync(read(2), SerialRequestScheduler.PRIORITY_NORMAL, 0);
+
+        try {
+            late.get(1, TimeUnit.SECONDS);
+            fail("The request should have been dropped");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ModbusTransportException);
+        }
+        assertEquals(1, scheduler.getDroppedCount());
+        assertEquals(1, scheduler.getQueueDepth());
+
+        master.unblock();
+        blocker.get(1, TimeUnit.SECONDS);
+        patient.get(1, TimeUnit.SECONDS);
+        assertEquals(list("9:3", "2:3"), master.sent);
+    }
+
+    @Test
+    public void requestOnTheLineIsNotDropped() throws Exception {
+        master.holdNext();
+        SettableFuture<ModbusResponse> sent = master.sendAsync(read(1), SerialRequestScheduler.PRIORITY_NORMAL, 50);
+        assertTrue(master.awaitHeld());
+        Thread.sleep(150);
+        master.unblock();
+
+        sent.get(1, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.getDroppedCount());
+    }
+
+    @Test
+    public void synchronousSendsAreScheduled() throws Exception {
+        SettableFuture<ModbusResponse> blocker = block();
+        final SettableFuture<ModbusResponse> write = new SettableFuture<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write.complete(master.send(new WriteRegisterRequest(1, 0, 1)));
+                }
+                catch (ModbusTransportException e) {
+                    write.fail(e);
+                }
+            }
+        });
+        SettableFuture<ModbusResponse> read = master.sendAsync(read(2));
+        thread.start();
+        while (scheduler.getQueueDepth() < 2)
+            Thread.sleep(5);
+
+        master.unblock();
+        blocker.get(1, TimeUnit.SECONDS);
+        write.get(1, TimeUnit.SECONDS);
+        read.get(1, TimeUnit.SECONDS);
+        assertEquals(list("9:3", "1:6", "2:3"), master.sent);
+    }
+
+    @Test
+    public void stopFailsQueuedRequests() throws Exception {
+        block();
+        SettableFuture<ModbusResponse> queued = master.sendAsync(read(1));
+        scheduler.stop();
+
+        try {
+            queued.get(1, TimeUnit.SECONDS);
+            fail("The request should have been failed");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ModbusTransportException);
+        }
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    /**
+     * Puts a request to slave 9 on the line and waits until the scheduler is blocked in it.
+     */
+    private SettableFuture<ModbusResponse> block() throws Exception {
+        master.holdNext();
+        SettableFuture<ModbusResponse> blocker = master.sendAsync(read(9), SerialRequestScheduler.PRIORITY_LOW, 0);
+        assertTrue(master.awaitHeld());
+        return blocker;
+    }
+
+    private static ModbusRequest read(int slaveId) throws ModbusTransportException {
+        return new ReadHoldingRegistersRequest(slaveId, 0, 1);
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, values);
+        return list;
+    }
+
+    /**
+     * Records the requests it is given instead of putting them on a line. The next request can be held until
+     * unblocked.
+     */
+    static class FakeMaster extends SerialMaster {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        private boolean hold;
+        private CountDownLatch held;
+        private CountDownLatch release;
+
+        FakeMaster() {
+            super(null);
+        }
+
+        synchronized void holdNext() {
+            hold = true;
+            held = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+        }
+
+        boolean awaitHeld() throws InterruptedException {
+            CountDownLatch latch;
+            synchronized (this) {
+                latch = held;
+            }
+            return latch.await(1, TimeUnit.SECONDS);
+        }
+
+        synchronized void unblock() {
+            if (release != null)
+                release.countDown();
+        }
+
+        @Override
+        public void init() {
+            initialized = true;
+        }
+
+        @Override
+        public void destroy() {
+            stopScheduler();
+        }
+
+        @Override
+        public ModbusResponse sendImpl(ModbusRequest request) throws ModbusTransportException {
+            sent.add(request.getSlaveId() + ":" + request.getFunctionCode());
+            CountDownLatch h = null, r = null;
+            synchronized (this) {
+                if (hold) {
+                    hold = false;
+                    h = held;
+                    r = release;
+                }
+            }
+            if (h != null) {
+                h.countDown();
+                try {
+                    r.await(1, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return null;
+        }
+    }
+}